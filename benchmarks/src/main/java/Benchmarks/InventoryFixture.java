@@ -0,0 +1,93 @@
+package Benchmarks;
+
+import Model.Inventory;
+import Model.Part;
+import Model.PartRecord;
+import Model.Product;
+import Model.ProductRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Fills the static inventory with generated parts and products for a benchmark run.
+ * Every benchmark fork starts a new JVM, so the inventory is filled once per trial.
+ */
+final class InventoryFixture {
+    /**
+     * Number of sample keys benchmarks cycle through. A power of two, so the cursor can wrap with a mask.
+     */
+    static final int SAMPLES = 4096;
+    /**
+     * One product is generated for every this many parts.
+     */
+    static final int PARTS_PER_PRODUCT = 10;
+
+    private InventoryFixture() {
+    }
+
+    /**
+     * Replaces the inventory with generated rows. Half of the parts are in-house and half outsourced,
+     * and each product is built from three parts.
+     * @param rows The number of parts to generate.
+     */
+    static void fill(int rows) {
+        Inventory.getProductInv().clear();
+        Inventory.getPartInv().clear();
+        List<Part> parts = new ArrayList<>(rows);
+        int firstPart = Inventory.getPartIDAllocator().reserve(rows);
+        for (int i = 0; i < rows; i++) {
+            parts.add(part(firstPart + i, i));
+        }
+        Inventory.addParts(parts);
+        int productCount = Math.max(1, rows / PARTS_PER_PRODUCT);
+        List<Product> products = new ArrayList<>(productCount);
+        int firstProduct = Inventory.getProdIDAllocator().reserve(productCount);
+        for (int i = 0; i < productCount; i++) {
+            products.add(product(firstProduct + i, firstPart + (i * 3) % rows, rows));
+        }
+        Inventory.addProds(products);
+    }
+
+    /**
+     * Creates a part for generated row number i.
+     * @param id The part ID.
+     * @param i The row number.
+     * @return A new part.
+     */
+    static Part part(int id, int i) {
+        return new PartRecord(id, "Part " + i, 1.0 + i % 100, 10, 1, 100, i % 2 == 1, i + 1, "Supplier " + i % 50).toPart();
+    }
+
+    /**
+     * Creates a product built from three consecutive parts.
+     * @param id The product ID.
+     * @param firstPartID The ID of the first part.
+     * @param rows The number of parts in the inventory, for wrapping.
+     * @return A new product.
+     */
+    static Product product(int id, int firstPartID, int rows) {
+        int[] partIDs = {firstPartID, firstPartID + 1, firstPartID + 2};
+        if (partIDs[2] >= rows + 1) {
+            partIDs = new int[]{1, 2, 3};
+        }
+        return new ProductRecord(id, "Product " + id, 1000.0, 5, 1, 10, partIDs, new int[]{1, 2, 1}).toProduct();
+    }
+
+    /**
+     * Picks random values in a range, to spread lookups over the whole inventory.
+     * @param seed The random seed.
+     * @param from The lowest value, inclusive.
+     * @param to The highest value, exclusive.
+     * @return SAMPLES random values.
+     */
+    static int[] sample(long seed, int from, int to) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] values = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            values[i] = random.nextInt(from, to);
+        }
+        return values;
+    }
+}
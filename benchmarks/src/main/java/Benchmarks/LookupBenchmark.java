@@ -0,0 +1,88 @@
+package Benchmarks;
+
+import Model.Inventory;
+import Model.Part;
+import Model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and delete checks against an inventory of 1k, 100k and 1M parts.
+ * Keys are drawn at random from the whole inventory, so results include cache misses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class LookupBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int rows;
+    private int[] partIDs;
+    private String[] partNames;
+    private String[] productTerms;
+    private Part[] parts;
+    private Product[] products;
+    private int cursor;
+
+    @Setup
+    public void fill() {
+        InventoryFixture.fill(rows);
+        int productCount = Inventory.getProductInv().size();
+        partIDs = InventoryFixture.sample(1, 1, rows + 1);
+        int[] partRows = InventoryFixture.sample(2, 0, rows);
+        int[] productRows = InventoryFixture.sample(3, 0, productCount);
+        partNames = new String[InventoryFixture.SAMPLES];
+        productTerms = new String[InventoryFixture.SAMPLES];
+        parts = new Part[InventoryFixture.SAMPLES];
+        products = new Product[InventoryFixture.SAMPLES];
+        for (int i = 0; i < InventoryFixture.SAMPLES; i++) {
+            parts[i] = Inventory.getPartInv().get(partRows[i]);
+            partNames[i] = parts[i].getPartName().toUpperCase();
+            products[i] = Inventory.getProductInv().get(productRows[i]);
+            productTerms[i] = Integer.toString(products[i].getProductID());
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (InventoryFixture.SAMPLES - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public Part lookupPartById() {
+        return Inventory.lookupPart(partIDs[next()]);
+    }
+
+    @Benchmark
+    public Part lookupPartByName() {
+        return Inventory.lookupPart(partNames[next()]);
+    }
+
+    @Benchmark
+    public Product lookupProdByIdTerm() {
+        return Inventory.lookupProd(productTerms[next()]);
+    }
+
+    @Benchmark
+    public boolean validatePartDelete() {
+        return Inventory.validatePartDelete(parts[next()]);
+    }
+
+    @Benchmark
+    public boolean validateProductDelete() {
+        return Inventory.validateProductDelete(products[next()]);
+    }
+}
@@ -0,0 +1,87 @@
+package Benchmarks;
+
+import Model.Inventory;
+import Model.Part;
+import Model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds, updates and removes against an inventory of 1k, 100k and 1M parts, including the cost of every
+ * index listening to the inventory lists. Adds are paired with a remove so the inventory keeps its size,
+ * and they cycle through a block of IDs reserved up front, so the measured loop never touches the ID allocators.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class MutationBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int rows;
+    private int[] partIndexes;
+    private int[] productIndexes;
+    private int firstAddedPartID;
+    private int firstAddedProductID;
+    private int cursor;
+
+    @Setup
+    public void fill() {
+        InventoryFixture.fill(rows);
+        partIndexes = InventoryFixture.sample(4, 0, rows);
+        productIndexes = InventoryFixture.sample(5, 0, Inventory.getProductInv().size());
+        firstAddedPartID = Inventory.getPartIDAllocator().reserve(InventoryFixture.SAMPLES);
+        firstAddedProductID = Inventory.getProdIDAllocator().reserve(InventoryFixture.SAMPLES);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (InventoryFixture.SAMPLES - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public void addAndRemovePart() {
+        int sample = next();
+        Part part = InventoryFixture.part(firstAddedPartID + sample, sample);
+        Inventory.addPart(part);
+        Inventory.removePart(part);
+    }
+
+    @Benchmark
+    public void updatePart() {
+        int index = partIndexes[next()];
+        Part current = Inventory.getPartInv().get(index);
+        Part replacement = current.toRecord().toPart();
+        replacement.setPartInStock(current.getPartInStock() % 100 + 1);
+        Inventory.updatePart(index, replacement);
+    }
+
+    @Benchmark
+    public void addAndRemoveProduct() {
+        int sample = next();
+        Product product = InventoryFixture.product(firstAddedProductID + sample, 1 + sample % (rows - 2), rows);
+        Inventory.addProd(product);
+        Inventory.removeProd(product);
+    }
+
+    @Benchmark
+    public void updateProduct() {
+        int index = productIndexes[next()];
+        Product current = Inventory.getProductInv().get(index);
+        Product replacement = current.toRecord().toProduct();
+        replacement.setProductInStock(current.getProductInStock() % 10 + 1);
+        Inventory.updateProd(index, replacement);
+    }
+}
@@ -0,0 +1,71 @@
+package Benchmarks;
+
+import Model.Part;
+import Model.Product;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Form validation as run on every save, for valid input and for input that fails every rule.
+ * Product validation is measured against bills of 1k, 100k and 1M part units.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+    private String machineID = "42";
+
+    /**
+     * The parts list of the product being validated.
+     */
+    @State(Scope.Thread)
+    public static class Bill {
+        @Param({"1000", "100000", "1000000"})
+        int rows;
+        ObservableList<Part> parts;
+
+        @Setup
+        public void fill() {
+            parts = FXCollections.observableArrayList();
+            for (int i = 0; i < rows; i++) {
+                parts.add(InventoryFixture.part(i + 1, i));
+            }
+        }
+    }
+
+    @Benchmark
+    public String isPartValidInHouse() {
+        return Part.isPartValid("Bolt", 1, 100, 10, 1.5, false, machineID, "");
+    }
+
+    @Benchmark
+    public String isPartValidOutsourced() {
+        return Part.isPartValid("Bolt", 1, 100, 10, 1.5, true, "Acme", "");
+    }
+
+    @Benchmark
+    public String isPartValidFailing() {
+        return Part.isPartValid(" ", 10, 1, 0, 0, false, "x", "");
+    }
+
+    @Benchmark
+    public String isProductValid(Bill bill) {
+        return Product.isProductValid("Widget", 1, 10, 5, 1e9, bill.parts, "");
+    }
+}
@@ -2,17 +2,13 @@ package Controller;
 
 import Model.InHousePart;
 import Model.Inventory;
+import Model.NumberParser;
 import Model.OutsourcedPart;
 import Model.Part;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.net.URL;
@@ -21,7 +17,7 @@ import java.util.ResourceBundle;
 /**
  * Controller for adding new parts in the application.
  */
-public class AddPartController implements Initializable {
+public class AddPartController implements Initializable, Screen {
 
     @FXML private Label lblAddPartIDNumber, lblAddPartDyn;
     @FXML private TextField txtAddPartName, txtAddPartInv, txtAddPartPrice, txtAddPartMin, txtAddPartMax, txtAddPartDyn;
@@ -30,10 +26,6 @@ public class AddPartController implements Initializable {
      * Boolean flag to indicate if the part is outsourced.
      */
     private boolean isOutsourced;
-    /**
-     * Auto-generated part ID.
-     */
-    private int partID;
     /**
      * To store exception messages during validation.
      */
@@ -67,24 +59,24 @@ public class AddPartController implements Initializable {
      * @param partPrice Price of the part.
      * @param partMin Minimum limit of the part.
      * @param partMax Maximum limit of the part.
-     * @param partDyn Dynamic attribute of the part (Machine ID or Company Name).
+     * @param partDyn Dynamic attribute of the part (Machine ID or Company Name). Already validated.
+     * @param machineID The machine ID already parsed from partDyn, used for an in-house part.
      * @return A new Part instance.
      */
-    private Part createPart(String partName, String partInv, String partPrice, String partMin, String partMax, String partDyn) {
+    private Part createPart(String partName, int partInv, double partPrice, int partMin, int partMax, String partDyn, int machineID) {
         Part part;
         if (isOutsourced) {
             part = new OutsourcedPart();
             ((OutsourcedPart) part).setCompanyName(partDyn);
         } else {
             part = new InHousePart();
-            ((InHousePart) part).setMachineID(Integer.parseInt(partDyn));
+            ((InHousePart) part).setMachineID(machineID);
         }
-        part.setPartID(partID);
         part.setPartName(partName);
-        part.setPartPrice(Double.parseDouble(partPrice));
-        part.setPartInStock(Integer.parseInt(partInv));
-        part.setPartMin(Integer.parseInt(partMin));
-        part.setPartMax(Integer.parseInt(partMax));
+        part.setPartPrice(partPrice);
+        part.setPartInStock(partInv);
+        part.setPartMin(partMin);
+        part.setPartMax(partMax);
 
         return part;
     }
@@ -102,19 +94,29 @@ public class AddPartController implements Initializable {
         String partMax = txtAddPartMax.getText();
         String partDyn = txtAddPartDyn.getText();
 
-        try {
-            exceptionMessage = Part.isPartValid(partName, Integer.parseInt(partMin), Integer.parseInt(partMax), Integer.parseInt(partInv), Double.parseDouble(partPrice), isOutsourced, partDyn, exceptionMessage);
-            if (exceptionMessage.length() > 0) {
-                displayAlert("Error Adding Part", exceptionMessage);
-                exceptionMessage = "";
-            } else {
-                Part part = createPart(partName, partInv, partPrice, partMin, partMax, partDyn);
-                Inventory.addPart(part);
-
-                loadMainScreen(event);
-            }
-        } catch (NumberFormatException e) {
+        long inv = NumberParser.parseInt(partInv);
+        double price = NumberParser.parseDouble(partPrice);
+        long min = NumberParser.parseInt(partMin);
+        long max = NumberParser.parseInt(partMax);
+        if (inv == NumberParser.INVALID_INT || min == NumberParser.INVALID_INT || max == NumberParser.INVALID_INT || Double.isNaN(price)) {
             displayAlert("Form Error", "Form contains blank fields.");
+            return;
+        }
+
+        // Parse the machine ID once; the text form of isPartValid is only needed to report a company name or an unparseable ID.
+        long machineID = isOutsourced ? NumberParser.INVALID_INT : NumberParser.parseInt(partDyn);
+        exceptionMessage = machineID == NumberParser.INVALID_INT
+                ? Part.isPartValid(partName, (int) min, (int) max, (int) inv, price, isOutsourced, partDyn, exceptionMessage)
+                : Part.isPartValid(partName, (int) min, (int) max, (int) inv, price, (int) machineID, exceptionMessage);
+        if (exceptionMessage.length() > 0) {
+            displayAlert("Error Adding Part", exceptionMessage);
+            exceptionMessage = "";
+        } else {
+            Part part = createPart(partName, (int) inv, price, (int) min, (int) max, partDyn, (int) machineID);
+            part.setPartID(Inventory.getPartIDCount());
+            Inventory.addPart(part);
+
+            loadMainScreen(event);
         }
     }
 
@@ -138,18 +140,12 @@ public class AddPartController implements Initializable {
         }
     }
     /**
-     * Loads the main screen.
-     * Future Enhancement: This function can be enhanced to support dynamic loading of different screens,
-     * making the navigation between different screens more flexible and maintainable.
-     * @param event The action event triggering the load of the main screen.
+     * Returns to the main screen.
+     * @param event The action event triggering the return to the main screen.
      * @throws IOException If there is an error loading the FXML file for the main screen.
      */
     private void loadMainScreen(ActionEvent event) throws IOException {
-        Parent mainScreen = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-        Scene scene = new Scene(mainScreen);
-        Stage window = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        window.setScene(scene);
-        window.show();
+        Navigator.show(event, Navigator.View.MAIN);
     }
     /**
      * Displays an alert dialog with the specified title and content.
@@ -165,13 +161,28 @@ public class AddPartController implements Initializable {
     }
 
     /**
-     * Initializes the controller class and sets up default values.
+     * Clears the form for a new part and shows the next ID.
+     */
+    @Override
+    public void enter() {
+        txtAddPartName.clear();
+        txtAddPartInv.clear();
+        txtAddPartPrice.clear();
+        txtAddPartMin.clear();
+        txtAddPartMax.clear();
+        txtAddPartDyn.clear();
+        radioAddPartInHouse.setSelected(true);
+        addPartInHouseRadio(null);
+        exceptionMessage = "";
+        lblAddPartIDNumber.setText("Auto-Gen: " + Inventory.peekPartID());
+    }
+
+    /**
+     * Initializes the controller class. The form is filled in by enter, each time the screen is shown.
      * @param url The location to resolve relative paths for the root object.
      * @param rb  The resources used to localize the root object.
      */
     @Override
     public void initialize(URL url, ResourceBundle rb) {
-        partID = Inventory.getPartIDCount();
-        lblAddPartIDNumber.setText("Auto-Gen: " + partID);
     }
 }
\ No newline at end of file
@@ -1,30 +1,27 @@
 package Controller;
 
+import Model.BackgroundQuery;
 import Model.Inventory;
+import Model.NumberParser;
 import Model.Part;
 import Model.Product;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Comparator;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
-import static Model.Inventory.getPartInv;
 /**
  * The AddProductController class manages the UI and interactions for adding a new Product.
  * It enables the user to search for parts and add them to or delete them from the current product.
  */
-public class AddProductController implements Initializable {
+public class AddProductController implements Initializable, Screen {
 
     @FXML private TextField txtAddProductName, txtAddProductInv, txtAddProductPrice, txtAddProductMin, txtAddProductMax, txtAddProdSearch;
     @FXML private TableView<Part> tvAddProdAdd, tvAddProdDelete;
@@ -41,35 +38,36 @@ public class AddProductController implements Initializable {
      * A list to hold the current parts of a product.
      */
     private ObservableList<Part> currentParts = FXCollections.observableArrayList();
-    /**
-     * An integer to hold the ProductID.
-     */
-    private int productID;
     /**
      * A string to hold any exception messages.
      */
     private String exceptionMessage = "";
+    /**
+     * The current part search results, or null when the picker shows the whole inventory.
+     */
+    private ObservableList<Part> partResults;
+    /**
+     * Runs the part picker's search and header sorts in the background. Header sorts reorder the
+     * picker's paged view, never the inventory itself.
+     */
+    private BackgroundQuery<Part> partQuery;
+    private TableSort<Part> partSort;
+    /**
+     * Set by the Search button, so the next result reports when nothing matches.
+     */
+    private boolean reportEmptyParts;
 
 
     /**
      * The event that occurs when the Search button is clicked.
+     * Results already update as the user types, so this only re-runs the search and reports when nothing matches.
      *
      * @param event the action event
      */
     @FXML
     private void addProdSearch(ActionEvent event) throws IOException {
-        String searchPart = txtAddProdSearch.getText();
-        int partIndex = -1;
-
-        if (Inventory.lookupPart(searchPart) == -1) {
-            displayAlert(1, "The search term entered does not match any known parts.");
-        } else {
-            partIndex = Inventory.lookupPart(searchPart);
-            Part tempPart = getPartInv().get(partIndex);
-            ObservableList<Part> tempPartList = FXCollections.observableArrayList();
-            tempPartList.add(tempPart);
-            tvAddProdAdd.setItems(tempPartList);
-        }
+        reportEmptyParts = true;
+        updateAddPartTv();
     }
 
     /**
@@ -80,6 +78,9 @@ public class AddProductController implements Initializable {
     @FXML
     void addProd(ActionEvent event) {
         Part part = tvAddProdAdd.getSelectionModel().getSelectedItem();
+        if (part == null) {
+            return;
+        }
         currentParts.add(part);
         updateDeletePartTv();
     }
@@ -122,43 +123,41 @@ public class AddProductController implements Initializable {
         String productMin = txtAddProductMin.getText();
         String productMax = txtAddProductMax.getText();
 
-        try{
-            if (productName.trim().isEmpty() || productInv.trim().isEmpty() || productPrice.trim().isEmpty() || productMin.trim().isEmpty() || productMax.trim().isEmpty()) {
-                displayAlert(4, "Form contains blank fields.");
-                return;
-            }
+        if (productName.trim().isEmpty() || productInv.trim().isEmpty() || productPrice.trim().isEmpty() || productMin.trim().isEmpty() || productMax.trim().isEmpty()) {
+            displayAlert(4, "Form contains blank fields.");
+            return;
+        }
 
-            int inv = Integer.parseInt(productInv);
-            double price = Double.parseDouble(productPrice);
-            int min = Integer.parseInt(productMin);
-            int max = Integer.parseInt(productMax);
+        long inv = NumberParser.parseInt(productInv);
+        double price = NumberParser.parseDouble(productPrice);
+        long min = NumberParser.parseInt(productMin);
+        long max = NumberParser.parseInt(productMax);
+        if (inv == NumberParser.INVALID_INT || min == NumberParser.INVALID_INT || max == NumberParser.INVALID_INT || Double.isNaN(price)) {
+            displayAlert(4, "Form contains invalid field formats.");
+            return;
+        }
 
-            exceptionMessage = Product.isProductValid(productName, min, max, inv, price, currentParts, exceptionMessage);
-            if (exceptionMessage.length() > 0) {
-                displayAlert(3, exceptionMessage);
-                exceptionMessage = "";
-            }
-            else {
-                System.out.println("Product name: " + productName);
-                Product newProduct = new Product();
-                newProduct.setProductID(productID);
-                newProduct.setProductName(productName);
-                newProduct.setProductInStock(inv);
-                newProduct.setProductPrice(price);
-                newProduct.setProductMin(min);
-                newProduct.setProductMax(max);
-                newProduct.setProductParts(currentParts);
-                Inventory.addProd(newProduct);
+        Product newProduct = new Product();
+        newProduct.setProductName(productName);
+        newProduct.setProductInStock((int) inv);
+        newProduct.setProductPrice(price);
+        newProduct.setProductMin((int) min);
+        newProduct.setProductMax((int) max);
+        newProduct.setProductParts(currentParts);
+        // Priced at save time, so a part whose price changed while the screen was open counts at its new price.
+        double partsCost = Inventory.getProductCost(newProduct);
 
-                Parent addProductSaveParent = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-                Scene scene = new Scene(addProductSaveParent);
-                Stage window = (Stage) ((Node) event.getSource()).getScene().getWindow();
-                window.setScene(scene);
-                window.show();
-            }
+        exceptionMessage = Product.isProductValid(productName, (int) min, (int) max, (int) inv, price, currentParts.size(), partsCost, exceptionMessage);
+        if (exceptionMessage.length() > 0) {
+            displayAlert(3, exceptionMessage);
+            exceptionMessage = "";
         }
-        catch (NumberFormatException e) {
-            displayAlert(4, "Form contains invalid field formats.");
+        else {
+            System.out.println("Product name: " + productName);
+            newProduct.setProductID(Inventory.getProdIDCount());
+            Inventory.addProd(newProduct);
+
+            Navigator.show(event, Navigator.View.MAIN);
         }
     }
 
@@ -176,11 +175,7 @@ public class AddProductController implements Initializable {
 
 
         if (result.get() == ButtonType.OK) {
-            Parent addProductCancel = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-            Scene scene = new Scene(addProductCancel);
-            Stage window = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            window.setScene(scene);
-            window.show();
+            Navigator.show(event, Navigator.View.MAIN);
         } else {
             System.out.println("Cancelled.");
         }
@@ -223,7 +218,7 @@ public class AddProductController implements Initializable {
 
     /**
      * Initializes the controller class. This method automatically gets called
-     * after the fxml file has been loaded.
+     * after the fxml file has been loaded. The form is filled in by enter, each time the screen is shown.
      *
      * @param url The location used to resolve relative paths for the root object.
      * @param rb The resources used to localize the root object.
@@ -239,16 +234,52 @@ public class AddProductController implements Initializable {
         tvAddProductDeleteNameColumn.setCellValueFactory(cellData -> cellData.getValue().partNameProp());
         tvAddProductDeleteInvColumn.setCellValueFactory(cellData -> cellData.getValue().partInvProp().asObject());
         tvAddProductDeletePriceColumn.setCellValueFactory(cellData -> cellData.getValue().partPriceProp().asObject());
-        updateAddPartTv();
+        partQuery = BackgroundQuery.forParts(this::showParts);
+        partSort = new TableSort<Part>()
+                .by(tvAddProductAddIDColumn, Comparator.comparingInt(Part::getPartID))
+                .by(tvAddProductAddNameColumn, Comparator.comparing(Part::getPartName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)))
+                .by(tvAddProductAddInvColumn, Comparator.comparingInt(Part::getPartInStock))
+                .by(tvAddProductAddPriceColumn, Comparator.comparingDouble(Part::getPartPrice));
+        txtAddProdSearch.textProperty().addListener((obs, oldTerm, newTerm) -> updateAddPartTv());
+        TableSort.sortWith(tvAddProdAdd, this::updateAddPartTv);
         updateDeletePartTv();
-        productID = Inventory.getProdIDCount();
-        lblAddProductIDNumber.setText("Auto-Gen: " + productID);
+    }
+    /**
+     * Clears the form and the product's parts for a new product, and shows the whole inventory to pick from.
+     */
+    @Override
+    public void enter() {
+        txtAddProductName.clear();
+        txtAddProductInv.clear();
+        txtAddProductPrice.clear();
+        txtAddProductMin.clear();
+        txtAddProductMax.clear();
+        exceptionMessage = "";
+        currentParts.clear();
+        tvAddProdAdd.getSortOrder().clear();
+        txtAddProdSearch.clear();
+        updateAddPartTv();
+        lblAddProductIDNumber.setText("Auto-Gen: " + Inventory.peekProdID());
     }
     /**
      * Updates the Add Parts TableView to reflect the current inventory.
+     * The search and sort run in the background and the table is updated once they finish. The table pages through
+     * the inventory or the search results, so only the rows around the visible ones are read.
      */
     public void updateAddPartTv() {
-        tvAddProdAdd.setItems(getPartInv());
+        partQuery.run(txtAddProdSearch.getText(), partSort.comparator(tvAddProdAdd));
+    }
+    /**
+     * Shows a finished part search in the Add Parts TableView.
+     * @param result The search results and the view to show.
+     */
+    private void showParts(BackgroundQuery.Result<Part> result) {
+        partResults = result.results();
+        tvAddProdAdd.setItems(result.view());
+        if (reportEmptyParts && partResults != null && partResults.isEmpty()) {
+            displayAlert(1, "The search term entered does not match any known parts.");
+        }
+        reportEmptyParts = false;
     }
     /**
      * Updates the Delete Parts TableView based on the current parts in the product.
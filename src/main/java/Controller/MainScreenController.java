@@ -1,6 +1,8 @@
 package Controller;
 
+import Model.BackgroundQuery;
 import Model.Inventory;
+import Model.InventoryEvent;
 import Model.Part;
 import Model.Product;
 import static Model.Inventory.validatePartDelete;
@@ -9,17 +11,16 @@ import static Model.Inventory.getPartInv;
 import static Model.Inventory.removePart;
 import static Model.Inventory.getProductInv;
 import static Model.Inventory.removeProd;
-import javafx.collections.FXCollections;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 import java.net.URL;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
 import java.util.ResourceBundle;
 import javafx.event.ActionEvent;
 import java.io.IOException;
@@ -30,7 +31,15 @@ import java.util.Optional;
  * It handles all interactions with both parts and products, including searching,
  * deleting, and navigating to add or modify screens.
  */
-public class MainScreenController implements Initializable {
+public class MainScreenController implements Initializable, Screen {
+    /**
+     * Most items listed by the Low Stock alert; the rest are counted.
+     */
+    private static final int LOW_STOCK_LISTED = 50;
+    /**
+     * How long inventory changes are collected before the tables catch up with them.
+     */
+    private static final Duration REFRESH_WINDOW = Duration.ofMillis(100);
 
     @FXML private TableView<Part> tvParts;
     @FXML private TableView<Product> tvProducts;
@@ -42,11 +51,30 @@ public class MainScreenController implements Initializable {
     @FXML private TableColumn<Product, String> tvProductsNameColumn;
     @FXML private TableColumn<Product, Integer> tvProductsInvColumn;
     @FXML private TableColumn<Product, Double> tvProductsPriceColumn;
+    @FXML private TableColumn<Product, Integer> tvProductsBuildColumn;
     @FXML private TextField txtSearchParts, txtSearchProducts;
+    @FXML private Button btnLowStock;
     private static Part modifyPart;
     private static int modifyPartIndex;
     private static Product modifyProduct;
     private static int modifyProductIndex;
+    /**
+     * The current search results, or null when the tables show the whole inventory.
+     */
+    private ObservableList<Part> partResults;
+    private ObservableList<Product> productResults;
+    /**
+     * Run the searches and header sorts of the tables in the background. Header sorts reorder the
+     * tables' paged views, never the inventory itself.
+     */
+    private BackgroundQuery<Part> partQuery;
+    private BackgroundQuery<Product> productQuery;
+    private TableSort<Part> partSort;
+    private TableSort<Product> productSort;
+    /**
+     * Set by the Search buttons, so the next result reports when nothing matches.
+     */
+    private boolean reportEmptyParts, reportEmptyProducts;
 
     public static int partToModifyIndex() {
         return modifyPartIndex;
@@ -56,25 +84,15 @@ public class MainScreenController implements Initializable {
         return modifyProductIndex;
     }
     /**
-     * Handles the search for parts.
+     * Handles the search for parts. Results already update as the user types,
+     * so this only re-runs the search and reports when nothing matches.
      *
      * @param event The triggering event.
-     * Logical error that could occur: -1 is used to denote "not found," but if it's misinterpreted,
-     * it could result in an ArrayIndexOutOfBoundsException.
      */
     @FXML
     private void partsSearch(ActionEvent event) {
-        String searchPart = txtSearchParts.getText();
-        int partIndex = -1;
-        if (Inventory.lookupPart(searchPart) == -1) {
-            displayAlert(1);
-        } else {
-            partIndex = Inventory.lookupPart(searchPart);
-            Part tempPart = Inventory.getPartInv().get(partIndex);
-            ObservableList<Part> tempPartList = FXCollections.observableArrayList();
-            tempPartList.add(tempPart);
-            tvParts.setItems(tempPartList);
-        }
+        reportEmptyParts = true;
+        updatePartsTv();
     }
     /**
      * Handles deleting a selected part.
@@ -92,24 +110,16 @@ public class MainScreenController implements Initializable {
         }
     }
     /**
-     * Handles the search for products.
+     * Handles the search for products. Results already update as the user types,
+     * so this only re-runs the search and reports when nothing matches.
      *
      * @param event The triggering event.
      *
      */
     @FXML
     private void productsSearch(ActionEvent event) {
-        String searchProduct = txtSearchProducts.getText();
-        int prodIndex = -1;
-        if (Inventory.lookupProd(searchProduct) == -1) {
-            displayAlert(4);
-        } else {
-            prodIndex = Inventory.lookupProd(searchProduct);
-            Product tempProduct = Inventory.getProductInv().get(prodIndex);
-            ObservableList<Product> tempProductList = FXCollections.observableArrayList();
-            tempProductList.add(tempProduct);
-            tvProducts.setItems(tempProductList);
-        }
+        reportEmptyProducts = true;
+        updateProdTv();
     }
     /**
      * Handles deleting a selected product.
@@ -130,57 +140,142 @@ public class MainScreenController implements Initializable {
 
     @FXML
     private void openAddPartScreen(ActionEvent event) throws IOException {
-        Parent addPartParent = FXMLLoader.load(getClass().getResource("/view/AddPart.fxml"));
-        Scene addPartScene = new Scene(addPartParent);
-        Stage addPartStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        addPartStage.setScene(addPartScene);
-        addPartStage.show();
+        Navigator.show(event, Navigator.View.ADD_PART);
     }
 
     @FXML
     private void openModifyPartScreen(ActionEvent event) throws IOException {
         modifyPart = tvParts.getSelectionModel().getSelectedItem();
         modifyPartIndex = getPartInv().indexOf(modifyPart);
-        Parent modifyPartParent = FXMLLoader.load(getClass().getResource("/view/ModifyPart.fxml"));
-        Scene modifyPartScene = new Scene(modifyPartParent);
-        Stage modifyPartStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        modifyPartStage.setScene(modifyPartScene);
-        modifyPartStage.show();
+        Navigator.show(event, Navigator.View.MODIFY_PART);
     }
     @FXML
     private void openAddProductScreen(ActionEvent event) throws IOException {
-        Parent addProductParent = FXMLLoader.load(getClass().getResource("/view/AddProduct.fxml"));
-        Scene addProductScene = new Scene(addProductParent);
-        Stage addProductStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        addProductStage.setScene(addProductScene);
-        addProductStage.show();
+        Navigator.show(event, Navigator.View.ADD_PRODUCT);
     }
 
     @FXML
     private void openModifyProductScreen(ActionEvent event) throws IOException {
         modifyProduct = tvProducts.getSelectionModel().getSelectedItem();
         modifyProductIndex = getProductInv().indexOf(modifyProduct);
-        Parent modifyProductParent = FXMLLoader.load(getClass().getResource("/view/ModifyProduct.fxml"));
-        Scene modifyProductScene = new Scene(modifyProductParent);
-        Stage modifyProductStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-        modifyProductStage.setScene(modifyProductScene);
-        modifyProductStage.show();
+        Navigator.show(event, Navigator.View.MODIFY_PRODUCT);
     }
     /**
      * Updates the table view to reflect the current list of parts.
+     * The search and sort run in the background, cancelling any still in progress, and the table is updated
+     * once they finish. With no search term the table pages through the inventory list itself, so only the rows
+     * around the visible ones are read and kept; otherwise it pages through the results of the current search.
      *
      * Future Enhancement: Implement a refresh button to manually update the TableView.
      */
     public void updatePartsTv() {
-        tvParts.setItems(getPartInv());
+        partQuery.run(txtSearchParts.getText(), partSort.comparator(tvParts));
     }
     /**
-     * Updates the table view to reflect the current list of products.
+     * Shows a finished part search in the table.
      *
-     * Future Enhancement: Implement pagination for products if the list becomes too long.
+     * @param result The search results and the view to show.
+     */
+    private void showParts(BackgroundQuery.Result<Part> result) {
+        partResults = result.results();
+        tvParts.setItems(result.view());
+        if (reportEmptyParts && partResults != null && partResults.isEmpty()) {
+            displayAlert(1);
+        }
+        reportEmptyParts = false;
+    }
+    /**
+     * Updates the table view to reflect the current list of products.
+     * The search and sort run in the background, cancelling any still in progress, and the table is updated
+     * once they finish. With no search term the table pages through the inventory list itself, so only the rows
+     * around the visible ones are read and kept; otherwise it pages through the results of the current search.
      */
     public void updateProdTv() {
-        tvProducts.setItems(getProductInv());
+        productQuery.run(txtSearchProducts.getText(), productSort.comparator(tvProducts));
+    }
+    /**
+     * Shows a finished product search in the table.
+     *
+     * @param result The search results and the view to show.
+     */
+    private void showProducts(BackgroundQuery.Result<Product> result) {
+        productResults = result.results();
+        tvProducts.setItems(result.view());
+        if (reportEmptyProducts && productResults != null && productResults.isEmpty()) {
+            displayAlert(4);
+        }
+        reportEmptyProducts = false;
+    }
+    /**
+     * Brings the tables and the low stock count up to date after a batch of inventory changes, while the screen is shown.
+     * A table showing the whole inventory in list order follows the inventory by itself; a table showing
+     * search results or a sort is searched and sorted again, once for the whole batch. Part changes redraw
+     * the product rows, so their Can Build column follows part stock.
+     *
+     * @param events The coalesced changes.
+     */
+    private void inventoryChanged(List<InventoryEvent> events) {
+        if (tvParts.getScene() == null || tvParts.getScene().getWindow() == null) {
+            return;
+        }
+        updateLowStock();
+        boolean partsChanged = false;
+        boolean productsChanged = false;
+        for (InventoryEvent event : events) {
+            if (event.kind() == InventoryEvent.Kind.PART) {
+                partsChanged = true;
+            } else {
+                productsChanged = true;
+            }
+        }
+        if (partsChanged && (partResults != null || partSort.comparator(tvParts) != null)) {
+            updatePartsTv();
+        }
+        if (productsChanged && (productResults != null || productSort.comparator(tvProducts) != null)) {
+            updateProdTv();
+        } else if (partsChanged) {
+            tvProducts.refresh();
+        }
+    }
+    /**
+     * Shows how many parts and products are at or below their minimum stock on the Low Stock button.
+     */
+    private void updateLowStock() {
+        int low = Inventory.getPartReorders().countAtOrBelowMin() + Inventory.getProductReorders().countAtOrBelowMin();
+        btnLowStock.setText(low == 0 ? "Low Stock" : "Low Stock (" + low + ")");
+    }
+    /**
+     * Lists the parts and products at or below their minimum stock, most urgent first,
+     * with how many to order to refill each one to its maximum.
+     *
+     * @param event The triggering event.
+     */
+    @FXML
+    private void showLowStock(ActionEvent event) {
+        StringBuilder content = new StringBuilder();
+        List<Part> parts = Inventory.getPartReorders().atOrBelowMin();
+        List<Product> products = Inventory.getProductReorders().atOrBelowMin();
+        int listed = 0;
+        for (Part part : parts) {
+            if (listed++ < LOW_STOCK_LISTED) {
+                content.append(String.format("Part %d %s: %d in stock, min %d, order %d%n", part.getPartID(), part.getPartName(),
+                        part.getPartInStock(), part.getPartMin(), part.getPartMax() - part.getPartInStock()));
+            }
+        }
+        for (Product product : products) {
+            if (listed++ < LOW_STOCK_LISTED) {
+                content.append(String.format("Product %d %s: %d in stock, min %d, build %d%n", product.getProductID(), product.getProductName(),
+                        product.getProductInStock(), product.getProductMin(), product.getProductMax() - product.getProductInStock()));
+            }
+        }
+        if (listed > LOW_STOCK_LISTED) {
+            content.append("...and ").append(listed - LOW_STOCK_LISTED).append(" more.");
+        }
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Low Stock");
+        alert.setHeaderText(parts.size() + " parts and " + products.size() + " products at or below minimum");
+        alert.setContentText(listed == 0 ? "Every part and product is above its minimum." : content.toString());
+        alert.showAndWait();
     }
     /**
      * Exit the application.
@@ -248,12 +343,10 @@ public class MainScreenController implements Initializable {
         if (alertType == 3 && result.isPresent() && result.get() == ButtonType.OK) {
             Part part = tvParts.getSelectionModel().getSelectedItem();
             removePart(part);
-            updatePartsTv();
         }
         if (alertType == 6 && result.isPresent() && result.get() == ButtonType.OK) {
             Product product = tvProducts.getSelectionModel().getSelectedItem();
             removeProd(product);
-            updateProdTv();
         }
         if (alertType == 7 && result.isPresent() && result.get() == ButtonType.OK) {
             System.exit(0);
@@ -261,7 +354,21 @@ public class MainScreenController implements Initializable {
     }
 
     /**
-     * Initialize method, sets up the table columns and updates the table view.
+     * Resets the screen on each visit: clears the searches and sorts, shows the whole inventory and counts low stock.
+     */
+    @Override
+    public void enter() {
+        tvParts.getSortOrder().clear();
+        tvProducts.getSortOrder().clear();
+        txtSearchParts.clear();
+        txtSearchProducts.clear();
+        updatePartsTv();
+        updateProdTv();
+        updateLowStock();
+    }
+    /**
+     * Initialize method, sets up the table columns, searches and sorting, and follows inventory changes.
+     * The tables are filled by enter, each time the screen is shown.
      *
      * @param url The location used to resolve relative paths for the root object.
      * @param rb The resources used to localize the root object.
@@ -276,7 +383,23 @@ public class MainScreenController implements Initializable {
         tvProductsNameColumn.setCellValueFactory(cellData -> cellData.getValue().productNameProperty());
         tvProductsInvColumn.setCellValueFactory(cellData -> cellData.getValue().productInvProperty().asObject());
         tvProductsPriceColumn.setCellValueFactory(cellData -> cellData.getValue().productPriceProperty().asObject());
-        updatePartsTv();
-        updateProdTv();
+        tvProductsBuildColumn.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(Inventory.getBuildableQuantity(cellData.getValue())));
+        partQuery = BackgroundQuery.forParts(this::showParts);
+        productQuery = BackgroundQuery.forProducts(this::showProducts);
+        partSort = new TableSort<Part>()
+                .by(tvPartsIDColumn, Comparator.comparingInt(Part::getPartID))
+                .by(tvPartsNameColumn, Comparator.comparing(Part::getPartName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)))
+                .by(tvPartsInvColumn, Comparator.comparingInt(Part::getPartInStock))
+                .by(tvPartsPriceColumn, Comparator.comparingDouble(Part::getPartPrice));
+        productSort = new TableSort<Product>()
+                .by(tvProductsIDColumn, Comparator.comparingInt(Product::getProductID))
+                .by(tvProductsNameColumn, Comparator.comparing(Product::getProductName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)))
+                .by(tvProductsInvColumn, Comparator.comparingInt(Product::getProductInStock))
+                .by(tvProductsPriceColumn, Comparator.comparingDouble(Product::getProductPrice));
+        txtSearchParts.textProperty().addListener((obs, oldTerm, newTerm) -> updatePartsTv());
+        txtSearchProducts.textProperty().addListener((obs, oldTerm, newTerm) -> updateProdTv());
+        TableSort.sortWith(tvParts, this::updatePartsTv);
+        TableSort.sortWith(tvProducts, this::updateProdTv);
+        Inventory.getEvents().subscribe(REFRESH_WINDOW, Platform::runLater, this::inventoryChanged);
     }
 }
\ No newline at end of file
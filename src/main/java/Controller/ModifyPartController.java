@@ -2,20 +2,15 @@ package Controller;
 
 import Model.InHousePart;
 import Model.Inventory;
+import Model.NumberParser;
 import Model.OutsourcedPart;
 import Model.Part;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 import java.io.IOException;
 import java.net.URL;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import static Model.Inventory.getPartInv;
@@ -23,7 +18,7 @@ import static Controller.MainScreenController.partToModifyIndex;
 /**
  * Controller for modifying existing parts in the application.
  */
-public class ModifyPartController implements Initializable {
+public class ModifyPartController implements Initializable, Screen {
 
     @FXML
     private Label lblModPartIDNumber, lblModPart;
@@ -33,7 +28,7 @@ public class ModifyPartController implements Initializable {
     private RadioButton radioModPartInH, radioModPartOut;
     private ToggleGroup toggleGroup;
     private boolean isOutsourced;
-    private final int partIndex = partToModifyIndex();
+    private int partIndex;
     private int partID;
     private String exceptionMessage = "";
 
@@ -81,11 +76,11 @@ public class ModifyPartController implements Initializable {
      * @param partMin   The minimum inventory level of the part.
      * @param partMax   The maximum inventory level of the part.
      * @param partDyn   Dynamic field value representing either Machine ID or Company Name based on part type.
+     * @param machineID The machine ID already parsed from partDyn, used for an in-house part.
      * @return A Part object with the provided values.
-     * @throws NumberFormatException If parsing of numeric values fails.
      */
     @FXML
-    private Part createPart(String partName, String partInv, String partPrice, String partMin, String partMax, String partDyn) throws NumberFormatException {
+    private Part createPart(String partName, int partInv, double partPrice, int partMin, int partMax, String partDyn, int machineID) {
         Part part;
         if (isOutsourced) {
             part = new OutsourcedPart();
@@ -93,15 +88,15 @@ public class ModifyPartController implements Initializable {
             System.out.println("OutsourcedPart");
         } else {
             part = new InHousePart();
-            ((InHousePart) part).setMachineID(Integer.parseInt(partDyn));
+            ((InHousePart) part).setMachineID(machineID);
             System.out.println("InHousePart");
         }
         part.setPartID(partID);
         part.setPartName(partName);
-        part.setPartInStock(Integer.parseInt(partInv));
-        part.setPartPrice(Double.parseDouble(partPrice));
-        part.setPartMin(Integer.parseInt(partMin));
-        part.setPartMax(Integer.parseInt(partMax));
+        part.setPartInStock(partInv);
+        part.setPartPrice(partPrice);
+        part.setPartMin(partMin);
+        part.setPartMax(partMax);
 
         return part;
     }
@@ -122,24 +117,29 @@ public class ModifyPartController implements Initializable {
         String partMax = txtModPartMax.getText();
         String partDyn = txtModPart.getText();
 
-        try {
-            exceptionMessage = Part.isPartValid(partName, Integer.parseInt(partMin), Integer.parseInt(partMax), Integer.parseInt(partInv), Double.parseDouble(partPrice), isOutsourced, partDyn, exceptionMessage);
-            if (exceptionMessage.length() > 0) {
-                displayAlert(1, exceptionMessage);
-                exceptionMessage = "";
-            } else {
-                Part part = createPart(partName, partInv, partPrice, partMin, partMax, partDyn);
-                Inventory.updatePart(partIndex, part);
-
-                Parent modifyProductSave = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/view/MainScreen.fxml")));
-                Scene scene = new Scene(modifyProductSave);
-                Stage window = (Stage) ((Node) event.getSource()).getScene().getWindow();
-                window.setScene(scene);
-                window.show();
-            }
-        } catch (NumberFormatException e) {
-            System.err.println("Caught NumberFormatException: " + e.getMessage());
+        long inv = NumberParser.parseInt(partInv);
+        double price = NumberParser.parseDouble(partPrice);
+        long min = NumberParser.parseInt(partMin);
+        long max = NumberParser.parseInt(partMax);
+        if (inv == NumberParser.INVALID_INT || min == NumberParser.INVALID_INT || max == NumberParser.INVALID_INT || Double.isNaN(price)) {
+            System.err.println("Invalid number in part form.");
             displayAlert(2, "Invalid input: Please ensure all fields are correctly filled out.");
+            return;
+        }
+
+        // Parse the machine ID once; the text form of isPartValid is only needed to report a company name or an unparseable ID.
+        long machineID = isOutsourced ? NumberParser.INVALID_INT : NumberParser.parseInt(partDyn);
+        exceptionMessage = machineID == NumberParser.INVALID_INT
+                ? Part.isPartValid(partName, (int) min, (int) max, (int) inv, price, isOutsourced, partDyn, exceptionMessage)
+                : Part.isPartValid(partName, (int) min, (int) max, (int) inv, price, (int) machineID, exceptionMessage);
+        if (exceptionMessage.length() > 0) {
+            displayAlert(1, exceptionMessage);
+            exceptionMessage = "";
+        } else {
+            Part part = createPart(partName, (int) inv, price, (int) min, (int) max, partDyn, (int) machineID);
+            Inventory.updatePart(partIndex, part);
+
+            Navigator.show(event, Navigator.View.MAIN);
         }
     }
 
@@ -157,11 +157,7 @@ public class ModifyPartController implements Initializable {
 
 
         if (result.get() == ButtonType.OK) {
-            Parent modifyPartCancel = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-            Scene scene = new Scene(modifyPartCancel);
-            Stage window = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            window.setScene(scene);
-            window.show();
+            Navigator.show(event, Navigator.View.MAIN);
         } else {
             System.out.println("Cancelled.");
         }
@@ -191,16 +187,12 @@ public class ModifyPartController implements Initializable {
     }
 
     /**
-     * Initializes the controller after its root element has been completely processed.
-     *
-     * @param url The location to resolve relative paths for the root object.
-     * @param rb  The resources used to localize the root object.
+     * Fills the form with the part selected on the main screen.
      */
     @Override
-    public void initialize(URL url, ResourceBundle rb) {
-        toggleGroup = new ToggleGroup();
-        radioModPartInH.setToggleGroup(toggleGroup);
-        radioModPartOut.setToggleGroup(toggleGroup);
+    public void enter() {
+        partIndex = partToModifyIndex();
+        exceptionMessage = "";
         Part part = getPartInv().get(partIndex);
         partID = getPartInv().get(partIndex).getPartID();
         lblModPartIDNumber.setText("Auto-Gen: " + partID);
@@ -212,13 +204,29 @@ public class ModifyPartController implements Initializable {
         if (part instanceof InHousePart) {
             lblModPart.setText("Machine ID");
             txtModPart.setText(Integer.toString(((InHousePart) getPartInv().get(partIndex)).getMachineID()));
+            txtModPart.setPromptText("Machine ID");
             radioModPartInH.setSelected(true);
             isOutsourced = false;
         } else {
             lblModPart.setText("Company Name");
             txtModPart.setText(((OutsourcedPart) getPartInv().get(partIndex)).getCompanyName());
+            txtModPart.setPromptText("Company Name");
             radioModPartOut.setSelected(true);
             isOutsourced = true;
         }
     }
+
+    /**
+     * Initializes the controller after its root element has been completely processed.
+     * The form is filled in by enter, each time the screen is shown.
+     *
+     * @param url The location to resolve relative paths for the root object.
+     * @param rb  The resources used to localize the root object.
+     */
+    @Override
+    public void initialize(URL url, ResourceBundle rb) {
+        toggleGroup = new ToggleGroup();
+        radioModPartInH.setToggleGroup(toggleGroup);
+        radioModPartOut.setToggleGroup(toggleGroup);
+    }
 }
\ No newline at end of file
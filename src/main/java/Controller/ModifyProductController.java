@@ -1,25 +1,22 @@
 package Controller;
 
+import Model.BackgroundQuery;
 import Model.Inventory;
+import Model.NumberParser;
 import Model.Part;
 import Model.Product;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Comparator;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import static Controller.MainScreenController.productToModifyIndex;
-import static Model.Inventory.getPartInv;
 import static Model.Inventory.getProductInv;
 
 /**
@@ -27,7 +24,7 @@ import static Model.Inventory.getProductInv;
  * This class allows searching for parts, adding and deleting parts, and saving or canceling the modification.
  * <p>
  * Logical or Runtime Errors Corrected:
- * - Added NumberFormatException handling to ensure that empty fields don't crash the application.
+ * - Empty or non-numeric fields are reported with an alert instead of crashing the application.
  * </p>
  * <p>
  * Future Enhancements:
@@ -35,7 +32,7 @@ import static Model.Inventory.getProductInv;
  * - Implement batch modifications for products.
  * </p>
  */
-public class ModifyProductController implements Initializable {
+public class ModifyProductController implements Initializable, Screen {
 
     @FXML private TextField txtModProdName, txtModProdInv, txtModProdPrice, txtModProdMin, txtModProdMax, txtModProdSearch;
     @FXML private TableView<Part> tvModProdAdd, tvModProdDelete;
@@ -48,26 +45,36 @@ public class ModifyProductController implements Initializable {
      * Observable list to hold current parts associated with the product being modified.
      */
     private ObservableList<Part> currentParts = FXCollections.observableArrayList();
-    private int productIndex = productToModifyIndex();
+    /**
+     * The product being modified. Its sub-assemblies, which this screen does not edit, are kept on save.
+     */
+    private Product original;
+    private int productIndex;
     private String exceptionMessage = "";
     private int productID;
+    /**
+     * The current part search results, or null when the picker shows the whole inventory.
+     */
+    private ObservableList<Part> partResults;
+    /**
+     * Runs the part picker's search and header sorts in the background. Header sorts reorder the
+     * picker's paged view, never the inventory itself.
+     */
+    private BackgroundQuery<Part> partQuery;
+    private TableSort<Part> partSort;
+    /**
+     * Set by the Search button, so the next result reports when nothing matches.
+     */
+    private boolean reportEmptyParts;
     /**
      * Handles the search functionality in the Modify Product screen.
+     * Results already update as the user types, so this only re-runs the search and reports when nothing matches.
      * @param event ActionEvent associated with the function call.
      */
     @FXML
     void modSearch(ActionEvent event) {
-        String searchPart = txtModProdSearch.getText();
-        int partIndex = -1;
-        if (Inventory.lookupPart(searchPart) == -1) {
-            displayAlert(1);
-        } else {
-            partIndex = Inventory.lookupPart(searchPart);
-            Part tempPart = Inventory.getPartInv().get(partIndex);
-            ObservableList<Part> tempPartList = FXCollections.observableArrayList();
-            tempPartList.add(tempPart);
-            tvModProdAdd.setItems(tempPartList);
-        }
+        reportEmptyParts = true;
+        updateAddPartsTv();
     }
 
     /**
@@ -77,6 +84,9 @@ public class ModifyProductController implements Initializable {
     @FXML
     void modAdd(ActionEvent event) {
         Part part = tvModProdAdd.getSelectionModel().getSelectedItem();
+        if (part == null) {
+            return;
+        }
         currentParts.add(part);
         updateDeletePartsTv();
     }
@@ -110,33 +120,38 @@ public class ModifyProductController implements Initializable {
         String productMin = txtModProdMin.getText();
         String productMax = txtModProdMax.getText();
 
-        try {
-            exceptionMessage = Product.isProductValid(productName, Integer.parseInt(productMin), Integer.parseInt(productMax), Integer.parseInt(productInv), Double.parseDouble(productPrice), currentParts, exceptionMessage);
-            if (exceptionMessage.length() > 0) {
-                displayAlert(2);
-                exceptionMessage = "";
-            }
-            else {
-                System.out.println("Product name: " + productName);
-                Product newProduct = new Product();
-                newProduct.setProductID(productID);
-                newProduct.setProductName(productName);
-                newProduct.setProductInStock(Integer.parseInt(productInv));
-                newProduct.setProductPrice(Double.parseDouble(productPrice));
-                newProduct.setProductMin(Integer.parseInt(productMin));
-                newProduct.setProductMax(Integer.parseInt(productMax));
-                newProduct.setProductParts(currentParts);
-                Inventory.updateProd(productIndex, newProduct);
+        long inv = NumberParser.parseInt(productInv);
+        double price = NumberParser.parseDouble(productPrice);
+        long min = NumberParser.parseInt(productMin);
+        long max = NumberParser.parseInt(productMax);
+        if (inv == NumberParser.INVALID_INT || min == NumberParser.INVALID_INT || max == NumberParser.INVALID_INT || Double.isNaN(price)) {
+            displayAlert(3);
+            return;
+        }
 
-                Parent modifyProductSaveParent = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-                Scene scene = new Scene(modifyProductSaveParent);
-                Stage window = (Stage) ((Node) event.getSource()).getScene().getWindow();
-                window.setScene(scene);
-                window.show();
-            }
+        Product newProduct = new Product();
+        newProduct.setProductID(productID);
+        newProduct.setProductName(productName);
+        newProduct.setProductInStock((int) inv);
+        newProduct.setProductPrice(price);
+        newProduct.setProductMin((int) min);
+        newProduct.setProductMax((int) max);
+        newProduct.setProductParts(currentParts);
+        newProduct.getBillOfMaterials().setSubassemblies(original.getBillOfMaterials());
+        // Priced at save time, so a part whose price changed while the screen was open counts at its new price.
+        double partsCost = Inventory.getProductCost(newProduct);
+
+        exceptionMessage = Product.isProductValid(productName, (int) min, (int) max, (int) inv, price,
+                currentParts.size() + original.getBillOfMaterials().totalSubassemblyQuantity(), partsCost, exceptionMessage);
+        if (exceptionMessage.length() > 0) {
+            displayAlert(2);
+            exceptionMessage = "";
         }
-        catch (NumberFormatException e) {
-            displayAlert(3);
+        else {
+            System.out.println("Product name: " + productName);
+            Inventory.updateProd(productIndex, newProduct);
+
+            Navigator.show(event, Navigator.View.MAIN);
         }
     }
     /**
@@ -150,11 +165,7 @@ public class ModifyProductController implements Initializable {
         displayAlert(5);
         Optional<ButtonType> result = alert.showAndWait();
         if (result.get() == ButtonType.OK) {
-            Parent modifyProductCancelParent = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-            Scene scene = new Scene(modifyProductCancelParent);
-            Stage window = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            window.setScene(scene);
-            window.show();
+            Navigator.show(event, Navigator.View.MAIN);
         }
         else {
             System.out.println("Cancelled.");
@@ -198,13 +209,15 @@ public class ModifyProductController implements Initializable {
         }
     }
     /**
-     * Initializes the ModifyProductController. This method sets initial data and updates tables.
-     * @param url The location used to resolve relative paths for the root object, or null if the location is not known.
-     * @param rb The resources used to localize the root object, or null if the root object was not localized.
+     * Fills the form and the product's parts with the product selected on the main screen,
+     * and shows the whole inventory to pick from.
      */
     @Override
-    public void initialize(URL url, ResourceBundle rb) {
+    public void enter() {
+        productIndex = productToModifyIndex();
+        exceptionMessage = "";
         Product product = getProductInv().get(productIndex);
+        original = product;
         productID = getProductInv().get(productIndex).getProductID();
         lblModifyProductIDNumber.setText("Auto-Gen: " + productID);
         txtModProdName.setText(product.getProductName());
@@ -213,6 +226,19 @@ public class ModifyProductController implements Initializable {
         txtModProdMin.setText(Integer.toString(product.getProductMin()));
         txtModProdMax.setText(Integer.toString(product.getProductMax()));
         currentParts = product.getProductParts();
+        tvModProdAdd.getSortOrder().clear();
+        txtModProdSearch.clear();
+        updateAddPartsTv();
+        updateDeletePartsTv();
+    }
+    /**
+     * Initializes the ModifyProductController. This method sets up the tables; the product is filled in by enter,
+     * each time the screen is shown.
+     * @param url The location used to resolve relative paths for the root object, or null if the location is not known.
+     * @param rb The resources used to localize the root object, or null if the root object was not localized.
+     */
+    @Override
+    public void initialize(URL url, ResourceBundle rb) {
         tcModProdAddID.setCellValueFactory(cellData -> cellData.getValue().partIdProp().asObject());
         tcModProdAddName.setCellValueFactory(cellData -> cellData.getValue().partNameProp());
         tcModProdAddInv.setCellValueFactory(cellData -> cellData.getValue().partInvProp().asObject());
@@ -221,12 +247,30 @@ public class ModifyProductController implements Initializable {
         tcModProdDeleteName.setCellValueFactory(cellData -> cellData.getValue().partNameProp());
         tcModProdDeleteInv.setCellValueFactory(cellData -> cellData.getValue().partInvProp().asObject());
         tcModProdDeletePrice.setCellValueFactory(cellData -> cellData.getValue().partPriceProp().asObject());
-        updateAddPartsTv();
-        updateDeletePartsTv();
+        partQuery = BackgroundQuery.forParts(this::showParts);
+        partSort = new TableSort<Part>()
+                .by(tcModProdAddID, Comparator.comparingInt(Part::getPartID))
+                .by(tcModProdAddName, Comparator.comparing(Part::getPartName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)))
+                .by(tcModProdAddInv, Comparator.comparingInt(Part::getPartInStock))
+                .by(tcModProdAddPrice, Comparator.comparingDouble(Part::getPartPrice));
+        txtModProdSearch.textProperty().addListener((obs, oldTerm, newTerm) -> updateAddPartsTv());
+        TableSort.sortWith(tvModProdAdd, this::updateAddPartsTv);
     }
 
     public void updateAddPartsTv() {
-        tvModProdAdd.setItems(getPartInv());
+        partQuery.run(txtModProdSearch.getText(), partSort.comparator(tvModProdAdd));
+    }
+    /**
+     * Shows a finished part search in the Add Parts TableView.
+     * @param result The search results and the view to show.
+     */
+    private void showParts(BackgroundQuery.Result<Part> result) {
+        partResults = result.results();
+        tvModProdAdd.setItems(result.view());
+        if (reportEmptyParts && partResults != null && partResults.isEmpty()) {
+            displayAlert(1);
+        }
+        reportEmptyParts = false;
     }
 
     public void updateDeletePartsTv() {
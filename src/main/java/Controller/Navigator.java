@@ -0,0 +1,149 @@
+package Controller;
+
+import javafx.event.ActionEvent;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Switches the application window between its screens.
+ * <p>
+ * Each view in /view is loaded from its FXML file once. Its scene graph, controller and Scene are kept and shown
+ * again on later visits, after the controller's enter method has reset the screen, so a switch only costs
+ * a layout pass instead of parsing FXML and building the scene graph again.
+ * Views can be loaded ahead of time on a background thread with preload, so even the first visit is quick.
+ * </p>
+ */
+public final class Navigator {
+    /**
+     * The application's screens and their FXML files.
+     */
+    public enum View {
+        MAIN("/view/MainScreen.fxml"),
+        ADD_PART("/view/AddPart.fxml"),
+        MODIFY_PART("/view/ModifyPart.fxml"),
+        ADD_PRODUCT("/view/AddProduct.fxml"),
+        MODIFY_PRODUCT("/view/ModifyProduct.fxml");
+
+        private final String resource;
+
+        View(String resource) {
+            this.resource = resource;
+        }
+    }
+
+    /**
+     * Loaded views, or views being preloaded. Shared with the preloading thread.
+     */
+    private static final Map<View, CompletableFuture<Loaded>> loaded = new ConcurrentHashMap<>();
+    /**
+     * A Scene for each view shown so far. Only used on the JavaFX application thread.
+     */
+    private static final Map<View, Scene> scenes = new EnumMap<>(View.class);
+
+    private Navigator() {
+    }
+
+    /**
+     * Shows a screen in the window that raised an event.
+     * @param event The event, raised by a control in the window.
+     * @param view The screen to show.
+     * @throws IOException If the screen's FXML file isn't found or can't be loaded.
+     */
+    public static void show(ActionEvent event, View view) throws IOException {
+        show((Stage) ((Node) event.getSource()).getScene().getWindow(), view);
+    }
+
+    /**
+     * Shows a screen in a window, loading it first if this is its first visit.
+     * Must be called on the JavaFX application thread.
+     * @param stage The window.
+     * @param view The screen to show.
+     * @throws IOException If the screen's FXML file isn't found or can't be loaded.
+     */
+    public static void show(Stage stage, View view) throws IOException {
+        Loaded screen = get(view);
+        Scene scene = scenes.get(view);
+        if (scene == null) {
+            scene = new Scene(screen.root);
+            scenes.put(view, scene);
+        }
+        if (screen.controller instanceof Screen) {
+            ((Screen) screen.controller).enter();
+        }
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    /**
+     * Loads every screen that has not been loaded yet, in the background. Failures are left for show to report.
+     * @param executor Runs the loading, off the JavaFX application thread.
+     */
+    public static void preloadAll(Executor executor) {
+        for (View view : View.values()) {
+            preload(executor, view);
+        }
+    }
+
+    /**
+     * Loads a screen in the background, unless it has been loaded already. Failures are left for show to report.
+     * @param executor Runs the loading, off the JavaFX application thread.
+     * @param view The screen to load.
+     */
+    public static void preload(Executor executor, View view) {
+        loaded.computeIfAbsent(view, key -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(key);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor));
+    }
+
+    /**
+     * Returns a loaded screen, loading it now if it has not been loaded or preloaded,
+     * or waiting for a preload already under way.
+     */
+    private static Loaded get(View view) throws IOException {
+        CompletableFuture<Loaded> future = loaded.get(view);
+        if (future == null) {
+            Loaded screen = load(view);
+            future = loaded.putIfAbsent(view, CompletableFuture.completedFuture(screen));
+            if (future == null) {
+                return screen;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            loaded.remove(view, future);
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Loaded load(View view) throws IOException {
+        FXMLLoader loader = new FXMLLoader(Navigator.class.getResource(view.resource));
+        Parent root = loader.load();
+        return new Loaded(root, loader.getController());
+    }
+
+    /**
+     * A screen's scene graph and its controller.
+     */
+    private record Loaded(Parent root, Object controller) {
+    }
+}
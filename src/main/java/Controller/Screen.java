@@ -0,0 +1,13 @@
+package Controller;
+
+/**
+ * A controller whose screen is loaded once and shown many times by the Navigator.
+ * initialize only wires up the controls, and may run on a background thread when the screen is preloaded;
+ * everything that depends on the inventory or on the previous visit is done in enter.
+ */
+interface Screen {
+    /**
+     * Resets the screen for a new visit. Called on the JavaFX application thread each time the screen is shown.
+     */
+    void enter();
+}
@@ -0,0 +1,67 @@
+package Controller;
+
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns a table's sort order into a comparator over its items.
+ * The comparator reads the items' values directly rather than through the columns' cell value factories,
+ * so it can be used to sort on a background thread.
+ *
+ * @param <T> The type of item in the table, either Part or Product.
+ */
+final class TableSort<T> {
+    private final Map<TableColumn<T, ?>, Comparator<T>> keys = new HashMap<>();
+
+    /**
+     * Registers the ascending order of a column.
+     * @param column The column.
+     * @param key Compares items by the column's value.
+     * @return This object, for chaining.
+     */
+    TableSort<T> by(TableColumn<T, ?> column, Comparator<T> key) {
+        keys.put(column, key);
+        return this;
+    }
+
+    /**
+     * Builds the comparator for the table's current sort order.
+     * @param table The table.
+     * @return The comparator, or null if the table is not sorted by any registered column.
+     */
+    Comparator<T> comparator(TableView<T> table) {
+        Comparator<T> comparator = null;
+        for (TableColumn<T, ?> column : table.getSortOrder()) {
+            Comparator<T> key = keys.get(column);
+            if (key == null) {
+                continue;
+            }
+            if (column.getSortType() == TableColumn.SortType.DESCENDING) {
+                key = key.reversed();
+            }
+            comparator = comparator == null ? key : comparator.thenComparing(key);
+        }
+        return comparator;
+    }
+
+    /**
+     * Makes a table's header sorts run its query again instead of sorting its items in place.
+     * Sorts requested before the table is shown, including the one made when the policy is set,
+     * are left to the query its screen runs on entry.
+     * @param table The table.
+     * @param query Runs the table's search and sort.
+     * @param <T> The type of item in the table.
+     */
+    static <T> void sortWith(TableView<T> table, Runnable query) {
+        table.setSortPolicy(view -> {
+            if (view.getScene() != null) {
+                query.run();
+            }
+            return true;
+        });
+    }
+}
@@ -0,0 +1,203 @@
+package Model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.WeakListChangeListener;
+import javafx.concurrent.Task;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs the search and sort behind an inventory table on a background thread.
+ * <p>
+ * Each run searches the names through the inventory's trigram search indexes and puts the hits in order in a
+ * javafx.concurrent.Task, so neither a short term that scans every name nor a sort over a million rows holds up
+ * rendering. Only the ID match, a single lookup, and the copy of the inventory taken when there is no term are made on
+ * the JavaFX application thread. Starting a new run cancels the one in progress; a cancelled run stops within a few
+ * thousand comparisons. The finished result is handed over on the application thread as a single paged view, ready
+ * to be set as the table's items in one update.
+ * </p>
+ * <p>
+ * Search results are a fixed list, as before. When the whole inventory is shown in a sorted order, the order
+ * must match the live list, so a run that the inventory changed under is started again rather than delivered.
+ * </p>
+ *
+ * @param <T> The type of item queried, either Part or Product.
+ */
+public class BackgroundQuery<T> {
+    /**
+     * Comparisons made between checks for cancellation.
+     */
+    private static final int CHECK_INTERVAL = 4096;
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ObservableList<T> source;
+    private final Supplier<List<T>> snapshot;
+    private final Function<String, Set<T>> searchNames;
+    private final IntFunction<T> byID;
+    private final ToIntFunction<T> idOf;
+    private final Consumer<Result<T>> onResult;
+    /**
+     * Counts changes to the source, so a run can tell whether its copy is still current.
+     */
+    private int generation;
+    private final ListChangeListener<T> sourceListener = change -> generation++;
+    private boolean listening;
+    private Task<Outcome<T>> running;
+
+    private BackgroundQuery(ObservableList<T> source, Supplier<List<T>> snapshot, Function<String, Set<T>> searchNames,
+                            IntFunction<T> byID, ToIntFunction<T> idOf, Consumer<Result<T>> onResult) {
+        this.source = source;
+        this.snapshot = snapshot;
+        this.searchNames = searchNames;
+        this.byID = byID;
+        this.idOf = idOf;
+        this.onResult = onResult;
+    }
+
+    /**
+     * Creates a query over the part inventory. The query only starts watching the inventory when it is first run,
+     * so it can be created on any thread.
+     * @param onResult Receives each finished result on the JavaFX application thread.
+     * @return The query.
+     */
+    public static BackgroundQuery<Part> forParts(Consumer<Result<Part>> onResult) {
+        return new BackgroundQuery<>(Inventory.getPartInv(), Inventory::copyPartInv, Inventory::searchPartNames,
+                Inventory::lookupPart, Part::getPartID, onResult);
+    }
+
+    /**
+     * Creates a query over the product inventory. The query only starts watching the inventory when it is first run,
+     * so it can be created on any thread.
+     * @param onResult Receives each finished result on the JavaFX application thread.
+     * @return The query.
+     */
+    public static BackgroundQuery<Product> forProducts(Consumer<Result<Product>> onResult) {
+        return new BackgroundQuery<>(Inventory.getProductInv(), Inventory::copyProductInv, Inventory::searchProductNames,
+                Inventory::lookupProd, Product::getProductID, onResult);
+    }
+
+    /**
+     * Starts a search and sort, cancelling the one in progress. Must be called on the JavaFX application thread.
+     * With a blank term and no comparator the result is delivered straight away.
+     * @param term The search term, matched against names ignoring case and against IDs. Blank or null shows every item.
+     * @param comparator The order to show items in, or null for ID order when searching and list order otherwise.
+     */
+    public void run(String term, Comparator<? super T> comparator) {
+        cancel();
+        if (!listening) {
+            source.addListener(new WeakListChangeListener<>(sourceListener));
+            listening = true;
+        }
+        String trimmed = term == null ? "" : term.trim();
+        if (trimmed.isEmpty() && comparator == null) {
+            onResult.accept(new Result<>(null, new PagedList<>(source)));
+            return;
+        }
+        boolean searching = !trimmed.isEmpty();
+        // The ID index is not safe to read off this thread, but the name indexes are.
+        long id = searching ? NumberParser.parseInt(trimmed) : NumberParser.INVALID_INT;
+        T idMatch = id == NumberParser.INVALID_INT ? null : byID.apply((int) id);
+        List<T> rows = searching ? null : snapshot.get();
+        int started = generation;
+        Task<Outcome<T>> task = new Task<>() {
+            @Override
+            protected Outcome<T> call() {
+                List<T> found = null;
+                if (searching) {
+                    Set<T> hits = searchNames.apply(trimmed);
+                    if (idMatch != null) {
+                        hits.add(idMatch);
+                    }
+                    if (isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    found = new ArrayList<>(hits);
+                    found.sort(cancellable(Comparator.comparingInt(idOf), this::isCancelled));
+                }
+                int[] order = null;
+                if (comparator != null) {
+                    order = PagedList.orderOf(found == null ? rows : found, BackgroundQuery.<T>cancellable(comparator, this::isCancelled));
+                }
+                return new Outcome<>(found, order);
+            }
+        };
+        task.setOnSucceeded(event -> {
+            if (running != task) {
+                return;
+            }
+            running = null;
+            Outcome<T> outcome = task.getValue();
+            if (outcome.hits == null && generation != started) {
+                run(term, comparator);
+                return;
+            }
+            ObservableList<T> results = outcome.hits == null ? null : FXCollections.observableList(outcome.hits);
+            PagedList<T> view = new PagedList<>(results == null ? source : results);
+            view.setOrder(outcome.order);
+            onResult.accept(new Result<>(results, view));
+        });
+        task.setOnFailed(event -> {
+            if (running == task) {
+                running = null;
+                System.err.println("Inventory query failed: " + task.getException());
+            }
+        });
+        running = task;
+        EXECUTOR.execute(task);
+    }
+
+    /**
+     * Cancels the run in progress, if any. Its result is never delivered.
+     */
+    public void cancel() {
+        if (running != null) {
+            running.cancel(false);
+            running = null;
+        }
+    }
+
+    /**
+     * Wraps a comparator so a sort in progress stops once the run is cancelled.
+     */
+    private static <E> Comparator<E> cancellable(Comparator<? super E> comparator, BooleanSupplier cancelled) {
+        int[] comparisons = new int[1];
+        return (a, b) -> {
+            if (++comparisons[0] % CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            return comparator.compare(a, b);
+        };
+    }
+
+    /**
+     * What a run found, before it is turned into a view on the application thread.
+     */
+    private record Outcome<T>(List<T> hits, int[] order) {
+    }
+
+    /**
+     * A finished search and sort.
+     * @param results The matching items in ID order, or null when every item is shown.
+     * @param view The paged, ordered view to show in the table.
+     * @param <T> The type of item, either Part or Product.
+     */
+    public record Result<T>(ObservableList<T> results, PagedList<T> view) {
+    }
+}
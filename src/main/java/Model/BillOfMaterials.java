@@ -0,0 +1,505 @@
+package Model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The bill of materials of a single product: which parts it is built from, and how many of each,
+ * plus any sub-assemblies, which are other products built into it.
+ * Lines are stored as two parallel primitive arrays sorted by ID, so a line costs eight bytes
+ * and no Part or Product references are held. A list of Part objects is only built when a screen asks for one.
+ * <p>
+ * On disk both kinds of line share one list: a sub-assembly is stored under its product ID negated.
+ * Older files, which only hold parts, read unchanged.
+ * </p>
+ * <p>
+ * Edits happen on the JavaFX thread, but explosions and buildable counts read bills from worker threads.
+ * Each kind of line is therefore an immutable Lines, copied on every edit and published through a volatile field.
+ * </p>
+ */
+public class BillOfMaterials {
+    private static final int[] EMPTY = new int[0];
+    private volatile Lines parts = Lines.NONE;
+    private volatile Lines subassemblies = Lines.NONE;
+    /**
+     * Called after every change to the bill, so indexes over it can be kept current.
+     */
+    private final Runnable onChange;
+
+    /**
+     * Creates an empty bill of materials.
+     */
+    public BillOfMaterials() {
+        this(() -> { });
+    }
+
+    /**
+     * Creates an empty bill of materials that reports its changes.
+     * @param onChange Called after every change to the bill.
+     */
+    public BillOfMaterials(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    /**
+     * Returns the number of distinct parts on the bill.
+     * @return The part line count.
+     */
+    public int size() {
+        return parts.size();
+    }
+
+    /**
+     * Checks whether the bill has no parts and no sub-assemblies.
+     * @return True if the bill is empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return parts.size() == 0 && subassemblies.size() == 0;
+    }
+
+    /**
+     * Returns the part ID on a line.
+     * @param line The line number, from 0 to size() - 1.
+     * @return The part ID.
+     */
+    public int getPartID(int line) {
+        return parts.id(line);
+    }
+
+    /**
+     * Returns the quantity on a line.
+     * @param line The line number, from 0 to size() - 1.
+     * @return The quantity of the part.
+     */
+    public int getQuantity(int line) {
+        return parts.quantity(line);
+    }
+
+    /**
+     * Returns how many of a part the bill calls for.
+     * @param partID The ID of the part.
+     * @return The quantity, or 0 if the part is not on the bill.
+     */
+    public int quantityOf(int partID) {
+        return parts.quantityOf(partID);
+    }
+
+    /**
+     * Returns the total number of part units on the bill, not counting sub-assemblies.
+     * @return The sum of every part line's quantity.
+     */
+    public int totalQuantity() {
+        return parts.totalQuantity();
+    }
+
+    /**
+     * Returns the total number of sub-assembly units on the bill.
+     * @return The sum of every sub-assembly line's quantity.
+     */
+    public int totalSubassemblyQuantity() {
+        return subassemblies.totalQuantity();
+    }
+
+    /**
+     * Adds a quantity of a part, merging it into the existing line if the part is already on the bill.
+     * @param partID The ID of the part.
+     * @param quantity The quantity to add.
+     * @throws IllegalArgumentException if quantity is not positive.
+     */
+    public void add(int partID, int quantity) {
+        parts = parts.add(partID, quantity);
+        onChange.run();
+    }
+
+    /**
+     * Removes a quantity of a part. The line is dropped once its quantity reaches 0.
+     * @param partID The ID of the part.
+     * @param quantity The quantity to remove.
+     * @return True if the part was on the bill, otherwise false.
+     */
+    public boolean remove(int partID, int quantity) {
+        Lines remaining = parts.remove(partID, quantity);
+        if (remaining == null) {
+            return false;
+        }
+        parts = remaining;
+        onChange.run();
+        return true;
+    }
+
+    /**
+     * Returns the number of distinct sub-assemblies on the bill.
+     * @return The sub-assembly line count.
+     */
+    public int subassemblyCount() {
+        return subassemblies.size();
+    }
+
+    /**
+     * Returns the product ID of the sub-assembly on a line.
+     * @param line The line number, from 0 to subassemblyCount() - 1.
+     * @return The sub-assembly's product ID.
+     */
+    public int getSubassemblyID(int line) {
+        return subassemblies.id(line);
+    }
+
+    /**
+     * Returns the quantity of the sub-assembly on a line.
+     * @param line The line number, from 0 to subassemblyCount() - 1.
+     * @return The quantity of the sub-assembly.
+     */
+    public int getSubassemblyQuantity(int line) {
+        return subassemblies.quantity(line);
+    }
+
+    /**
+     * Returns how many of a sub-assembly the bill calls for.
+     * @param productID The product ID of the sub-assembly.
+     * @return The quantity, or 0 if the product is not on the bill.
+     */
+    public int quantityOfSubassembly(int productID) {
+        return subassemblies.quantityOf(productID);
+    }
+
+    /**
+     * Adds a quantity of another product as a sub-assembly, merging it into the existing line if it is already on the bill.
+     * Cycles are not checked here; BomExplosion.wouldCreateCycle can check one before it is added.
+     * @param productID The product ID of the sub-assembly.
+     * @param quantity The quantity to add.
+     * @throws IllegalArgumentException if quantity is not positive.
+     */
+    public void addSubassembly(int productID, int quantity) {
+        subassemblies = subassemblies.add(productID, quantity);
+        onChange.run();
+    }
+
+    /**
+     * Removes a quantity of a sub-assembly. The line is dropped once its quantity reaches 0.
+     * @param productID The product ID of the sub-assembly.
+     * @param quantity The quantity to remove.
+     * @return True if the sub-assembly was on the bill, otherwise false.
+     */
+    public boolean removeSubassembly(int productID, int quantity) {
+        Lines remaining = subassemblies.remove(productID, quantity);
+        if (remaining == null) {
+            return false;
+        }
+        subassemblies = remaining;
+        onChange.run();
+        return true;
+    }
+
+    /**
+     * Removes every line from the bill, parts and sub-assemblies.
+     */
+    public void clear() {
+        parts = Lines.NONE;
+        subassemblies = Lines.NONE;
+        onChange.run();
+    }
+
+    /**
+     * Replaces the parts on the bill with the given parts. A part listed more than once counts once per occurrence.
+     * Sub-assemblies are kept.
+     * @param parts The parts the product is built from.
+     */
+    public void setParts(List<? extends Part> parts) {
+        int[] ids = new int[parts.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = parts.get(i).getPartID();
+        }
+        Arrays.sort(ids);
+        int lines = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                lines++;
+            }
+        }
+        int[] partIDs = lines == 0 ? EMPTY : new int[lines];
+        int[] quantities = lines == 0 ? EMPTY : new int[lines];
+        int size = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (size > 0 && partIDs[size - 1] == ids[i]) {
+                quantities[size - 1]++;
+            } else {
+                partIDs[size] = ids[i];
+                quantities[size] = 1;
+                size++;
+            }
+        }
+        this.parts = Lines.of(partIDs, quantities, size);
+        onChange.run();
+    }
+
+    /**
+     * Replaces the sub-assemblies on the bill with those of another bill. Parts are kept.
+     * @param other The bill to copy sub-assemblies from.
+     */
+    public void setSubassemblies(BillOfMaterials other) {
+        subassemblies = other.subassemblies;
+        onChange.run();
+    }
+
+    /**
+     * Replaces the bill with lines read from storage, without reporting a change.
+     * Used while a product is being loaded, before anything indexes it.
+     * @param ids The IDs in ascending order, with sub-assemblies as negated product IDs.
+     *            The array is kept, not copied, when it holds no sub-assemblies.
+     * @param quantities The quantity of each line. Kept with ids.
+     */
+    void load(int[] ids, int[] quantities) {
+        int nested = 0;
+        while (nested < ids.length && ids[nested] < 0) {
+            nested++;
+        }
+        if (nested == 0) {
+            parts = Lines.of(ids, quantities, ids.length);
+            subassemblies = Lines.NONE;
+            return;
+        }
+        int[] productIDs = new int[nested];
+        int[] productQuantities = new int[nested];
+        for (int line = 0; line < nested; line++) {
+            productIDs[nested - 1 - line] = -ids[line];
+            productQuantities[nested - 1 - line] = quantities[line];
+        }
+        subassemblies = Lines.of(productIDs, productQuantities, nested);
+        parts = Lines.of(Arrays.copyOfRange(ids, nested, ids.length), Arrays.copyOfRange(quantities, nested, ids.length), ids.length - nested);
+    }
+
+    /**
+     * Returns a copy of the part IDs on the bill, in ascending order.
+     * @return The part IDs, one per line.
+     */
+    public int[] partIDs() {
+        return parts.ids();
+    }
+
+    /**
+     * Returns a copy of the quantities on the bill, in the same order as partIDs.
+     * @return The quantities, one per line.
+     */
+    public int[] quantities() {
+        return parts.quantities();
+    }
+
+    /**
+     * Returns a copy of the sub-assembly product IDs on the bill, in ascending order.
+     * @return The product IDs, one per line.
+     */
+    public int[] subassemblyIDs() {
+        return subassemblies.ids();
+    }
+
+    /**
+     * Returns a copy of the sub-assembly quantities on the bill, in the same order as subassemblyIDs.
+     * @return The quantities, one per line.
+     */
+    public int[] subassemblyQuantities() {
+        return subassemblies.quantities();
+    }
+
+    /**
+     * Returns every line in the storage form read by load: negated sub-assembly IDs, then part IDs, all ascending.
+     * @return The IDs of every line.
+     */
+    int[] storedIDs() {
+        Lines nested = subassemblies;
+        Lines own = parts;
+        int[] ids = new int[nested.size() + own.size()];
+        for (int line = 0; line < nested.size(); line++) {
+            ids[nested.size() - 1 - line] = -nested.id(line);
+        }
+        System.arraycopy(own.ids, 0, ids, nested.size(), own.size());
+        return ids;
+    }
+
+    /**
+     * Returns the quantity of every line, in the same order as storedIDs.
+     * @return The quantities of every line.
+     */
+    int[] storedQuantities() {
+        Lines nested = subassemblies;
+        Lines own = parts;
+        int[] quantities = new int[nested.size() + own.size()];
+        for (int line = 0; line < nested.size(); line++) {
+            quantities[nested.size() - 1 - line] = nested.quantity(line);
+        }
+        System.arraycopy(own.quantities, 0, quantities, nested.size(), own.size());
+        return quantities;
+    }
+
+    /**
+     * Checks whether another bill has exactly the same lines as this one.
+     * @param other The bill to compare with.
+     * @return True if both bills list the same parts and sub-assemblies in the same quantities.
+     */
+    boolean sameLines(BillOfMaterials other) {
+        return parts.sameLines(other.parts) && subassemblies.sameLines(other.subassemblies);
+    }
+
+    /**
+     * Builds an observable list of the parts on the bill for display.
+     * Each part appears once per unit of quantity, and parts that are no longer in the inventory are left out.
+     * The list is a copy: editing it does not change the bill.
+     * @return A new observable list of parts.
+     */
+    public ObservableList<Part> asObservableList() {
+        Lines own = parts;
+        List<Part> list = new ArrayList<>(own.totalQuantity());
+        for (int line = 0; line < own.size(); line++) {
+            Part part = Inventory.lookupPart(own.id(line));
+            if (part != null) {
+                for (int unit = 0; unit < own.quantity(line); unit++) {
+                    list.add(part);
+                }
+            }
+        }
+        return FXCollections.observableList(list);
+    }
+
+    /**
+     * Returns the part lines as they stand, for readers that need the IDs and quantities to agree.
+     * @return The current part lines.
+     */
+    Lines partLines() {
+        return parts;
+    }
+
+    /**
+     * Returns the sub-assembly lines as they stand, for readers that need the IDs and quantities to agree.
+     * @return The current sub-assembly lines.
+     */
+    Lines subassemblyLines() {
+        return subassemblies;
+    }
+
+    /**
+     * One kind of line: IDs in ascending order with their quantities.
+     * A Lines is never changed once built; the bill swaps in a new one on every edit, so a reader on another
+     * thread that holds one always sees IDs, quantities and size that belong together.
+     */
+    static final class Lines {
+        static final Lines NONE = new Lines(EMPTY, EMPTY, 0);
+        private final int[] ids;
+        private final int[] quantities;
+        private final int size;
+
+        private Lines(int[] ids, int[] quantities, int size) {
+            this.ids = ids;
+            this.quantities = quantities;
+            this.size = size;
+        }
+
+        /**
+         * Wraps arrays that are not changed afterwards.
+         */
+        static Lines of(int[] ids, int[] quantities, int size) {
+            return size == 0 ? NONE : new Lines(ids, quantities, size);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int id(int line) {
+            checkLine(line);
+            return ids[line];
+        }
+
+        int quantity(int line) {
+            checkLine(line);
+            return quantities[line];
+        }
+
+        int quantityOf(int id) {
+            int line = Arrays.binarySearch(ids, 0, size, id);
+            return line < 0 ? 0 : quantities[line];
+        }
+
+        int totalQuantity() {
+            int total = 0;
+            for (int line = 0; line < size; line++) {
+                total += quantities[line];
+            }
+            return total;
+        }
+
+        /**
+         * Returns a copy of the IDs.
+         */
+        int[] ids() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        /**
+         * Returns a copy of the quantities, in the same order as ids.
+         */
+        int[] quantities() {
+            return Arrays.copyOf(quantities, size);
+        }
+
+        Lines add(int id, int quantity) {
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than 0");
+            }
+            int line = Arrays.binarySearch(ids, 0, size, id);
+            if (line >= 0) {
+                int[] merged = Arrays.copyOf(quantities, size);
+                merged[line] += quantity;
+                return new Lines(Arrays.copyOf(ids, size), merged, size);
+            }
+            line = -line - 1;
+            int[] newIDs = new int[size + 1];
+            int[] newQuantities = new int[size + 1];
+            System.arraycopy(ids, 0, newIDs, 0, line);
+            System.arraycopy(quantities, 0, newQuantities, 0, line);
+            newIDs[line] = id;
+            newQuantities[line] = quantity;
+            System.arraycopy(ids, line, newIDs, line + 1, size - line);
+            System.arraycopy(quantities, line, newQuantities, line + 1, size - line);
+            return new Lines(newIDs, newQuantities, size + 1);
+        }
+
+        /**
+         * Returns the lines with a quantity taken off one of them, or null if the ID is not on any line.
+         */
+        Lines remove(int id, int quantity) {
+            int line = Arrays.binarySearch(ids, 0, size, id);
+            if (line < 0) {
+                return null;
+            }
+            if (quantities[line] > quantity) {
+                int[] reduced = Arrays.copyOf(quantities, size);
+                reduced[line] -= quantity;
+                return new Lines(Arrays.copyOf(ids, size), reduced, size);
+            }
+            if (size == 1) {
+                return NONE;
+            }
+            int[] newIDs = new int[size - 1];
+            int[] newQuantities = new int[size - 1];
+            System.arraycopy(ids, 0, newIDs, 0, line);
+            System.arraycopy(quantities, 0, newQuantities, 0, line);
+            System.arraycopy(ids, line + 1, newIDs, line, size - line - 1);
+            System.arraycopy(quantities, line + 1, newQuantities, line, size - line - 1);
+            return new Lines(newIDs, newQuantities, size - 1);
+        }
+
+        boolean sameLines(Lines other) {
+            return Arrays.equals(ids, 0, size, other.ids, 0, other.size)
+                    && Arrays.equals(quantities, 0, size, other.quantities, 0, other.size);
+        }
+
+        private void checkLine(int line) {
+            if (line < 0 || line >= size) {
+                throw new IndexOutOfBoundsException("Line " + line + " is out of range for a bill of " + size + " lines");
+            }
+        }
+    }
+}
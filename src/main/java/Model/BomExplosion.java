@@ -0,0 +1,440 @@
+package Model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * Explodes multi-level bills of materials into the total quantity of every part they need.
+ * <p>
+ * A product's bill may list other products as sub-assemblies, nested to any depth. The parts one unit of a product
+ * needs are its own parts plus, for each sub-assembly, that sub-assembly's parts times its quantity. Each product's
+ * per-unit requirements are worked out once and memoized, so a sub-assembly shared by many products, or by many
+ * branches of one product, is only exploded once. Sub-assemblies that are not cached yet are exploded in parallel
+ * as fork/join tasks on the common pool.
+ * </p>
+ * <p>
+ * A bill that contains itself, directly or through its sub-assemblies, is rejected with an IllegalStateException
+ * naming the cycle. Sub-assemblies no longer in the inventory are left out. The memo is cleared for a product, and
+ * for every product it is built into, whenever the product is added, removed, replaced with a different bill or has
+ * its bill changed. Lookups may run on any thread, but bills must not be changed in place while one is under way.
+ * </p>
+ */
+public class BomExplosion {
+    private final IntFunction<Product> products;
+    /**
+     * Per-unit requirements by product ID.
+     */
+    private final Map<Integer, Requirements> memo = new ConcurrentHashMap<>();
+    /**
+     * Counts invalidations, so an explosion that raced with one does not memoize what it read.
+     */
+    private volatile long generation;
+    /**
+     * Explosions under way, so parallel branches that share a sub-assembly wait for one explosion of it.
+     */
+    private final Map<Integer, Explode> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an explosion engine with an empty memo.
+     * @param products Finds a product in the inventory by ID. Must be safe to call from any thread.
+     */
+    public BomExplosion(IntFunction<Product> products) {
+        this.products = products;
+    }
+
+    /**
+     * Returns the total parts needed to build one unit of a product in the inventory.
+     * @param productID The product's ID.
+     * @return The product's per-unit requirements, or null if the product is not in the inventory.
+     * @throws IllegalStateException if the product's bill of materials contains itself.
+     */
+    public Requirements requirements(int productID) {
+        Requirements cached = memo.get(productID);
+        if (cached != null) {
+            return cached;
+        }
+        Product product = products.apply(productID);
+        if (product == null) {
+            return null;
+        }
+        checkCycles(product);
+        Explode task = new Explode(productID, null);
+        Explode running = inFlight.putIfAbsent(productID, task);
+        return running != null ? running.join() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Returns the total parts needed to build a number of units of a product.
+     * The product does not need to be in the inventory, so a product being edited can be exploded before it is saved.
+     * @param product The product.
+     * @param units The number of units to build.
+     * @return The requirements for that many units.
+     * @throws IllegalStateException if the product's bill of materials contains itself.
+     * @throws ArithmeticException if a quantity overflows a long.
+     */
+    public Requirements explode(Product product, long units) {
+        Requirements perUnit;
+        if (products.apply(product.getProductID()) == product) {
+            perUnit = requirements(product.getProductID());
+        } else {
+            checkCycles(product);
+            perUnit = ForkJoinPool.commonPool().invoke(new Explode(product.getProductID(), product));
+        }
+        return perUnit.times(units);
+    }
+
+    /**
+     * Checks whether adding a sub-assembly to a product's bill would make the bill contain itself.
+     * @param productID The product whose bill would change.
+     * @param subassemblyID The product that would be added as a sub-assembly.
+     * @return True if the sub-assembly is the product or is built from it, or already contains a cycle.
+     */
+    public boolean wouldCreateCycle(int productID, int subassemblyID) {
+        if (productID == subassemblyID) {
+            return true;
+        }
+        try {
+            Requirements requirements = requirements(subassemblyID);
+            return requirements != null && requirements.usesAssembly(productID);
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Clears the memo for the products a batch of inventory changes affects.
+     * @param changes The changes, as they happen.
+     */
+    void invalidate(List<InventoryEvent> changes) {
+        for (InventoryEvent event : changes) {
+            if (event instanceof InventoryEvent.ProductUpdated updated) {
+                Product before = updated.before();
+                if (before != updated.after() && before.getProductID() == updated.id()
+                        && before.getBillOfMaterials().sameLines(updated.after().getBillOfMaterials())) {
+                    continue;
+                }
+                invalidate(before.getProductID());
+                invalidate(updated.id());
+            } else if (event.kind() == InventoryEvent.Kind.PRODUCT && !(event instanceof InventoryEvent.StockChanged)) {
+                invalidate(event.id());
+            }
+        }
+    }
+
+    /**
+     * Drops a product's requirements from the memo, along with those of every product it is built into.
+     */
+    private void invalidate(int productID) {
+        generation++;
+        memo.remove(productID);
+        memo.values().removeIf(requirements -> requirements.usesAssembly(productID));
+    }
+
+    /**
+     * Walks the sub-assemblies of a product that are not memoized yet, depth first, and fails on the first cycle.
+     * Memoized products were checked when they were exploded. Runs before any task is forked, so the tasks,
+     * which wait on each other for shared sub-assemblies, can never wait in a circle.
+     */
+    private void checkCycles(Product product) {
+        Set<Integer> finished = new HashSet<>();
+        List<Integer> path = new ArrayList<>();
+        Deque<int[]> stack = new ArrayDeque<>();
+        Deque<int[]> positions = new ArrayDeque<>();
+        path.add(product.getProductID());
+        stack.push(product.getBillOfMaterials().subassemblyIDs());
+        positions.push(new int[] {0});
+        while (!stack.isEmpty()) {
+            int[] lines = stack.peek();
+            int[] position = positions.peek();
+            if (position[0] == lines.length) {
+                stack.pop();
+                positions.pop();
+                finished.add(path.remove(path.size() - 1));
+                continue;
+            }
+            int id = lines[position[0]++];
+            if (memo.containsKey(id) || finished.contains(id)) {
+                continue;
+            }
+            int start = path.indexOf(id);
+            if (start >= 0) {
+                StringBuilder cycle = new StringBuilder();
+                for (int ancestor : path.subList(start, path.size())) {
+                    cycle.append(ancestor).append(" -> ");
+                }
+                throw new IllegalStateException("Bill of materials cycle: " + cycle.append(id));
+            }
+            Product subassembly = products.apply(id);
+            if (subassembly == null) {
+                continue;
+            }
+            path.add(id);
+            stack.push(subassembly.getBillOfMaterials().subassemblyIDs());
+            positions.push(new int[] {0});
+        }
+    }
+
+    /**
+     * Explodes one product, forking a task per sub-assembly that is not memoized yet.
+     */
+    @SuppressWarnings("serial")
+    private final class Explode extends RecursiveTask<Requirements> {
+        private final int productID;
+        /**
+         * The product to explode when it is not the one in the inventory, otherwise null.
+         */
+        private final Product product;
+
+        Explode(int productID, Product product) {
+            this.productID = productID;
+            this.product = product;
+        }
+
+        @Override
+        protected Requirements compute() {
+            try {
+                long startGeneration = generation;
+                Product item = product != null ? product : products.apply(productID);
+                if (item == null) {
+                    return null;
+                }
+                BillOfMaterials bill = item.getBillOfMaterials();
+                BillOfMaterials.Lines nested = bill.subassemblyLines();
+                BillOfMaterials.Lines own = bill.partLines();
+                int[] subassemblyIDs = nested.ids();
+                Requirements[] children = new Requirements[subassemblyIDs.length];
+                Explode[] tasks = new Explode[subassemblyIDs.length];
+                Explode last = null;
+                for (int line = 0; line < subassemblyIDs.length; line++) {
+                    children[line] = memo.get(subassemblyIDs[line]);
+                    if (children[line] != null) {
+                        continue;
+                    }
+                    Explode task = new Explode(subassemblyIDs[line], null);
+                    Explode running = inFlight.putIfAbsent(subassemblyIDs[line], task);
+                    if (running != null) {
+                        tasks[line] = running;
+                    } else {
+                        // Fork the tasks this one started, except the last, which runs here.
+                        if (last != null) {
+                            last.fork();
+                        }
+                        tasks[line] = task;
+                        last = task;
+                    }
+                }
+                if (last != null) {
+                    last.invoke();
+                }
+                for (int line = 0; line < tasks.length; line++) {
+                    if (tasks[line] != null) {
+                        children[line] = tasks[line].join();
+                    }
+                }
+                Requirements requirements = Requirements.combine(own.ids(), own.quantities(),
+                        subassemblyIDs, nested.quantities(), children);
+                if (product == null && generation == startGeneration) {
+                    memo.putIfAbsent(productID, requirements);
+                    // An invalidation between the check and the put found nothing to remove; take the entry back out.
+                    // One that comes after this second check removes the entry itself.
+                    if (generation != startGeneration) {
+                        memo.remove(productID, requirements);
+                    }
+                }
+                return requirements;
+            } finally {
+                if (product == null) {
+                    inFlight.remove(productID, this);
+                }
+            }
+        }
+    }
+
+    /**
+     * The total quantity of every part needed to build a product, with all sub-assemblies exploded.
+     * Immutable, so it can be shared between threads and held in the memo.
+     */
+    public static final class Requirements {
+        private static final int[] NONE = new int[0];
+        private final int[] partIDs;
+        private final long[] quantities;
+        /**
+         * Every product built into this one at any depth, in ascending order.
+         */
+        private final int[] assemblies;
+
+        private Requirements(int[] partIDs, long[] quantities, int[] assemblies) {
+            this.partIDs = partIDs;
+            this.quantities = quantities;
+            this.assemblies = assemblies;
+        }
+
+        /**
+         * Returns the number of distinct parts needed.
+         * @return The line count.
+         */
+        public int lines() {
+            return partIDs.length;
+        }
+
+        /**
+         * Returns the part ID on a line.
+         * @param line The line number, from 0 to lines() - 1.
+         * @return The part ID.
+         */
+        public int partID(int line) {
+            return partIDs[line];
+        }
+
+        /**
+         * Returns the total quantity on a line.
+         * @param line The line number, from 0 to lines() - 1.
+         * @return The quantity of the part.
+         */
+        public long quantity(int line) {
+            return quantities[line];
+        }
+
+        /**
+         * Returns the total quantity needed of a part.
+         * @param partID The ID of the part.
+         * @return The quantity, or 0 if the part is not needed.
+         */
+        public long quantityOf(int partID) {
+            int line = Arrays.binarySearch(partIDs, partID);
+            return line < 0 ? 0 : quantities[line];
+        }
+
+        /**
+         * Returns a copy of the part IDs needed, in ascending order.
+         * @return The part IDs, one per line.
+         */
+        public int[] partIDs() {
+            return partIDs.clone();
+        }
+
+        /**
+         * Returns a copy of the sub-assemblies built into the product at any depth.
+         * @return The sub-assembly product IDs, in ascending order.
+         */
+        public int[] assemblies() {
+            return assemblies.clone();
+        }
+
+        /**
+         * Checks whether a product is built into this one at any depth.
+         * @param productID The product ID to look for.
+         * @return True if the product is a sub-assembly, directly or nested, otherwise false.
+         */
+        public boolean usesAssembly(int productID) {
+            return Arrays.binarySearch(assemblies, productID) >= 0;
+        }
+
+        /**
+         * Returns these requirements multiplied by a number of units.
+         * @param units The number of units.
+         * @return The requirements for that many units.
+         * @throws ArithmeticException if a quantity overflows a long.
+         */
+        public Requirements times(long units) {
+            if (units == 1) {
+                return this;
+            }
+            long[] scaled = new long[quantities.length];
+            for (int line = 0; line < scaled.length; line++) {
+                scaled[line] = Math.multiplyExact(quantities[line], units);
+            }
+            return new Requirements(partIDs, scaled, assemblies);
+        }
+
+        /**
+         * Adds a bill's own parts to its sub-assemblies' requirements, each times its quantity on the bill.
+         * Every source is already sorted by part ID, so they are merged in a single pass. Missing sub-assemblies,
+         * given as null, are left out.
+         */
+        static Requirements combine(int[] partIDs, int[] partQuantities, int[] subassemblyIDs,
+                                    int[] subassemblyQuantities, Requirements[] children) {
+            int sources = 0;
+            int total = partIDs.length;
+            int nested = subassemblyIDs.length;
+            for (Requirements child : children) {
+                if (child != null) {
+                    sources++;
+                    total += child.partIDs.length;
+                    nested += child.assemblies.length;
+                }
+            }
+            long[] own = new long[partIDs.length];
+            for (int line = 0; line < own.length; line++) {
+                own[line] = partQuantities[line];
+            }
+            if (sources == 0) {
+                return new Requirements(partIDs, own, subassemblyIDs.length == 0 ? NONE : subassemblyIDs);
+            }
+            // Source 0 is the bill's own parts, then one source per sub-assembly found.
+            int[][] ids = new int[sources + 1][];
+            long[][] amounts = new long[sources + 1][];
+            long[] multipliers = new long[sources + 1];
+            ids[0] = partIDs;
+            amounts[0] = own;
+            multipliers[0] = 1;
+            int[] assemblies = Arrays.copyOf(subassemblyIDs, nested);
+            int assemblyCount = subassemblyIDs.length;
+            int source = 1;
+            for (int i = 0; i < children.length; i++) {
+                Requirements child = children[i];
+                if (child != null) {
+                    ids[source] = child.partIDs;
+                    amounts[source] = child.quantities;
+                    multipliers[source++] = subassemblyQuantities[i];
+                    System.arraycopy(child.assemblies, 0, assemblies, assemblyCount, child.assemblies.length);
+                    assemblyCount += child.assemblies.length;
+                }
+            }
+            int[] positions = new int[ids.length];
+            int[] mergedIDs = new int[total];
+            long[] mergedQuantities = new long[total];
+            int lines = 0;
+            while (true) {
+                int id = Integer.MAX_VALUE;
+                boolean found = false;
+                for (int i = 0; i < ids.length; i++) {
+                    if (positions[i] < ids[i].length && ids[i][positions[i]] <= id) {
+                        id = ids[i][positions[i]];
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    break;
+                }
+                long amount = 0;
+                for (int i = 0; i < ids.length; i++) {
+                    if (positions[i] < ids[i].length && ids[i][positions[i]] == id) {
+                        amount = Math.addExact(amount, Math.multiplyExact(amounts[i][positions[i]++], multipliers[i]));
+                    }
+                }
+                mergedIDs[lines] = id;
+                mergedQuantities[lines++] = amount;
+            }
+            Arrays.sort(assemblies);
+            int distinct = 0;
+            for (int i = 0; i < assemblies.length; i++) {
+                if (i == 0 || assemblies[i] != assemblies[i - 1]) {
+                    assemblies[distinct++] = assemblies[i];
+                }
+            }
+            return new Requirements(Arrays.copyOf(mergedIDs, lines), Arrays.copyOf(mergedQuantities, lines),
+                    Arrays.copyOf(assemblies, distinct));
+        }
+    }
+}
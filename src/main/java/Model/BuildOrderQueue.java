@@ -0,0 +1,141 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A queue of build orders and other stock transactions, committed in batches by one background thread.
+ * <p>
+ * The thread takes every order waiting, up to a batch limit, and applies them one after another to a single
+ * optimistic attempt: each order is checked against the stock as the orders before it in the batch left it, and an
+ * order that fails is rejected without affecting the rest. The whole batch is then committed at once, so a part
+ * used by a thousand orders is read, replaced and published once rather than a thousand times. If an item changed
+ * under the batch, the batch is worked out again from a fresh read. Orders are applied in the order they were
+ * submitted. The thread is started by the first order and is a daemon, so it never keeps the application running.
+ * </p>
+ */
+public class BuildOrderQueue {
+    /**
+     * Most orders committed together.
+     */
+    static final int MAX_BATCH = 1024;
+    private final Supplier<StockTransaction> transactions;
+    private final Supplier<StockTransaction.Attempt> attempts;
+    private final BlockingQueue<Order> orders = new LinkedBlockingQueue<>();
+    private Thread worker;
+
+    /**
+     * Creates an empty queue.
+     * @param transactions Creates empty transactions on the inventory.
+     * @param attempts Starts a commit attempt on the inventory.
+     */
+    BuildOrderQueue(Supplier<StockTransaction> transactions, Supplier<StockTransaction.Attempt> attempts) {
+        this.transactions = transactions;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Queues an order to build units of a product. Safe to call from any thread.
+     * @param productID The ID of the product.
+     * @param units The number of units to build.
+     * @return Completes once the order is committed, or completes exceptionally with an IllegalStateException
+     *         saying why it was rejected.
+     * @throws IllegalArgumentException if units is not positive.
+     */
+    public CompletableFuture<Void> assemble(int productID, int units) {
+        return submit(transactions.get().assemble(productID, units));
+    }
+
+    /**
+     * Queues a stock transaction. Safe to call from any thread. The transaction must not be changed once queued.
+     * @param transaction The transaction.
+     * @return Completes once the transaction is committed, or completes exceptionally with an IllegalStateException
+     *         saying why it was rejected.
+     */
+    public CompletableFuture<Void> submit(StockTransaction transaction) {
+        Order order = new Order(transaction);
+        startWorker();
+        orders.add(order);
+        return order.done;
+    }
+
+    /**
+     * Returns the number of orders waiting to be committed.
+     * @return The queue length.
+     */
+    public int pending() {
+        return orders.size();
+    }
+
+    private synchronized void startWorker() {
+        if (worker == null) {
+            worker = new Thread(this::run, "build-orders");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void run() {
+        List<Order> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(orders.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            orders.drainTo(batch, MAX_BATCH - 1);
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Commits a batch of orders, retrying the whole batch while items change under it, then completes each order.
+     */
+    private void commit(List<Order> batch) {
+        String[] failures = new String[batch.size()];
+        try {
+            boolean committed = false;
+            for (int attempt = 0; attempt < StockTransaction.MAX_ATTEMPTS && !committed; attempt++) {
+                StockTransaction.Attempt view = attempts.get();
+                for (int i = 0; i < batch.size(); i++) {
+                    failures[i] = view.apply(batch.get(i).transaction);
+                }
+                committed = view.commit();
+            }
+            if (!committed) {
+                String failure = "The stock kept changing under the order; gave up after " + StockTransaction.MAX_ATTEMPTS + " attempts";
+                Arrays.fill(failures, failure);
+            }
+        } catch (RuntimeException e) {
+            for (Order order : batch) {
+                order.done.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures[i] == null) {
+                batch.get(i).done.complete(null);
+            } else {
+                batch.get(i).done.completeExceptionally(new IllegalStateException(failures[i]));
+            }
+        }
+    }
+
+    /**
+     * A queued transaction and the future reporting its outcome.
+     */
+    private static final class Order {
+        final StockTransaction transaction;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Order(StockTransaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * How many units of each product can be built right now from the parts in stock.
+ * <p>
+ * A product's buildable quantity is the smallest, over every part in its exploded bill of materials, of the part's
+ * stock divided by the quantity needed, rounded down. Sub-assemblies count as the parts they are built from; units
+ * of them already in stock are not drawn on. A product with no parts, a part missing from the inventory or a bill
+ * that contains itself can build nothing; a bill that contains itself is checked again on every read until fixed.
+ * </p>
+ * <p>
+ * Quantities are worked out for the whole inventory in parallel by computeAll, or for a single product the first
+ * time it is asked for, and then kept, with a reverse map from each part to the products that need it. A part stock
+ * change only touches those products, and usually in constant time: a drop can only lower a product's quantity to
+ * what the part now allows, and a rise only matters to products the part was limiting, which are the only ones
+ * worked out again. Products added, removed or given a different bill are dropped and worked out on their next read,
+ * along with every product they are built into. Must only be used on the JavaFX application thread,
+ * apart from the parallel work computeAll starts.
+ * </p>
+ */
+public class BuildableQuantities {
+    private static final int[] NONE = new int[0];
+    private final IntFunction<Part> parts;
+    private final IntFunction<Product> products;
+    private final Supplier<List<Product>> snapshot;
+    private final BomExplosion explosion;
+    private final Executor applicationThread;
+    /**
+     * Known quantities by product ID.
+     */
+    private final IntObjectMap<Entry> byProduct = new IntObjectMap<>();
+    /**
+     * Known quantities of the products that need a part, keyed by part ID and then by product ID.
+     */
+    private final IntObjectMap<IntObjectMap<Entry>> byPart = new IntObjectMap<>();
+    /**
+     * Known quantities of the products a product is built into, keyed by sub-assembly ID and then by product ID.
+     */
+    private final IntObjectMap<IntObjectMap<Entry>> byAssembly = new IntObjectMap<>();
+    /**
+     * Parts and products changed while a computeAll is under way, whose results must not be kept. Null when none is.
+     */
+    private Set<Integer> changedParts;
+    private Set<Integer> changedProducts;
+    private int computing;
+
+    /**
+     * Creates a calculator that knows no quantities yet.
+     * @param parts Finds a part in the inventory by ID. Must be safe to call from any thread.
+     * @param products Finds a product in the inventory by ID.
+     * @param snapshot Copies the product inventory for reading on another thread.
+     * @param explosion Explodes nested bills of materials into the parts they need.
+     * @param applicationThread Runs tasks on the JavaFX application thread.
+     */
+    BuildableQuantities(IntFunction<Part> parts, IntFunction<Product> products, Supplier<List<Product>> snapshot,
+                        BomExplosion explosion, Executor applicationThread) {
+        this.parts = parts;
+        this.products = products;
+        this.snapshot = snapshot;
+        this.explosion = explosion;
+        this.applicationThread = applicationThread;
+    }
+
+    /**
+     * Returns how many units of a product can be built from the parts in stock.
+     * Products in the inventory are answered from what is already known, in constant time;
+     * other products are worked out each time.
+     * @param product The product.
+     * @return The number of units that can be built, or 0 if none can.
+     */
+    public int buildable(Product product) {
+        int productID = product.getProductID();
+        Entry entry = byProduct.get(productID);
+        boolean stored = products.apply(productID) == product;
+        if (entry != null && stored) {
+            return entry.buildable;
+        }
+        entry = compute(product);
+        if (stored && entry.requirements != null) {
+            add(entry);
+        }
+        return entry.buildable;
+    }
+
+    /**
+     * Works out the quantity of every product in the inventory, in parallel on the common fork/join pool.
+     * Products whose parts or bills change while this runs are left to be worked out on their next read.
+     * Must be called on the JavaFX application thread.
+     * @param background Starts the work off the JavaFX application thread.
+     * @return Completes on the JavaFX application thread once the quantities are known.
+     */
+    public CompletableFuture<Void> computeAll(Executor background) {
+        if (computing++ == 0) {
+            changedParts = new HashSet<>();
+            changedProducts = new HashSet<>();
+        }
+        List<Product> items = snapshot.get();
+        return CompletableFuture.supplyAsync(() -> items.parallelStream()
+                .filter(product -> product != null)
+                .map(this::compute)
+                .toList(), background)
+                .whenCompleteAsync((entries, failure) -> {
+                    if (entries != null) {
+                        install(entries);
+                    }
+                    if (--computing == 0) {
+                        changedParts = null;
+                        changedProducts = null;
+                    }
+                }, applicationThread)
+                .thenApply(entries -> null);
+    }
+
+    /**
+     * Applies a batch of inventory changes to the known quantities.
+     * @param changes The changes, as they happen.
+     */
+    void apply(List<InventoryEvent> changes) {
+        for (InventoryEvent event : changes) {
+            if (event instanceof InventoryEvent.StockChanged stock) {
+                if (stock.kind() == InventoryEvent.Kind.PART) {
+                    stockChanged(stock.id(), stock.before(), stock.after());
+                }
+            } else if (event instanceof InventoryEvent.PartAdded || event instanceof InventoryEvent.PartRemoved) {
+                recomputeUsers(event.id());
+            } else if (event instanceof InventoryEvent.PartUpdated updated) {
+                if (updated.before().getPartID() != updated.id()) {
+                    recomputeUsers(updated.before().getPartID());
+                    recomputeUsers(updated.id());
+                }
+            } else if (event instanceof InventoryEvent.ProductUpdated updated) {
+                Product before = updated.before();
+                if (before == updated.after() || before.getProductID() != updated.id()
+                        || !before.getBillOfMaterials().sameLines(updated.after().getBillOfMaterials())) {
+                    dropProduct(before.getProductID());
+                    dropProduct(updated.id());
+                }
+            } else if (event.kind() == InventoryEvent.Kind.PRODUCT) {
+                dropProduct(event.id());
+            }
+        }
+    }
+
+    /**
+     * Adjusts the products that need a part after its stock moved.
+     */
+    private void stockChanged(int partID, int before, int after) {
+        if (changedParts != null) {
+            changedParts.add(partID);
+        }
+        IntObjectMap<Entry> users = byPart.get(partID);
+        if (users == null) {
+            return;
+        }
+        users.forEachValue(entry -> {
+            long needed = entry.quantityOf(partID);
+            if (after < before) {
+                entry.buildable = Math.min(entry.buildable, units(after, needed));
+            } else if (entry.buildable == units(before, needed)) {
+                entry.buildable = entry.count();
+            }
+        });
+    }
+
+    /**
+     * Works out again every product that needs a part, after the part was added or removed.
+     */
+    private void recomputeUsers(int partID) {
+        if (changedParts != null) {
+            changedParts.add(partID);
+        }
+        IntObjectMap<Entry> users = byPart.get(partID);
+        if (users != null) {
+            users.forEachValue(entry -> entry.buildable = entry.count());
+        }
+    }
+
+    /**
+     * Drops a product's quantity, and those of every product it is built into.
+     */
+    private void dropProduct(int productID) {
+        if (changedProducts != null) {
+            changedProducts.add(productID);
+        }
+        drop(byProduct.get(productID));
+        IntObjectMap<Entry> users = byAssembly.get(productID);
+        if (users != null) {
+            List<Entry> affected = new ArrayList<>(users.size());
+            users.forEachValue(affected::add);
+            affected.forEach(this::drop);
+        }
+    }
+
+    /**
+     * Keeps the quantities worked out by computeAll, except for products that changed meanwhile,
+     * products already known, and products that need a part whose stock moved meanwhile.
+     */
+    private void install(List<Entry> entries) {
+        for (Entry entry : entries) {
+            if (entry.requirements == null || byProduct.get(entry.productID) != null || products.apply(entry.productID) == null
+                    || changedProducts.contains(entry.productID) || touchesChanged(entry)) {
+                continue;
+            }
+            add(entry);
+        }
+    }
+
+    private boolean touchesChanged(Entry entry) {
+        for (int partID : entry.partIDs) {
+            if (changedParts.contains(partID)) {
+                return true;
+            }
+        }
+        for (int productID : entry.assemblies) {
+            if (changedProducts.contains(productID)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Explodes a product's bill and works out its quantity. Safe to run on any thread.
+     */
+    private Entry compute(Product product) {
+        BomExplosion.Requirements requirements;
+        try {
+            requirements = explosion.explode(product, 1);
+        } catch (IllegalStateException e) {
+            requirements = null;
+        }
+        Entry entry = new Entry(product.getProductID(), requirements);
+        entry.buildable = entry.count();
+        return entry;
+    }
+
+    private void add(Entry entry) {
+        byProduct.put(entry.productID, entry);
+        link(byPart, entry.partIDs, entry);
+        link(byAssembly, entry.assemblies, entry);
+    }
+
+    private void drop(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        byProduct.remove(entry.productID);
+        unlink(byPart, entry.partIDs, entry);
+        unlink(byAssembly, entry.assemblies, entry);
+    }
+
+    private static void link(IntObjectMap<IntObjectMap<Entry>> index, int[] keys, Entry entry) {
+        for (int key : keys) {
+            IntObjectMap<Entry> users = index.get(key);
+            if (users == null) {
+                users = new IntObjectMap<>(4);
+                index.put(key, users);
+            }
+            users.put(entry.productID, entry);
+        }
+    }
+
+    private static void unlink(IntObjectMap<IntObjectMap<Entry>> index, int[] keys, Entry entry) {
+        for (int key : keys) {
+            IntObjectMap<Entry> users = index.get(key);
+            if (users != null) {
+                users.remove(entry.productID);
+                if (users.isEmpty()) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns how many units a part's stock covers when each needs a quantity of it.
+     */
+    private static int units(int stock, long needed) {
+        return stock <= 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, stock / needed);
+    }
+
+    /**
+     * A product's known quantity and the exploded bill it was worked out from.
+     */
+    private final class Entry {
+        final int productID;
+        final BomExplosion.Requirements requirements;
+        /**
+         * The part IDs needed, in ascending order.
+         */
+        final int[] partIDs;
+        /**
+         * The sub-assemblies built in at any depth.
+         */
+        final int[] assemblies;
+        int buildable;
+
+        Entry(int productID, BomExplosion.Requirements requirements) {
+            this.productID = productID;
+            this.requirements = requirements;
+            partIDs = requirements == null ? NONE : requirements.partIDs();
+            assemblies = requirements == null ? NONE : requirements.assemblies();
+        }
+
+        long quantityOf(int partID) {
+            return requirements.quantityOf(partID);
+        }
+
+        /**
+         * Works out the quantity from the current stock of every part needed.
+         */
+        int count() {
+            if (requirements == null || requirements.lines() == 0) {
+                return 0;
+            }
+            int count = Integer.MAX_VALUE;
+            for (int line = 0; line < requirements.lines() && count > 0; line++) {
+                Part part = parts.apply(requirements.partID(line));
+                count = part == null ? 0 : Math.min(count, units(part.getPartInStock(), requirements.quantity(line)));
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,763 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped, column-oriented file holding a whole part and product inventory.
+ * <p>
+ * Each table stores one column per field: ID, stock, min and max as int columns, price as a double column,
+ * and names as indexes into a dictionary of distinct UTF-8 strings. Rows are sorted by ID, so an ID lookup is a binary
+ * search over the mapped ID column. Each table also carries a hash table over lower-cased names for exact
+ * name lookups and trigram postings for partial name search, so none of these need objects on the heap.
+ * Product bills of materials are stored as two flat int columns addressed by a per-product start offset.
+ * </p>
+ * <p>
+ * The header carries a CRC32 of everything after it, checked when the file is opened, so a torn or damaged
+ * file is refused rather than read. Version 1 files, written before the checksum was added, open unchecked.
+ * </p>
+ * <p>
+ * Opening a catalog only maps the file. Part and Product objects are created one row at a time by
+ * readPart and readProduct, when a row is actually needed; bulk readers can use readPartRecord and
+ * readProductRecord to get plain values instead.
+ * </p>
+ */
+public class ColumnarCatalog {
+    private static final int MAGIC = 0x494E5643;
+    private static final int VERSION = 2;
+    /**
+     * The version written before the checksum was added. Its counts start where the checksum is now.
+     */
+    private static final int UNCHECKED_VERSION = 1;
+    private static final int CHECKSUM = 8;
+    /**
+     * The magic number, the version, the checksum and ten counts.
+     */
+    private static final int HEADER_BYTES = 13 * Integer.BYTES;
+    private static final byte IN_HOUSE = 0;
+    private static final byte OUTSOURCED = 1;
+    private final ByteBuffer data;
+    private final Table parts;
+    private final Table products;
+    private final int bomPart;
+    private final int bomQuantity;
+    private final int dictOffsets;
+    private final int dictBytes;
+
+    private ColumnarCatalog(ByteBuffer data) throws IOException {
+        this.data = data;
+        int version = data.capacity() < CHECKSUM ? 0 : data.getInt(4);
+        if (data.capacity() < CHECKSUM || data.getInt(0) != MAGIC || (version != VERSION && version != UNCHECKED_VERSION)) {
+            throw new IOException("Not a supported inventory catalog");
+        }
+        int counts = version == VERSION ? CHECKSUM + Integer.BYTES : CHECKSUM;
+        int headerBytes = counts + 10 * Integer.BYTES;
+        if (data.capacity() < headerBytes) {
+            throw new IOException("Inventory catalog is truncated");
+        }
+        if (version == VERSION && data.getInt(CHECKSUM) != checksum(data)) {
+            throw new IOException("Inventory catalog is damaged: its checksum does not match");
+        }
+        Layout layout = new Layout(headerBytes, data.getInt(counts), data.getInt(counts + 4), data.getInt(counts + 8),
+                data.getInt(counts + 12), data.getInt(counts + 16), data.getInt(counts + 20), data.getInt(counts + 24),
+                data.getInt(counts + 28), data.getInt(counts + 32), data.getInt(counts + 36));
+        parts = new Table(layout.partRows, layout.partHashCapacity, layout.partGrams, layout.partColumns);
+        products = new Table(layout.productRows, layout.productHashCapacity, layout.productGrams, layout.productColumns);
+        bomPart = layout.bomPart;
+        bomQuantity = layout.bomQuantity;
+        dictOffsets = layout.dictOffsets;
+        dictBytes = layout.dictBytes;
+        if ((long) dictOffsets + (layout.dictEntries + 1L) * Integer.BYTES > data.capacity()
+                || (long) dictBytes + data.getInt(dictOffsets + layout.dictEntries * Integer.BYTES) != data.capacity()) {
+            throw new IOException("Inventory catalog is truncated");
+        }
+    }
+
+    /**
+     * Maps a catalog file into memory and checks it against the checksum in its header.
+     * @param file The catalog file.
+     * @return The opened catalog.
+     * @throws IOException If the file cannot be mapped, is not a catalog or is damaged.
+     */
+    public static ColumnarCatalog open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file.getFileName() + " is larger than a single mapping allows");
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return new ColumnarCatalog(data);
+            } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+                throw new IOException(file.getFileName() + " is damaged: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Computes the CRC32 of everything after the header's checksum.
+     */
+    private static int checksum(ByteBuffer data) {
+        int from = CHECKSUM + Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(from, data.capacity() - from));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the number of part rows.
+     * @return The part count.
+     */
+    public int partCount() {
+        return parts.rows;
+    }
+
+    /**
+     * Returns the number of product rows.
+     * @return The product count.
+     */
+    public int productCount() {
+        return products.rows;
+    }
+
+    /**
+     * Creates the part stored in a row.
+     * @param row The row number.
+     * @return A new InHousePart or OutsourcedPart.
+     */
+    public Part readPart(int row) {
+        return readPartRecord(row).toPart();
+    }
+
+    /**
+     * Reads the values stored in a part row, without creating a Part.
+     * @param row The row number.
+     * @return The part's values.
+     */
+    public PartRecord readPartRecord(int row) {
+        boolean outsourced = parts.intAt(Table.KIND, row) == OUTSOURCED;
+        int dynamic = parts.intAt(Table.DYNAMIC, row);
+        return new PartRecord(parts.id(row), string(parts.intAt(Table.NAME, row)), parts.price(row),
+                parts.intAt(Table.STOCK, row), parts.intAt(Table.MIN, row), parts.intAt(Table.MAX, row),
+                outsourced, outsourced ? 0 : dynamic, outsourced ? string(dynamic) : null);
+    }
+
+    /**
+     * Creates the product stored in a row, including its bill of materials.
+     * @param row The row number.
+     * @return A new Product.
+     */
+    public Product readProduct(int row) {
+        Product product = new Product();
+        product.setProductID(products.id(row));
+        product.setProductName(string(products.intAt(Table.NAME, row)));
+        product.setProductPrice(products.price(row));
+        product.setProductInStock(products.intAt(Table.STOCK, row));
+        product.setProductMin(products.intAt(Table.MIN, row));
+        product.setProductMax(products.intAt(Table.MAX, row));
+        product.getBillOfMaterials().load(productPartIDs(row), productQuantities(row));
+        return product;
+    }
+
+    /**
+     * Reads the values stored in a product row, without creating a Product.
+     * @param row The row number.
+     * @return The product's values and bill of materials.
+     */
+    public ProductRecord readProductRecord(int row) {
+        return new ProductRecord(products.id(row), string(products.intAt(Table.NAME, row)), products.price(row),
+                products.intAt(Table.STOCK, row), products.intAt(Table.MIN, row), products.intAt(Table.MAX, row),
+                productPartIDs(row), productQuantities(row));
+    }
+
+    /**
+     * Returns the ID stored in a part row.
+     * @param row The row number.
+     * @return The part ID.
+     */
+    public int partID(int row) {
+        return parts.id(row);
+    }
+
+    /**
+     * Returns the ID stored in a product row.
+     * @param row The row number.
+     * @return The product ID.
+     */
+    public int productID(int row) {
+        return products.id(row);
+    }
+
+    /**
+     * Returns the IDs on a product row's bill of materials. Sub-assemblies are stored as their product IDs negated.
+     * @param row The product row number.
+     * @return The IDs, in ascending order, so any sub-assemblies come first.
+     */
+    public int[] productPartIDs(int row) {
+        int start = bomStart(row);
+        int[] partIDs = new int[bomStart(row + 1) - start];
+        for (int line = 0; line < partIDs.length; line++) {
+            partIDs[line] = data.getInt(bomPart + (start + line) * Integer.BYTES);
+        }
+        return partIDs;
+    }
+
+    /**
+     * Returns the quantities on a product row's bill of materials.
+     * @param row The product row number.
+     * @return The quantities, in the same order as productPartIDs.
+     */
+    public int[] productQuantities(int row) {
+        int start = bomStart(row);
+        int[] quantities = new int[bomStart(row + 1) - start];
+        for (int line = 0; line < quantities.length; line++) {
+            quantities[line] = data.getInt(bomQuantity + (start + line) * Integer.BYTES);
+        }
+        return quantities;
+    }
+
+    /**
+     * Gives access to the part table's lookups.
+     * @return The part table.
+     */
+    Table parts() {
+        return parts;
+    }
+
+    /**
+     * Gives access to the product table's lookups.
+     * @return The product table.
+     */
+    Table products() {
+        return products;
+    }
+
+    private int bomStart(int row) {
+        return products.intAt(Table.BOM_START, row);
+    }
+
+    /**
+     * Decodes a stored string.
+     * @param index The entry index, or -1 for null.
+     * @return The string, or null.
+     */
+    private String string(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int start = data.getInt(dictOffsets + index * Integer.BYTES);
+        int end = data.getInt(dictOffsets + (index + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        data.get(dictBytes + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a catalog file holding the given parts and products. Rows are stored sorted by ID.
+     * The lists are read once, by index, and their fields are staged in primitive columns,
+     * so a list that creates its items on demand does not need to hold them all at once.
+     * @param file The file to write. An existing file is replaced.
+     * @param partList The parts to store.
+     * @param productList The products to store.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, List<? extends Part> partList, List<? extends Product> productList) throws IOException {
+        Strings strings = new Strings();
+        Staged partRows = new Staged(partList.size());
+        int[] kind = new int[partRows.rows];
+        int[] dynamic = new int[partRows.rows];
+        for (int i = 0; i < partRows.rows; i++) {
+            Part part = partList.get(i);
+            partRows.stage(i, part.getPartID(), part.getPartName(), part.getPartPrice(), part.getPartInStock(),
+                    part.getPartMin(), part.getPartMax(), strings);
+            if (part instanceof OutsourcedPart) {
+                kind[i] = OUTSOURCED;
+                dynamic[i] = strings.add(((OutsourcedPart) part).getCompanyName());
+            } else {
+                kind[i] = IN_HOUSE;
+                dynamic[i] = ((InHousePart) part).getMachineID();
+            }
+        }
+        Staged productRows = new Staged(productList.size());
+        int[] bomStarts = new int[productRows.rows + 1];
+        int[] bomParts = new int[Math.max(16, productRows.rows)];
+        int[] bomQuantities = new int[bomParts.length];
+        int bomLines = 0;
+        for (int i = 0; i < productRows.rows; i++) {
+            Product product = productList.get(i);
+            productRows.stage(i, product.getProductID(), product.getProductName(), product.getProductPrice(),
+                    product.getProductInStock(), product.getProductMin(), product.getProductMax(), strings);
+            BillOfMaterials bom = product.getBillOfMaterials();
+            int[] ids = bom.storedIDs();
+            int[] quantities = bom.storedQuantities();
+            bomStarts[i] = bomLines;
+            if (bomLines + ids.length > bomParts.length) {
+                int capacity = Math.max(bomLines + ids.length, bomParts.length + (bomParts.length >> 1));
+                bomParts = Arrays.copyOf(bomParts, capacity);
+                bomQuantities = Arrays.copyOf(bomQuantities, capacity);
+            }
+            System.arraycopy(ids, 0, bomParts, bomLines, ids.length);
+            System.arraycopy(quantities, 0, bomQuantities, bomLines, ids.length);
+            bomLines += ids.length;
+        }
+        bomStarts[productRows.rows] = bomLines;
+        partRows.index();
+        productRows.index();
+        Layout layout = new Layout(HEADER_BYTES, partRows.rows, hashCapacity(partRows.rows), partRows.grams.keys.length, partRows.grams.rows.length,
+                productRows.rows, hashCapacity(productRows.rows), productRows.grams.keys.length, productRows.grams.rows.length,
+                bomLines, strings.values.size());
+        long size = layout.dictBytes + strings.bytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The inventory is too large for a single catalog file");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(0, MAGIC).putInt(4, VERSION);
+            int[] counts = {layout.partRows, layout.partHashCapacity, layout.partGrams, layout.partGramRows,
+                    layout.productRows, layout.productHashCapacity, layout.productGrams, layout.productGramRows,
+                    layout.bomLines, layout.dictEntries};
+            for (int i = 0; i < counts.length; i++) {
+                out.putInt(CHECKSUM + (i + 1) * Integer.BYTES, counts[i]);
+            }
+            writeTable(out, layout.partColumns, partRows, layout.partHashCapacity);
+            for (int row = 0; row < partRows.rows; row++) {
+                out.putInt(layout.partColumns[Table.KIND] + row * Integer.BYTES, kind[partRows.order[row]]);
+                out.putInt(layout.partColumns[Table.DYNAMIC] + row * Integer.BYTES, dynamic[partRows.order[row]]);
+            }
+            writeTable(out, layout.productColumns, productRows, layout.productHashCapacity);
+            int line = 0;
+            for (int row = 0; row < productRows.rows; row++) {
+                int i = productRows.order[row];
+                out.putInt(layout.productColumns[Table.BOM_START] + row * Integer.BYTES, line);
+                for (int staged = bomStarts[i]; staged < bomStarts[i + 1]; staged++, line++) {
+                    out.putInt(layout.bomPart + line * Integer.BYTES, bomParts[staged]);
+                    out.putInt(layout.bomQuantity + line * Integer.BYTES, bomQuantities[staged]);
+                }
+            }
+            out.putInt(layout.productColumns[Table.BOM_START] + productRows.rows * Integer.BYTES, line);
+            int offset = 0;
+            for (int i = 0; i < strings.values.size(); i++) {
+                byte[] value = strings.values.get(i);
+                out.putInt(layout.dictOffsets + i * Integer.BYTES, offset);
+                out.put(layout.dictBytes + offset, value);
+                offset += value.length;
+            }
+            out.putInt(layout.dictOffsets + strings.values.size() * Integer.BYTES, offset);
+            out.putInt(CHECKSUM, checksum(out));
+            out.force();
+        }
+    }
+
+    /**
+     * Writes the columns shared by both tables, in ID order, followed by the name hash table and trigram postings.
+     */
+    private static void writeTable(ByteBuffer out, int[] columns, Staged table, int hashCapacity) {
+        int mask = hashCapacity - 1;
+        for (int row = 0; row < table.rows; row++) {
+            int i = table.order[row];
+            out.putInt(columns[Table.ID] + row * Integer.BYTES, table.id[i]);
+            out.putInt(columns[Table.STOCK] + row * Integer.BYTES, table.stock[i]);
+            out.putInt(columns[Table.MIN] + row * Integer.BYTES, table.min[i]);
+            out.putInt(columns[Table.MAX] + row * Integer.BYTES, table.max[i]);
+            out.putInt(columns[Table.NAME] + row * Integer.BYTES, table.name[i]);
+            out.putDouble(columns[Table.PRICE] + row * Double.BYTES, table.price[i]);
+            if (table.names[i] != null) {
+                int slot = hash(InventoryIndex.fold(table.names[i])) & mask;
+                while (out.getInt(columns[Table.HASH] + slot * Integer.BYTES) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                out.putInt(columns[Table.HASH] + slot * Integer.BYTES, row + 1);
+            }
+        }
+        Postings grams = table.grams;
+        for (int i = 0; i < grams.keys.length; i++) {
+            out.putLong(columns[Table.GRAM_KEYS] + i * Long.BYTES, grams.keys[i]);
+            out.putInt(columns[Table.GRAM_OFFSETS] + i * Integer.BYTES, grams.offsets[i]);
+        }
+        out.putInt(columns[Table.GRAM_OFFSETS] + grams.keys.length * Integer.BYTES, grams.rows.length);
+        for (int i = 0; i < grams.rows.length; i++) {
+            out.putInt(columns[Table.GRAM_ROWS] + i * Integer.BYTES, grams.rows[i]);
+        }
+    }
+
+    private static int hashCapacity(int rows) {
+        return Integer.highestOneBit(Math.max(2, rows * 2) - 1) << 1;
+    }
+
+    private static int hash(String folded) {
+        int h = folded.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Lookups over one mapped table: ID binary search, exact name hash lookup and trigram search.
+     */
+    final class Table {
+        static final int ID = 0;
+        static final int STOCK = 1;
+        static final int MIN = 2;
+        static final int MAX = 3;
+        static final int NAME = 4;
+        static final int KIND = 5;
+        static final int DYNAMIC = 6;
+        static final int BOM_START = 5;
+        static final int PRICE = 7;
+        static final int HASH = 8;
+        static final int GRAM_KEYS = 9;
+        static final int GRAM_OFFSETS = 10;
+        static final int GRAM_ROWS = 11;
+        static final int COLUMNS = 12;
+        final int rows;
+        private final int hashCapacity;
+        private final int grams;
+        private final int[] columns;
+
+        private Table(int rows, int hashCapacity, int grams, int[] columns) {
+            this.rows = rows;
+            this.hashCapacity = hashCapacity;
+            this.grams = grams;
+            this.columns = columns;
+        }
+
+        int intAt(int column, int row) {
+            return data.getInt(columns[column] + row * Integer.BYTES);
+        }
+
+        int id(int row) {
+            return intAt(ID, row);
+        }
+
+        double price(int row) {
+            return data.getDouble(columns[PRICE] + row * Double.BYTES);
+        }
+
+        String name(int row) {
+            return string(intAt(NAME, row));
+        }
+
+        /**
+         * Finds the row holding an ID.
+         * @param id The ID to look up.
+         * @return The row number, or -1 if no row has that ID.
+         */
+        int findRow(int id) {
+            int low = 0;
+            int high = rows - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midID = id(mid);
+                if (midID < id) {
+                    low = mid + 1;
+                } else if (midID > id) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the highest ID in the table.
+         * @return The ID in the last row, or 0 if the table is empty.
+         */
+        int maxID() {
+            return rows == 0 ? 0 : id(rows - 1);
+        }
+
+        /**
+         * Passes every row whose lower-cased name equals a folded name to an action.
+         * @param folded The lower-cased name.
+         * @param action Receives the matching row numbers.
+         */
+        void forEachRowNamed(String folded, IntConsumer action) {
+            int mask = hashCapacity - 1;
+            for (int slot = hash(folded) & mask; ; slot = (slot + 1) & mask) {
+                int entry = data.getInt(columns[HASH] + slot * Integer.BYTES);
+                if (entry == 0) {
+                    return;
+                }
+                String name = name(entry - 1);
+                if (name != null && InventoryIndex.fold(name).equals(folded)) {
+                    action.accept(entry - 1);
+                }
+            }
+        }
+
+        /**
+         * Passes every row whose lower-cased name contains a folded term to an action.
+         * Terms of three or more characters only check the rows in the smallest trigram posting.
+         * @param folded The lower-cased search term.
+         * @param action Receives the matching row numbers.
+         */
+        void search(String folded, IntConsumer action) {
+            if (folded.length() < 3) {
+                for (int row = 0; row < rows; row++) {
+                    if (contains(row, folded)) {
+                        action.accept(row);
+                    }
+                }
+                return;
+            }
+            int best = -1;
+            int bestSize = Integer.MAX_VALUE;
+            for (int i = 0; i + 3 <= folded.length(); i++) {
+                int key = findGram(SearchIndex.gram(folded, i));
+                if (key < 0) {
+                    return;
+                }
+                int size = gramOffset(key + 1) - gramOffset(key);
+                if (size < bestSize) {
+                    best = key;
+                    bestSize = size;
+                }
+            }
+            for (int i = gramOffset(best); i < gramOffset(best + 1); i++) {
+                int row = data.getInt(columns[GRAM_ROWS] + i * Integer.BYTES);
+                if (contains(row, folded)) {
+                    action.accept(row);
+                }
+            }
+        }
+
+        private boolean contains(int row, String folded) {
+            String name = name(row);
+            return name != null && InventoryIndex.fold(name).contains(folded);
+        }
+
+        private int gramOffset(int key) {
+            return data.getInt(columns[GRAM_OFFSETS] + key * Integer.BYTES);
+        }
+
+        private int findGram(long gram) {
+            int low = 0;
+            int high = grams - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midGram = data.getLong(columns[GRAM_KEYS] + mid * Long.BYTES);
+                if (midGram < gram) {
+                    low = mid + 1;
+                } else if (midGram > gram) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Dictionary of the strings stored in the file, encoded as UTF-8 in the order they were first added.
+     * Each distinct string is stored once, so repeated names and company names share one entry.
+     */
+    private static final class Strings {
+        final List<byte[]> values = new ArrayList<>();
+        private final Map<String, Integer> entries = new HashMap<>();
+        long bytes;
+
+        /**
+         * Adds a string, or finds the entry it already has.
+         * @param value The string, or null.
+         * @return The entry index, or -1 for null.
+         */
+        int add(String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer existing = entries.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            values.add(encoded);
+            bytes += encoded.length;
+            entries.put(value, values.size() - 1);
+            return values.size() - 1;
+        }
+    }
+
+    /**
+     * The columns shared by parts and products, staged in list order before being written in ID order.
+     */
+    private static final class Staged {
+        final int rows;
+        final int[] id, stock, min, max, name;
+        final double[] price;
+        final String[] names;
+        /**
+         * List positions in ID order: row r of the file holds the item staged at order[r].
+         */
+        int[] order;
+        Postings grams;
+
+        Staged(int rows) {
+            this.rows = rows;
+            id = new int[rows];
+            stock = new int[rows];
+            min = new int[rows];
+            max = new int[rows];
+            name = new int[rows];
+            price = new double[rows];
+            names = new String[rows];
+        }
+
+        void stage(int i, int itemID, String itemName, double itemPrice, int inStock, int itemMin, int itemMax, Strings strings) {
+            id[i] = itemID;
+            names[i] = itemName;
+            name[i] = strings.add(itemName);
+            price[i] = itemPrice;
+            stock[i] = inStock;
+            min[i] = itemMin;
+            max[i] = itemMax;
+        }
+
+        /**
+         * Sorts the staged items by ID and builds the trigram postings over their names.
+         */
+        void index() {
+            long[] keyed = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                keyed[i] = ((long) id[i] << 32) | i;
+            }
+            Arrays.sort(keyed);
+            order = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                order[row] = (int) keyed[row];
+            }
+            grams = new Postings(names, order);
+        }
+    }
+
+    /**
+     * Trigram postings for a column of names: sorted trigram keys, and for each key a run of ascending row numbers.
+     * Every (trigram, row) pair is packed into a long, with the trigram replaced by its rank among the distinct
+     * trigrams, so the postings are built with one primitive sort.
+     */
+    private static final class Postings {
+        final long[] keys;
+        final int[] offsets;
+        final int[] rows;
+
+        Postings(String[] names, int[] order) {
+            Map<Long, Integer> ids = new HashMap<>();
+            long[] pairs = new long[Math.max(16, order.length)];
+            int count = 0;
+            for (int row = 0; row < order.length; row++) {
+                String name = names[order[row]];
+                if (name == null) {
+                    continue;
+                }
+                String folded = InventoryIndex.fold(name);
+                for (int i = 0; i + 3 <= folded.length(); i++) {
+                    int gramID = ids.computeIfAbsent(SearchIndex.gram(folded, i), key -> ids.size());
+                    if (count == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, count + (count >> 1));
+                    }
+                    pairs[count++] = ((long) gramID << 32) | row;
+                }
+            }
+            keys = new long[ids.size()];
+            int[] rank = new int[ids.size()];
+            ids.forEach((gram, gramID) -> keys[gramID] = gram);
+            long[] sortedKeys = keys.clone();
+            Arrays.sort(sortedKeys);
+            for (int gramID = 0; gramID < keys.length; gramID++) {
+                rank[gramID] = Arrays.binarySearch(sortedKeys, keys[gramID]);
+            }
+            System.arraycopy(sortedKeys, 0, keys, 0, keys.length);
+            for (int i = 0; i < count; i++) {
+                pairs[i] = ((long) rank[(int) (pairs[i] >>> 32)] << 32) | (pairs[i] & 0xFFFFFFFFL);
+            }
+            Arrays.sort(pairs, 0, count);
+            offsets = new int[keys.length];
+            int[] postingRows = new int[count];
+            int total = 0;
+            int key = -1;
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && pairs[i] == pairs[i - 1]) {
+                    continue;
+                }
+                int pairKey = (int) (pairs[i] >>> 32);
+                while (key < pairKey) {
+                    offsets[++key] = total;
+                }
+                postingRows[total++] = (int) pairs[i];
+            }
+            rows = Arrays.copyOf(postingRows, total);
+        }
+    }
+
+    /**
+     * Byte offsets of every section, derived from the counts in the header.
+     * Sections are laid out in a fixed order and each starts on an eight-byte boundary.
+     */
+    private static final class Layout {
+        final int partRows, partHashCapacity, partGrams, partGramRows;
+        final int productRows, productHashCapacity, productGrams, productGramRows;
+        final int bomLines, dictEntries;
+        final int[] partColumns = new int[Table.COLUMNS];
+        final int[] productColumns = new int[Table.COLUMNS];
+        final int bomPart, bomQuantity, dictOffsets, dictBytes;
+        private long next;
+
+        Layout(int headerBytes, int partRows, int partHashCapacity, int partGrams, int partGramRows,
+               int productRows, int productHashCapacity, int productGrams, int productGramRows,
+               int bomLines, int dictEntries) {
+            this.partRows = partRows;
+            this.partHashCapacity = partHashCapacity;
+            this.partGrams = partGrams;
+            this.partGramRows = partGramRows;
+            this.productRows = productRows;
+            this.productHashCapacity = productHashCapacity;
+            this.productGrams = productGrams;
+            this.productGramRows = productGramRows;
+            this.bomLines = bomLines;
+            this.dictEntries = dictEntries;
+            next = headerBytes;
+            for (int column : new int[]{Table.ID, Table.STOCK, Table.MIN, Table.MAX, Table.NAME, Table.KIND, Table.DYNAMIC}) {
+                partColumns[column] = section(partRows * 4L);
+            }
+            partColumns[Table.PRICE] = section(partRows * 8L);
+            lookups(partColumns, partHashCapacity, partGrams, partGramRows);
+            for (int column : new int[]{Table.ID, Table.STOCK, Table.MIN, Table.MAX, Table.NAME}) {
+                productColumns[column] = section(productRows * 4L);
+            }
+            productColumns[Table.BOM_START] = section((productRows + 1) * 4L);
+            productColumns[Table.PRICE] = section(productRows * 8L);
+            lookups(productColumns, productHashCapacity, productGrams, productGramRows);
+            bomPart = section(bomLines * 4L);
+            bomQuantity = section(bomLines * 4L);
+            dictOffsets = section((dictEntries + 1) * 4L);
+            dictBytes = section(0);
+        }
+
+        private void lookups(int[] columns, int hashCapacity, int grams, int gramRows) {
+            columns[Table.HASH] = section(hashCapacity * 4L);
+            columns[Table.GRAM_KEYS] = section(grams * 8L);
+            columns[Table.GRAM_OFFSETS] = section((grams + 1) * 4L);
+            columns[Table.GRAM_ROWS] = section(gramRows * 4L);
+        }
+
+        private int section(long bytes) {
+            long start = (next + 7) & ~7L;
+            next = start + bytes;
+            if (next > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The inventory is too large for a single catalog file");
+            }
+            return (int) start;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Cached total part cost of each product, kept current by deltas.
+ * <p>
+ * A product's cost is the sum of quantity times price over its exploded bill of materials: its own parts plus the
+ * parts of every sub-assembly at any depth, counting only parts still in the inventory. It is worked out the first
+ * time it is asked for and then kept, together with a reverse map from each part needed to the cached products
+ * that use it. When a part's price changes, every cached product
+ * using it is adjusted by quantity times the price difference, so reading a cost is O(1) however large the bill
+ * and however often prices move. Adding or removing a part adjusts the same products by its full price. A product
+ * that is added, replaced, removed or has its bill changed is dropped and worked out again on its next read, and so
+ * is every cached product it is built into.
+ * </p>
+ * <p>
+ * Costs are held in ten-thousandths as longs, so repeated deltas add up exactly and never drift from a fresh sum.
+ * Must only be used on the JavaFX application thread, like the inventory lists.
+ * </p>
+ */
+public class CostRollup {
+    /**
+     * Fixed-point scale of held costs: prices are rounded to four decimal places.
+     */
+    private static final double SCALE = 10_000;
+    private final IntFunction<Part> parts;
+    private final IntFunction<Product> products;
+    private final BomExplosion explosion;
+    /**
+     * Cached rollups by product ID.
+     */
+    private final IntObjectMap<Rollup> byProduct = new IntObjectMap<>();
+    /**
+     * Cached rollups that use a part, keyed by part ID and then by product ID.
+     */
+    private final IntObjectMap<IntObjectMap<Rollup>> byPart = new IntObjectMap<>();
+    /**
+     * Cached rollups that have a product built in as a sub-assembly, keyed by sub-assembly ID and then by product ID.
+     */
+    private final IntObjectMap<IntObjectMap<Rollup>> byAssembly = new IntObjectMap<>();
+
+    /**
+     * Creates an empty rollup.
+     * @param parts Finds a part in the inventory by ID.
+     * @param products Finds a product in the inventory by ID.
+     * @param explosion Explodes nested bills of materials into the parts they need.
+     */
+    CostRollup(IntFunction<Part> parts, IntFunction<Product> products, BomExplosion explosion) {
+        this.parts = parts;
+        this.products = products;
+        this.explosion = explosion;
+    }
+
+    /**
+     * Returns the total cost of the parts on a product's bill of materials.
+     * Products in the inventory are answered from the cache in constant time once their cost is known;
+     * other products, such as one still being edited, are summed at current prices each time.
+     * @param product The product.
+     * @return The sum of quantity times price over the product's parts, including those of its sub-assemblies.
+     * @throws IllegalStateException if the product's bill of materials contains itself.
+     * @throws ArithmeticException if the cost is too large to hold.
+     */
+    public double costOf(Product product) {
+        int productID = product.getProductID();
+        Rollup rollup = byProduct.get(productID);
+        if (rollup != null && rollup.product == product) {
+            return rollup.cost / SCALE;
+        }
+        Product current = products.apply(productID);
+        // A draft that shares an ID with a product in the inventory leaves that product's cost cached.
+        if (rollup != null && rollup.product != current) {
+            drop(rollup);
+        }
+        rollup = new Rollup(product);
+        if (current == product) {
+            add(rollup);
+        }
+        return rollup.cost / SCALE;
+    }
+
+    /**
+     * Applies a batch of inventory changes to the cached costs.
+     * @param changes The changes, as they happen.
+     */
+    void apply(List<InventoryEvent> changes) {
+        for (InventoryEvent event : changes) {
+            if (event instanceof InventoryEvent.PartAdded added) {
+                shift(added.id(), scaled(added.part().getPartPrice()));
+            } else if (event instanceof InventoryEvent.PartRemoved removed) {
+                shift(removed.id(), -scaled(removed.part().getPartPrice()));
+            } else if (event instanceof InventoryEvent.PartUpdated updated) {
+                int oldID = updated.before().getPartID();
+                long before = scaled(updated.before().getPartPrice());
+                long after = scaled(updated.after().getPartPrice());
+                if (oldID != updated.id()) {
+                    shift(oldID, -before);
+                    shift(updated.id(), after);
+                } else if (before != after) {
+                    shift(oldID, after - before);
+                }
+            } else if (event instanceof InventoryEvent.ProductAdded added) {
+                dropProduct(added.id(), true);
+            } else if (event instanceof InventoryEvent.ProductRemoved removed) {
+                dropProduct(removed.id(), true);
+            } else if (event instanceof InventoryEvent.ProductUpdated updated) {
+                Product before = updated.before();
+                boolean billChanged = before == updated.after() || before.getProductID() != updated.id()
+                        || !before.getBillOfMaterials().sameLines(updated.after().getBillOfMaterials());
+                dropProduct(before.getProductID(), billChanged);
+                dropProduct(updated.id(), billChanged);
+            }
+        }
+    }
+
+    /**
+     * Adjusts every cached product that uses a part by the part's quantity times a price change.
+     */
+    private void shift(int partID, long priceDelta) {
+        IntObjectMap<Rollup> users = byPart.get(partID);
+        if (users != null) {
+            users.forEachValue(rollup -> rollup.cost += rollup.quantityOf(partID) * priceDelta);
+        }
+    }
+
+    /**
+     * Drops a product's cached cost and, if its bill changed, the costs of every product it is built into.
+     */
+    private void dropProduct(int productID, boolean billChanged) {
+        drop(byProduct.get(productID));
+        IntObjectMap<Rollup> users = billChanged ? byAssembly.get(productID) : null;
+        if (users != null) {
+            List<Rollup> affected = new ArrayList<>(users.size());
+            users.forEachValue(affected::add);
+            affected.forEach(this::drop);
+        }
+    }
+
+    private void add(Rollup rollup) {
+        byProduct.put(rollup.productID, rollup);
+        link(byPart, rollup.partIDs, rollup);
+        link(byAssembly, rollup.assemblies, rollup);
+    }
+
+    private void drop(Rollup rollup) {
+        if (rollup == null) {
+            return;
+        }
+        byProduct.remove(rollup.productID);
+        unlink(byPart, rollup.partIDs, rollup);
+        unlink(byAssembly, rollup.assemblies, rollup);
+    }
+
+    private static void link(IntObjectMap<IntObjectMap<Rollup>> index, int[] keys, Rollup rollup) {
+        for (int key : keys) {
+            IntObjectMap<Rollup> users = index.get(key);
+            if (users == null) {
+                users = new IntObjectMap<>(4);
+                index.put(key, users);
+            }
+            users.put(rollup.productID, rollup);
+        }
+    }
+
+    private static void unlink(IntObjectMap<IntObjectMap<Rollup>> index, int[] keys, Rollup rollup) {
+        for (int key : keys) {
+            IntObjectMap<Rollup> users = index.get(key);
+            if (users != null) {
+                users.remove(rollup.productID);
+                if (users.isEmpty()) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    private static long scaled(double price) {
+        return Math.round(price * SCALE);
+    }
+
+    /**
+     * A product's cached cost and the exploded bill of materials it was summed over.
+     */
+    private final class Rollup {
+        final Product product;
+        final int productID;
+        /**
+         * The part IDs needed, in ascending order, and their total quantities.
+         */
+        final int[] partIDs;
+        final long[] quantities;
+        /**
+         * The sub-assemblies built in at any depth.
+         */
+        final int[] assemblies;
+        /**
+         * The total cost in ten-thousandths.
+         */
+        long cost;
+
+        Rollup(Product product) {
+            this.product = product;
+            productID = product.getProductID();
+            BomExplosion.Requirements requirements = explosion.explode(product, 1);
+            partIDs = requirements.partIDs();
+            quantities = new long[partIDs.length];
+            for (int line = 0; line < partIDs.length; line++) {
+                quantities[line] = requirements.quantity(line);
+            }
+            assemblies = requirements.assemblies();
+            for (int line = 0; line < partIDs.length; line++) {
+                Part part = parts.apply(partIDs[line]);
+                if (part != null) {
+                    cost = Math.addExact(cost, Math.multiplyExact(quantities[line], scaled(part.getPartPrice())));
+                }
+            }
+        }
+
+        long quantityOf(int partID) {
+            int line = Arrays.binarySearch(partIDs, partID);
+            return line < 0 ? 0 : quantities[line];
+        }
+    }
+}
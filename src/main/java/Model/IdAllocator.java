@@ -0,0 +1,169 @@
+package Model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out unique, increasing IDs from any thread without locking.
+ * <p>
+ * Single IDs come from one atomic counter. Bulk callers can reserve a whole range with one atomic add,
+ * and nextForThread serves IDs from a small block reserved per thread, so threads allocating in a tight
+ * loop never touch the shared counter more than once per block.
+ * </p>
+ * <p>
+ * When backed by a file, the allocator persists a high-water mark ahead of the IDs it hands out: the mark
+ * is moved forward a chunk at a time, and only then are IDs below it issued. After a restart, allocation
+ * resumes above the mark, so IDs stay increasing even if the items that used the highest IDs were deleted
+ * or never saved. The file is only written once per chunk.
+ * </p>
+ */
+public class IdAllocator {
+    /**
+     * IDs the high-water mark is moved ahead by each time it is reached.
+     */
+    private static final int CHUNK = 1024;
+    /**
+     * IDs reserved at a time for each thread by nextForThread.
+     */
+    private static final int THREAD_BLOCK = 64;
+    /**
+     * The last ID handed out or reserved.
+     */
+    private final AtomicInteger last = new AtomicInteger();
+    /**
+     * IDs up to this value may be handed out without persisting a new mark.
+     */
+    private volatile int limit = Integer.MAX_VALUE;
+    private final Path file;
+    private final ThreadLocal<int[]> threadBlock = ThreadLocal.withInitial(() -> new int[]{1, 0});
+
+    /**
+     * Creates an allocator that starts at 1 and does not persist anything.
+     */
+    public IdAllocator() {
+        this.file = null;
+    }
+
+    private IdAllocator(Path file, int mark) {
+        this.file = file;
+        last.set(mark);
+        limit = mark;
+    }
+
+    /**
+     * Opens an allocator whose high-water mark is persisted in a file. Allocation resumes above the stored mark.
+     * @param file The file holding the mark. It is created on the first allocation if missing.
+     * @return The allocator.
+     * @throws IOException If an existing mark file cannot be read.
+     */
+    public static IdAllocator open(Path file) throws IOException {
+        int mark = 0;
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                mark = in.readInt();
+            }
+        }
+        return new IdAllocator(file, mark);
+    }
+
+    /**
+     * Allocates the next ID.
+     * @return A new ID, greater than every ID allocated before.
+     */
+    public int next() {
+        return reserve(1);
+    }
+
+    /**
+     * Reserves a run of consecutive IDs for a batch.
+     * @param count The number of IDs to reserve.
+     * @return The first ID of the run. The run covers first to first + count - 1.
+     * @throws IllegalArgumentException if count is not positive.
+     */
+    public int reserve(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Count must be greater than 0");
+        }
+        while (true) {
+            int current = last.get();
+            int end = Math.addExact(current, count);
+            if (end > limit) {
+                extendLimit(end);
+                continue;
+            }
+            if (last.compareAndSet(current, end)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Allocates an ID from a block reserved for the calling thread. IDs from different threads interleave,
+     * so they are unique but only increasing within a thread.
+     * @return A new ID.
+     */
+    public int nextForThread() {
+        int[] block = threadBlock.get();
+        if (block[0] > block[1]) {
+            block[0] = reserve(THREAD_BLOCK);
+            block[1] = block[0] + THREAD_BLOCK - 1;
+        }
+        return block[0]++;
+    }
+
+    /**
+     * Returns the ID the next call to next will most likely return, without allocating it.
+     * Another thread may take it first.
+     * @return The next ID.
+     */
+    public int peek() {
+        return last.get() + 1;
+    }
+
+    /**
+     * Moves the allocator past an ID already in use, so it is never handed out.
+     * @param id The ID in use.
+     */
+    public void advancePast(int id) {
+        if (id > limit) {
+            extendLimit(id);
+        }
+        last.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Persists a mark at or above the needed value before IDs up to it are handed out.
+     */
+    private synchronized void extendLimit(int needed) {
+        if (needed <= limit) {
+            return;
+        }
+        int mark = (int) Math.min(Integer.MAX_VALUE, (long) needed + CHUNK);
+        try {
+            write(mark);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not persist the ID high-water mark", e);
+        }
+        limit = mark;
+    }
+
+    private void write(int mark) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeInt(mark);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
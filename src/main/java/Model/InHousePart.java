@@ -1,30 +1,26 @@
 package Model;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-
 /**
  * Represents an InHousePart, extending the general Part class.
  * This class includes additional properties specific to in-house parts, such as machine ID.
  */
 public class InHousePart extends Part {
     /**
-     * Property to store the machine ID associated with the in-house part.
+     * The machine ID associated with the in-house part.
      */
-    private final IntegerProperty machineID;
+    private int machineID;
     /**
      * Constructor to initialize an InHousePart.
      */
     public InHousePart() {
         super();
-        machineID = new SimpleIntegerProperty();
     }
     /**
      * Retrieves the machine ID associated with this part.
      * @return The machine ID as an integer.
      */
     public int getMachineID() {
-        return this.machineID.get();
+        return this.machineID;
     }
     /**
      * Sets the machine ID for this part.
@@ -37,6 +33,15 @@ public class InHousePart extends Part {
         if (machineID < 0) {
             throw new IllegalArgumentException("Machine ID cannot be negative");
         }
-        this.machineID.set(machineID);
+        this.machineID = machineID;
+    }
+    /**
+     * Copies this part's current values into an immutable record.
+     * @return A new in-house PartRecord.
+     */
+    @Override
+    public PartRecord toRecord() {
+        return new PartRecord(getPartID(), getPartName(), getPartPrice(), getPartInStock(), getPartMin(), getPartMax(),
+                false, machineID, null);
     }
 }
@@ -1,27 +1,116 @@
 package Model;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 /**
  * Inventory class to manage the product and part inventory.
  */
 public class Inventory {
+    /**
+     * Backing list of the product inventory, able to hold catalog rows that have not been read yet.
+     */
+    private static final LazyRowList<Product> productRows = new LazyRowList<>(Product::getProductID);
+    /**
+     * Backing list of the part inventory, able to hold catalog rows that have not been read yet.
+     */
+    private static final LazyRowList<Part> partRows = new LazyRowList<>(Part::getPartID);
     /**
      * Observable list to store the inventory of products.
      */
-    private static ObservableList<Product> productInv = FXCollections.observableArrayList();
+    private static ObservableList<Product> productInv = FXCollections.observableList(productRows);
     /**
      * Observable list to store the inventory of parts.
      */
-    private static ObservableList<Part> partInv = FXCollections.observableArrayList();
+    private static ObservableList<Part> partInv = FXCollections.observableList(partRows);
+    /**
+     * ID and name index over the part inventory.
+     */
+    private static final InventoryIndex<Part> partIndex = new InventoryIndex<>(partInv, Part::getPartID, Part::getPartName);
+    /**
+     * ID and name index over the product inventory.
+     */
+    private static final InventoryIndex<Product> productIndex = new InventoryIndex<>(productInv, Product::getProductID, Product::getProductName);
+    /**
+     * Partial name search index over the part inventory.
+     */
+    private static final SearchIndex<Part> partSearch = new SearchIndex<>(partInv, Part::getPartName);
+    /**
+     * Partial name search index over the product inventory.
+     */
+    private static final SearchIndex<Product> productSearch = new SearchIndex<>(productInv, Product::getProductName);
+    /**
+     * Reverse index from part ID to the products that use the part.
+     */
+    private static final PartUsageIndex partUsage = new PartUsageIndex(productInv);
+    /**
+     * Thread-safe view of the part inventory for worker threads. Its changes are published back to partInv.
+     */
+    private static final InventoryStore<Part> partStore = new InventoryStore<>(partInv, Part::getPartID, Inventory::publishParts, Platform::runLater);
+    /**
+     * Thread-safe view of the product inventory for worker threads. Its changes are published back to productInv.
+     */
+    private static final InventoryStore<Product> productStore = new InventoryStore<>(productInv, Product::getProductID, Inventory::publishProducts, Platform::runLater);
+    /**
+     * Typed change events for both inventories. Created after the indexes and stores, so they are up to date
+     * when subscribers hear of a change.
+     */
+    private static final InventoryEvents events = new InventoryEvents(partInv, productInv);
+    /**
+     * Parts by how far their stock is above their minimum.
+     */
+    private static final ReorderQueue<Part> partReorders = new ReorderQueue<>(Inventory::lookupPart);
+    /**
+     * Products by how far their stock is above their minimum.
+     */
+    private static final ReorderQueue<Product> productReorders = new ReorderQueue<>(Inventory::lookupProd);
     /**
-     * Counter to auto-generate part IDs.
+     * Nested bill of materials explosion, memoized per product.
      */
-    private static int partIDCount = 0;
+    private static final BomExplosion bomExplosion = new BomExplosion(productStore::get);
     /**
-     * Counter to auto-generate product IDs.
+     * Cached part cost of each product, adjusted as part prices change.
      */
-    private static int productIDCount = 0;
+    private static final CostRollup costs = new CostRollup(Inventory::lookupPart, Inventory::lookupProd, bomExplosion);
+    /**
+     * How many units of each product the parts in stock can build.
+     */
+    private static final BuildableQuantities buildable = new BuildableQuantities(partStore::get, Inventory::lookupProd,
+            Inventory::copyProductInv, bomExplosion, Platform::runLater);
+    /**
+     * Stock transactions queued for committing in batches.
+     */
+    private static final BuildOrderQueue buildOrders = new BuildOrderQueue(Inventory::newStockTransaction,
+            () -> new StockTransaction.Attempt(partStore, productStore, bomExplosion));
+    /**
+     * Journal receiving every inventory change, or null when changes are not persisted.
+     */
+    private static InventoryJournal journal;
+    /**
+     * Ledger recording every stock movement, or null when stock history is not kept.
+     */
+    private static volatile StockLedger ledger;
+    /**
+     * Allocator to auto-generate part IDs. Replaced by a persisted allocator when a data directory is opened.
+     */
+    private static volatile IdAllocator partIDs = new IdAllocator();
+    /**
+     * Allocator to auto-generate product IDs. Replaced by a persisted allocator when a data directory is opened.
+     */
+    private static volatile IdAllocator productIDs = new IdAllocator();
+
+    static {
+        events.subscribe(bomExplosion::invalidate);
+        events.subscribe(Inventory::trackStock);
+        events.subscribe(costs::apply);
+        events.subscribe(buildable::apply);
+    }
     /**
      * Returns the current part inventory.
      * @return The observable list of parts.
@@ -36,6 +125,13 @@ public class Inventory {
     public static void addPart(Part part) {
         partInv.add(part);
     }
+    /**
+     * Adds a batch of parts to the inventory as a single list change.
+     * @param parts The parts to be added.
+     */
+    public static void addParts(Collection<? extends Part> parts) {
+        partInv.addAll(parts);
+    }
     /**
      * Removes a part from the inventory.
      * @param part The part to be removed.
@@ -52,77 +148,396 @@ public class Inventory {
         partInv.set(index, part);
     }
     /**
-     * Returns and increments the part ID count.
-     * @return The new part ID count.
+     * Replaces a part with another, in the same position. The position is found through the list's sequence
+     * numbers rather than a scan, so replaying a long journal stays linear in its length.
+     * @param old The part in the inventory.
+     * @param part The part to replace it with.
+     */
+    static void replacePart(Part old, Part part) {
+        partInv.set(partInv.indexOf(old), part);
+    }
+    /**
+     * Allocates a new part ID. Safe to call from any thread.
+     * @return The new part ID.
      */
     public static int getPartIDCount() {
-        partIDCount++;
-        return partIDCount;
+        return partIDs.next();
+    }
+    /**
+     * Returns the part ID the next allocation will most likely use, without allocating it.
+     * @return The next part ID.
+     */
+    public static int peekPartID() {
+        return partIDs.peek();
+    }
+    /**
+     * Returns the allocator behind part IDs, for callers that reserve IDs in bulk.
+     * @return The part ID allocator.
+     */
+    public static IdAllocator getPartIDAllocator() {
+        return partIDs;
     }
     /**
      * Validates if a part can be deleted based on its associations.
-     * @param part The part to be validated.
+     * @param part The part to be validated, or null when nothing is selected.
      * @return True if part is found in any product, otherwise false.
      */
     public static boolean validatePartDelete(Part part) {
-        boolean isFound = false;
-        for (int i = 0; i < productInv.size(); i++) {
-            if (productInv.get(i).getProductParts().contains(part)) {
-                isFound = true;
-            }
-        }
-        return isFound;
+        return part != null && partUsage.isUsed(part.getPartID());
+    }
+    /**
+     * Finds every product that uses a part.
+     * @param part The part to look up.
+     * @return The products containing the part. Empty if the part is unused.
+     */
+    public static List<Product> lookupProductsUsing(Part part) {
+        return partUsage.productsUsing(part.getPartID());
+    }
+    /**
+     * Returns the total price of the parts a product is built from, counting each unit of quantity.
+     * The cost of a product in the inventory is cached and kept current as part prices change,
+     * so after the first call it is answered in constant time.
+     * @param product The product.
+     * @return The sum of its parts' prices.
+     */
+    public static double getProductCost(Product product) {
+        return costs.costOf(product);
+    }
+    /**
+     * Returns the engine that explodes nested bills of materials into the parts they need.
+     * @return The inventory's BOM explosion engine.
+     */
+    public static BomExplosion getBomExplosion() {
+        return bomExplosion;
+    }
+    /**
+     * Returns how many units of a product can be built from the parts in stock, counting the parts of its sub-assemblies.
+     * The quantity of a product in the inventory is kept current as part stock moves,
+     * so after the first call it is answered in constant time.
+     * @param product The product.
+     * @return The number of units that can be built, or 0 if none can.
+     */
+    public static int getBuildableQuantity(Product product) {
+        return buildable.buildable(product);
+    }
+    /**
+     * Returns the calculator behind getBuildableQuantity, for working out every product's quantity ahead of time.
+     * @return The inventory's buildable quantities.
+     */
+    public static BuildableQuantities getBuildableQuantities() {
+        return buildable;
+    }
+    /**
+     * Starts a stock transaction: a set of part and product stock changes applied all together or not at all.
+     * Safe to call from any thread.
+     * @return A new, empty transaction.
+     */
+    public static StockTransaction newStockTransaction() {
+        return new StockTransaction(partStore, productStore, bomExplosion);
+    }
+    /**
+     * Builds units of a product in one transaction: takes the parts of its exploded bill of materials
+     * and adds the units to its stock. Safe to call from any thread.
+     * @param productID The ID of the product.
+     * @param units The number of units to build.
+     * @throws IllegalStateException if the product or a part is missing, a part would fall below its minimum,
+     *         or the product would rise above its maximum.
+     */
+    public static void assemble(int productID, int units) {
+        newStockTransaction().assemble(productID, units).commit();
+    }
+    /**
+     * Returns the queue that commits build orders and other stock transactions in batches in the background.
+     * @return The inventory's build order queue.
+     */
+    public static BuildOrderQueue getBuildOrders() {
+        return buildOrders;
     }
     /**
      * Validates if a product can be deleted based on its associations.
-     * @param product The product to be validated.
+     * @param product The product to be validated, or null when nothing is selected.
      * @return True if product has associated parts, otherwise false.
      */
     public static boolean validateProductDelete(Product product) {
-        boolean isFound = false;
-        int productID = product.getProductID();
-        for (int i = 0; i < productInv.size(); i++) {
-            if (productInv.get(i).getProductID() == productID) {
-                if (!productInv.get(i).getProductParts().isEmpty()) {
-                    isFound = true;
+        if (product == null) {
+            return false;
+        }
+        Product stored = productIndex.findById(product.getProductID());
+        return stored != null && !stored.getBillOfMaterials().isEmpty();
+    }
+    /**
+     * Re-indexes a product after its bill of materials changed, if the product is in the inventory.
+     * @param product The product whose parts changed.
+     */
+    static void productPartsChanged(Product product) {
+        if (productIndex.findById(product.getProductID()) == product) {
+            partUsage.reindex(product);
+            events.productChanged(product);
+        }
+    }
+    /**
+     * Returns the stream of inventory changes, for views, caches and indexes that follow the inventory.
+     * @return The inventory's change events.
+     */
+    public static InventoryEvents getEvents() {
+        return events;
+    }
+    /**
+     * Returns the parts ordered by how far their stock is above their minimum, for reordering.
+     * @return The part reorder queue.
+     */
+    public static ReorderQueue<Part> getPartReorders() {
+        return partReorders;
+    }
+    /**
+     * Returns the products ordered by how far their stock is above their minimum, for reordering.
+     * @return The product reorder queue.
+     */
+    public static ReorderQueue<Product> getProductReorders() {
+        return productReorders;
+    }
+    /**
+     * Keeps the reorder queues in step with every change to the inventory.
+     * @param changes The changes, as they happen.
+     */
+    private static void trackStock(List<InventoryEvent> changes) {
+        for (InventoryEvent event : changes) {
+            if (event instanceof InventoryEvent.PartAdded added) {
+                partReorders.update(added.id(), added.part().getPartInStock(), added.part().getPartMin());
+            } else if (event instanceof InventoryEvent.PartUpdated updated) {
+                if (updated.before().getPartID() != updated.id()) {
+                    partReorders.remove(updated.before().getPartID());
                 }
+                partReorders.update(updated.id(), updated.after().getPartInStock(), updated.after().getPartMin());
+            } else if (event instanceof InventoryEvent.PartRemoved removed) {
+                partReorders.remove(removed.id());
+            } else if (event instanceof InventoryEvent.ProductAdded added) {
+                productReorders.update(added.id(), added.product().getProductInStock(), added.product().getProductMin());
+            } else if (event instanceof InventoryEvent.ProductUpdated updated) {
+                if (updated.before().getProductID() != updated.id()) {
+                    productReorders.remove(updated.before().getProductID());
+                }
+                productReorders.update(updated.id(), updated.after().getProductInStock(), updated.after().getProductMin());
+            } else if (event instanceof InventoryEvent.ProductRemoved removed) {
+                productReorders.remove(removed.id());
             }
         }
-        return isFound;
     }
     /**
-     * Searches for a part by its ID or name.
-     * @param searchTerm The term used for searching.
-     * @return The index of the part if found, otherwise -1.
-     */
-    public static int lookupPart(String searchTerm) {
-        boolean isFound = false;
-        int index = 0;
-        if (isInt(searchTerm)) {
-            for (int i = 0; i < partInv.size(); i++) {
-                if (Integer.parseInt(searchTerm) == partInv.get(i).getPartID()) {
-                    index = i;
-                    isFound = true;
+     * Returns the thread-safe part store. Worker threads read and write parts through it; the observable
+     * list and everything listening to it are only touched on the JavaFX application thread.
+     * @return The part store.
+     */
+    public static InventoryStore<Part> getPartStore() {
+        return partStore;
+    }
+    /**
+     * Returns the thread-safe product store. Worker threads read and write products through it; the observable
+     * list and everything listening to it are only touched on the JavaFX application thread.
+     * @return The product store.
+     */
+    public static InventoryStore<Product> getProductStore() {
+        return productStore;
+    }
+    /**
+     * Applies a published batch of part changes to the part inventory list.
+     * @param ids The IDs of the changed parts.
+     */
+    private static void publishParts(int[] ids) {
+        publish(ids, partStore, partIndex, partInv);
+    }
+    /**
+     * Applies a published batch of product changes to the product inventory list.
+     * @param ids The IDs of the changed products.
+     */
+    private static void publishProducts(int[] ids) {
+        publish(ids, productStore, productIndex, productInv);
+    }
+    /**
+     * Brings the list in line with the store for each ID: replaced items are set in place, removed items are
+     * dropped, and new items are appended together in a single change. Positions are looked up by the list in
+     * logarithmic time rather than by a scan, and removals are made from the back in runs of neighbouring positions,
+     * so a batch of k changes costs O(k log n) on the JavaFX application thread.
+     */
+    private static <T> void publish(int[] ids, InventoryStore<T> store, InventoryIndex<T> index, ObservableList<T> items) {
+        List<T> added = new ArrayList<>();
+        int[] removed = new int[ids.length];
+        int removedCount = 0;
+        for (int id : ids) {
+            T current = store.get(id);
+            T shown = index.findById(id);
+            if (shown == current) {
+                continue;
+            }
+            if (shown == null) {
+                added.add(current);
+            } else if (current == null) {
+                removed[removedCount] = items.indexOf(shown);
+                if (removed[removedCount] >= 0) {
+                    removedCount++;
                 }
+            } else {
+                items.set(items.indexOf(shown), current);
             }
         }
-        else {
-            for (int i = 0; i < partInv.size(); i++) {
-                searchTerm = searchTerm.toLowerCase();
-                if (searchTerm.equals(partInv.get(i).getPartName().toLowerCase())) {
-                    index = i;
-                    isFound = true;
-                }
+        Arrays.sort(removed, 0, removedCount);
+        for (int end = removedCount; end > 0; ) {
+            int start = end - 1;
+            while (start > 0 && removed[start - 1] >= removed[start] - 1) {
+                start--;
             }
+            items.remove(removed[start], removed[end - 1] + 1);
+            end = start;
         }
-
-        if (isFound == true) {
-            return index;
+        if (!added.isEmpty()) {
+            items.addAll(added);
+        }
+    }
+    /**
+     * Starts persisting every inventory change to a journal.
+     * The journal should already have been replayed, so the inventory reflects its contents.
+     * @param inventoryJournal The journal to write to.
+     */
+    public static void attachJournal(InventoryJournal inventoryJournal) {
+        if (journal != null) {
+            throw new IllegalStateException("A journal is already attached");
         }
-        else {
+        journal = inventoryJournal;
+        journal.watch(events);
+    }
+    /**
+     * Starts recording every stock movement in a ledger. Should be attached after the journal is replayed,
+     * so replayed changes are not recorded again.
+     * @param stockLedger The ledger to record to.
+     */
+    public static void attachLedger(StockLedger stockLedger) {
+        if (ledger != null) {
+            throw new IllegalStateException("A stock ledger is already attached");
+        }
+        ledger = stockLedger;
+        ledger.watch(events);
+    }
+    /**
+     * Returns the ledger of stock movements, for usage and turnover queries.
+     * @return The attached ledger, or null if none is attached.
+     */
+    public static StockLedger getStockLedger() {
+        return ledger;
+    }
+    /**
+     * Notes why a part or product about to be stored moved, for the stock ledger. Safe to call from any thread.
+     * @param item The new part or product.
+     * @param reason Why its stock moved.
+     */
+    static void noteStockReason(Object item, StockMovement.Reason reason) {
+        StockLedger current = ledger;
+        if (current != null) {
+            current.tag(item, reason);
+        }
+    }
+    /**
+     * Fills the empty inventory with the rows of a catalog. Rows become Part and Product objects only when
+     * they are read from the lists or returned by a lookup, so opening a large catalog costs almost nothing.
+     * Must be called before the inventory lists are displayed or a journal is attached.
+     * @param catalog The catalog to open.
+     */
+    public static void openCatalog(ColumnarCatalog catalog) {
+        if (!partInv.isEmpty() || !productInv.isEmpty()) {
+            throw new IllegalStateException("A catalog can only be opened into an empty inventory");
+        }
+        partStore.attachCatalog(catalog.parts(), catalog::readPart);
+        productStore.attachCatalog(catalog.products(), catalog::readProduct);
+        partRows.attach(catalog.parts(), partStore::loadRow);
+        productRows.attach(catalog.products(), productStore::loadRow);
+        partIndex.setCatalog(partRows);
+        productIndex.setCatalog(productRows);
+        partSearch.setCatalog(partRows);
+        productSearch.setCatalog(productRows);
+        partUsage.setCatalog(catalog, productRows);
+        partReorders.attachCatalog(catalog.parts());
+        productReorders.attachCatalog(catalog.products());
+        restoreIDCounts();
+    }
+    /**
+     * Copies the part inventory for reading on another thread, without creating catalog rows that have not been read yet.
+     * @return A read-only copy of the part list.
+     */
+    static List<Part> copyPartInv() {
+        return partRows.snapshot();
+    }
+    /**
+     * Copies the product inventory for reading on another thread, without creating catalog rows that have not been read yet.
+     * @return A read-only copy of the product list.
+     */
+    static List<Product> copyProductInv() {
+        return productRows.snapshot();
+    }
+    /**
+     * Moves the ID counters past the highest part and product IDs in the inventory,
+     * so restored data never collides with newly generated IDs.
+     */
+    static void restoreIDCounts() {
+        partIDs.advancePast(partIndex.maxId());
+        productIDs.advancePast(productIndex.maxId());
+    }
+    /**
+     * Switches ID generation to persisted allocators. Each one is first moved past every ID already
+     * generated or in the inventory, so IDs keep increasing across the switch.
+     * @param parts The allocator for part IDs.
+     * @param products The allocator for product IDs.
+     */
+    static void attachIDAllocators(IdAllocator parts, IdAllocator products) {
+        parts.advancePast(partIDs.peek() - 1);
+        products.advancePast(productIDs.peek() - 1);
+        partIDs = parts;
+        productIDs = products;
+        restoreIDCounts();
+    }
+    /**
+     * Searches for a part by its ID or name. Names are matched ignoring case.
+     * @param searchTerm The term used for searching.
+     * @return The matching part if found, otherwise null.
+     */
+    public static Part lookupPart(String searchTerm) {
+        long id = NumberParser.parseInt(searchTerm);
+        Part part = id != NumberParser.INVALID_INT ? partIndex.findById((int) id) : partIndex.findByName(searchTerm);
+        if (part == null) {
             System.out.println("No parts found.");
-            return -1;
         }
+        return part;
+    }
+    /**
+     * Looks up a part by its ID.
+     * @param partID The ID of the part.
+     * @return The part with that ID, or null if none exists.
+     */
+    public static Part lookupPart(int partID) {
+        return partIndex.findById(partID);
+    }
+    /**
+     * Finds every part whose name contains the search term, or whose ID equals it.
+     * @param searchTerm The term used for searching.
+     * @return The set of matching parts. Empty if nothing matches.
+     */
+    public static Set<Part> searchParts(String searchTerm) {
+        Set<Part> hits = searchPartNames(searchTerm);
+        long id = NumberParser.parseInt(searchTerm.trim());
+        if (id != NumberParser.INVALID_INT) {
+            Part part = partIndex.findById((int) id);
+            if (part != null) {
+                hits.add(part);
+            }
+        }
+        return hits;
+    }
+    /**
+     * Finds every part whose name contains the search term, without matching IDs. Safe to call from any thread,
+     * so a search that has to scan every name can run off the JavaFX application thread.
+     * @param searchTerm The term used for searching.
+     * @return An identity set of matching parts. Empty if nothing matches.
+     */
+    static Set<Part> searchPartNames(String searchTerm) {
+        return partSearch.search(searchTerm);
     }
     /**
      * Returns the current product inventory.
@@ -138,6 +553,13 @@ public class Inventory {
     public static void addProd(Product product) {
         productInv.add(product);
     }
+    /**
+     * Adds a batch of products to the inventory as a single list change.
+     * @param products The products to be added.
+     */
+    public static void addProds(Collection<? extends Product> products) {
+        productInv.addAll(products);
+    }
     /**
      * Removes a product from the inventory.
      * @param product The product to be removed.
@@ -146,45 +568,80 @@ public class Inventory {
         productInv.remove(product);
     }
     /**
-     * Returns and increments the product ID count.
-     * @return The new product ID count.
+     * Replaces a product with another, in the same position. The position is found through the list's sequence
+     * numbers rather than a scan, so replaying a long journal stays linear in its length.
+     * @param old The product in the inventory.
+     * @param product The product to replace it with.
+     */
+    static void replaceProduct(Product old, Product product) {
+        productInv.set(productInv.indexOf(old), product);
+    }
+    /**
+     * Allocates a new product ID. Safe to call from any thread.
+     * @return The new product ID.
      */
     public static int getProdIDCount() {
-        productIDCount++;
-        return productIDCount;
+        return productIDs.next();
+    }
+    /**
+     * Returns the product ID the next allocation will most likely use, without allocating it.
+     * @return The next product ID.
+     */
+    public static int peekProdID() {
+        return productIDs.peek();
     }
     /**
-     * Searches for a product by its ID or name.
+     * Returns the allocator behind product IDs, for callers that reserve IDs in bulk.
+     * @return The product ID allocator.
+     */
+    public static IdAllocator getProdIDAllocator() {
+        return productIDs;
+    }
+    /**
+     * Searches for a product by its ID or name. Names are matched ignoring case.
      * @param searchTerm The term used for searching.
-     * @return The index of the product if found, otherwise -1.
-     */
-    public static int lookupProd(String searchTerm) {
-        boolean isFound = false;
-        int index = 0;
-        if (isInt(searchTerm)) {
-            for (int i = 0; i < productInv.size(); i++) {
-                if (Integer.parseInt(searchTerm) == productInv.get(i).getProductID()) {
-                    index = i;
-                    isFound = true;
-                }
-            }
+     * @return The matching product if found, otherwise null.
+     */
+    public static Product lookupProd(String searchTerm) {
+        long id = NumberParser.parseInt(searchTerm);
+        Product product = id != NumberParser.INVALID_INT ? productIndex.findById((int) id) : productIndex.findByName(searchTerm);
+        if (product == null) {
+            System.out.println("No products found.");
         }
-        else {
-            for (int i = 0; i < productInv.size(); i++) {
-                if (searchTerm.equals(productInv.get(i).getProductName())) {
-                    index = i;
-                    isFound = true;
-                }
+        return product;
+    }
+    /**
+     * Looks up a product by its ID.
+     * @param productID The ID of the product.
+     * @return The product with that ID, or null if none exists.
+     */
+    public static Product lookupProd(int productID) {
+        return productIndex.findById(productID);
+    }
+    /**
+     * Finds every product whose name contains the search term, or whose ID equals it.
+     * @param searchTerm The term used for searching.
+     * @return The set of matching products. Empty if nothing matches.
+     */
+    public static Set<Product> searchProducts(String searchTerm) {
+        Set<Product> hits = searchProductNames(searchTerm);
+        long id = NumberParser.parseInt(searchTerm.trim());
+        if (id != NumberParser.INVALID_INT) {
+            Product product = productIndex.findById((int) id);
+            if (product != null) {
+                hits.add(product);
             }
         }
-
-        if (isFound == true) {
-            return index;
-        }
-        else {
-            System.out.println("No products found.");
-            return -1;
-        }
+        return hits;
+    }
+    /**
+     * Finds every product whose name contains the search term, without matching IDs. Safe to call from any thread,
+     * so a search that has to scan every name can run off the JavaFX application thread.
+     * @param searchTerm The term used for searching.
+     * @return An identity set of matching products. Empty if nothing matches.
+     */
+    static Set<Product> searchProductNames(String searchTerm) {
+        return productSearch.search(searchTerm);
     }
     /**
      * Updates a product in the inventory at a specific index.
@@ -200,12 +657,6 @@ public class Inventory {
      * @return True if the string is an integer, otherwise false.
      */
     public static boolean isInt(String input) {
-        try {
-            Integer.parseInt(input);
-            return true;
-        }
-        catch (Exception e) {
-            return false;
-        }
+        return NumberParser.isInt(input);
     }
 }
\ No newline at end of file
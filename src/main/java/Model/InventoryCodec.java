@@ -0,0 +1,142 @@
+package Model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of parts and products, shared by the journal and other on-disk formats.
+ * Every field is written in a fixed order; strings use modified UTF-8 with a leading null flag.
+ */
+public final class InventoryCodec {
+    private static final byte IN_HOUSE = 0;
+    private static final byte OUTSOURCED = 1;
+
+    private InventoryCodec() {
+    }
+
+    /**
+     * Writes a part.
+     * @param out The output to write to.
+     * @param part The part to write.
+     * @throws IOException If the output fails.
+     */
+    public static void writePart(DataOutput out, Part part) throws IOException {
+        out.writeByte(part instanceof OutsourcedPart ? OUTSOURCED : IN_HOUSE);
+        out.writeInt(part.getPartID());
+        writeString(out, part.getPartName());
+        out.writeDouble(part.getPartPrice());
+        out.writeInt(part.getPartInStock());
+        out.writeInt(part.getPartMin());
+        out.writeInt(part.getPartMax());
+        if (part instanceof OutsourcedPart) {
+            writeString(out, ((OutsourcedPart) part).getCompanyName());
+        } else {
+            out.writeInt(((InHousePart) part).getMachineID());
+        }
+    }
+
+    /**
+     * Reads a part written by writePart.
+     * @param in The input to read from.
+     * @return A new InHousePart or OutsourcedPart.
+     * @throws IOException If the input fails or holds an unknown part type.
+     */
+    public static Part readPart(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        Part part;
+        if (kind == OUTSOURCED) {
+            part = new OutsourcedPart();
+        } else if (kind == IN_HOUSE) {
+            part = new InHousePart();
+        } else {
+            throw new IOException("Unknown part type " + kind);
+        }
+        part.setPartID(in.readInt());
+        part.setPartName(readString(in));
+        part.setPartPrice(in.readDouble());
+        part.setPartInStock(in.readInt());
+        part.setPartMin(in.readInt());
+        part.setPartMax(in.readInt());
+        if (part instanceof OutsourcedPart) {
+            ((OutsourcedPart) part).setCompanyName(readString(in));
+        } else {
+            ((InHousePart) part).setMachineID(in.readInt());
+        }
+        return part;
+    }
+
+    /**
+     * Writes a product, including its bill of materials.
+     * @param out The output to write to.
+     * @param product The product to write.
+     * @throws IOException If the output fails.
+     */
+    public static void writeProduct(DataOutput out, Product product) throws IOException {
+        out.writeInt(product.getProductID());
+        writeString(out, product.getProductName());
+        out.writeDouble(product.getProductPrice());
+        out.writeInt(product.getProductInStock());
+        out.writeInt(product.getProductMin());
+        out.writeInt(product.getProductMax());
+        BillOfMaterials bom = product.getBillOfMaterials();
+        int[] ids = bom.storedIDs();
+        int[] quantities = bom.storedQuantities();
+        out.writeInt(ids.length);
+        for (int line = 0; line < ids.length; line++) {
+            out.writeInt(ids[line]);
+            out.writeInt(quantities[line]);
+        }
+    }
+
+    /**
+     * Reads a product written by writeProduct.
+     * @param in The input to read from.
+     * @return A new Product.
+     * @throws IOException If the input fails.
+     */
+    public static Product readProduct(DataInput in) throws IOException {
+        Product product = new Product();
+        product.setProductID(in.readInt());
+        product.setProductName(readString(in));
+        product.setProductPrice(in.readDouble());
+        product.setProductInStock(in.readInt());
+        product.setProductMin(in.readInt());
+        product.setProductMax(in.readInt());
+        int lines = in.readInt();
+        BillOfMaterials bom = product.getBillOfMaterials();
+        for (int line = 0; line < lines; line++) {
+            int id = in.readInt();
+            int quantity = in.readInt();
+            if (id < 0) {
+                bom.addSubassembly(-id, quantity);
+            } else {
+                bom.add(id, quantity);
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Writes a string that may be null.
+     * @param out The output to write to.
+     * @param value The string, or null.
+     * @throws IOException If the output fails.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a string written by writeString.
+     * @param in The input to read from.
+     * @return The string, or null.
+     * @throws IOException If the input fails.
+     */
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
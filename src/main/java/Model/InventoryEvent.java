@@ -0,0 +1,140 @@
+package Model;
+
+/**
+ * A change to the inventory, as delivered by InventoryEvents.
+ * <p>
+ * Adds, removes and replacements of list items become the Added, Removed and Updated events of their kind.
+ * A product whose bill of materials changes in place is reported as updated, with the same object before and after.
+ * A replacement that keeps the item's ID but changes its stock is also reported as a StockChanged event,
+ * right after its Updated event, for consumers that only follow stock levels.
+ * </p>
+ */
+public sealed interface InventoryEvent {
+    /**
+     * Whether an event is about a part or a product.
+     */
+    enum Kind {
+        PART,
+        PRODUCT
+    }
+
+    /**
+     * Returns whether the event is about a part or a product.
+     * @return The kind of item changed.
+     */
+    Kind kind();
+
+    /**
+     * Returns the ID of the item changed. For an update, this is the ID after the change.
+     * @return The item's ID.
+     */
+    int id();
+
+    /**
+     * A part was added to the inventory.
+     * @param part The part added.
+     */
+    record PartAdded(Part part) implements InventoryEvent {
+        @Override
+        public Kind kind() {
+            return Kind.PART;
+        }
+
+        @Override
+        public int id() {
+            return part.getPartID();
+        }
+    }
+
+    /**
+     * A part was replaced in the inventory.
+     * @param before The part that was replaced.
+     * @param after The part that replaced it.
+     */
+    record PartUpdated(Part before, Part after) implements InventoryEvent {
+        @Override
+        public Kind kind() {
+            return Kind.PART;
+        }
+
+        @Override
+        public int id() {
+            return after.getPartID();
+        }
+    }
+
+    /**
+     * A part was removed from the inventory.
+     * @param part The part removed.
+     */
+    record PartRemoved(Part part) implements InventoryEvent {
+        @Override
+        public Kind kind() {
+            return Kind.PART;
+        }
+
+        @Override
+        public int id() {
+            return part.getPartID();
+        }
+    }
+
+    /**
+     * A product was added to the inventory.
+     * @param product The product added.
+     */
+    record ProductAdded(Product product) implements InventoryEvent {
+        @Override
+        public Kind kind() {
+            return Kind.PRODUCT;
+        }
+
+        @Override
+        public int id() {
+            return product.getProductID();
+        }
+    }
+
+    /**
+     * A product was replaced in the inventory, or its bill of materials changed.
+     * @param before The product that was replaced, or the product itself if it changed in place.
+     * @param after The product now in the inventory.
+     */
+    record ProductUpdated(Product before, Product after) implements InventoryEvent {
+        @Override
+        public Kind kind() {
+            return Kind.PRODUCT;
+        }
+
+        @Override
+        public int id() {
+            return after.getProductID();
+        }
+    }
+
+    /**
+     * A product was removed from the inventory.
+     * @param product The product removed.
+     */
+    record ProductRemoved(Product product) implements InventoryEvent {
+        @Override
+        public Kind kind() {
+            return Kind.PRODUCT;
+        }
+
+        @Override
+        public int id() {
+            return product.getProductID();
+        }
+    }
+
+    /**
+     * The stock of a part or product changed.
+     * @param kind Whether the item is a part or a product.
+     * @param id The item's ID.
+     * @param before The stock before the change.
+     * @param after The stock after the change.
+     */
+    record StockChanged(Kind kind, int id, int before, int after) implements InventoryEvent {
+    }
+}
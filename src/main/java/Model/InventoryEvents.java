@@ -0,0 +1,392 @@
+package Model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Stream of typed changes to the part and product inventories, for views, caches, indexes and persistence.
+ * <p>
+ * The stream listens to both inventory lists and turns each list change into InventoryEvents. A subscriber
+ * either receives every event as it happens, in order, on the thread that changed the inventory, or receives
+ * them coalesced: the first event after a delivery opens a window, and everything that happens to an item
+ * until the window closes is merged into at most one event for it, plus its net stock change. A burst of
+ * thousands of changes from a batch job therefore reaches a view as a single short list.
+ * </p>
+ * <p>
+ * A coalesced batch lists each changed item once, in the order the items were first changed. An item added and
+ * removed within the window is left out; one removed and added again is reported as updated. An update that
+ * changes an item's ID is reported as the old ID removed and the new one added.
+ * </p>
+ */
+public class InventoryEvents {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates the stream and starts listening to the inventories.
+     * @param parts The part inventory.
+     * @param products The product inventory.
+     */
+    InventoryEvents(ObservableList<Part> parts, ObservableList<Product> products) {
+        parts.addListener((ListChangeListener<Part>) change -> {
+            if (subscriptions.isEmpty()) {
+                return;
+            }
+            List<InventoryEvent> events = new ArrayList<>();
+            while (change.next()) {
+                if (change.wasPermutated() || change.wasUpdated()) {
+                    continue;
+                }
+                List<? extends Part> removed = change.getRemoved();
+                List<? extends Part> added = change.getAddedSubList();
+                int replaced = change.wasReplaced() ? Math.min(removed.size(), added.size()) : 0;
+                for (int i = 0; i < replaced; i++) {
+                    Part before = removed.get(i);
+                    Part after = added.get(i);
+                    events.add(new InventoryEvent.PartUpdated(before, after));
+                    if (before.getPartID() == after.getPartID() && before.getPartInStock() != after.getPartInStock()) {
+                        events.add(new InventoryEvent.StockChanged(InventoryEvent.Kind.PART, after.getPartID(),
+                                before.getPartInStock(), after.getPartInStock()));
+                    }
+                }
+                for (int i = replaced; i < removed.size(); i++) {
+                    events.add(new InventoryEvent.PartRemoved(removed.get(i)));
+                }
+                for (int i = replaced; i < added.size(); i++) {
+                    events.add(new InventoryEvent.PartAdded(added.get(i)));
+                }
+            }
+            publish(events);
+        });
+        products.addListener((ListChangeListener<Product>) change -> {
+            if (subscriptions.isEmpty()) {
+                return;
+            }
+            List<InventoryEvent> events = new ArrayList<>();
+            while (change.next()) {
+                if (change.wasPermutated() || change.wasUpdated()) {
+                    continue;
+                }
+                List<? extends Product> removed = change.getRemoved();
+                List<? extends Product> added = change.getAddedSubList();
+                int replaced = change.wasReplaced() ? Math.min(removed.size(), added.size()) : 0;
+                for (int i = 0; i < replaced; i++) {
+                    Product before = removed.get(i);
+                    Product after = added.get(i);
+                    events.add(new InventoryEvent.ProductUpdated(before, after));
+                    if (before.getProductID() == after.getProductID() && before.getProductInStock() != after.getProductInStock()) {
+                        events.add(new InventoryEvent.StockChanged(InventoryEvent.Kind.PRODUCT, after.getProductID(),
+                                before.getProductInStock(), after.getProductInStock()));
+                    }
+                }
+                for (int i = replaced; i < removed.size(); i++) {
+                    events.add(new InventoryEvent.ProductRemoved(removed.get(i)));
+                }
+                for (int i = replaced; i < added.size(); i++) {
+                    events.add(new InventoryEvent.ProductAdded(added.get(i)));
+                }
+            }
+            publish(events);
+        });
+    }
+
+    /**
+     * Subscribes to every event as it happens. Events arrive in order, on the thread that changed the inventory,
+     * before the change returns; each list change or bill of materials change arrives as one list.
+     * @param listener Receives the events of each change.
+     * @return The subscription, for cancelling it.
+     */
+    public Subscription subscribe(Consumer<? super List<InventoryEvent>> listener) {
+        return add(new Subscription(listener, null, null));
+    }
+
+    /**
+     * Subscribes to coalesced events. Safe to call from any thread.
+     * @param window How long to collect events after the first one before delivering them. A zero window
+     *               delivers everything that changed before the executor gets to run the delivery.
+     * @param executor Runs the deliveries, normally Platform::runLater.
+     * @param listener Receives each coalesced batch. Never receives an empty batch.
+     * @return The subscription, for cancelling it.
+     */
+    public Subscription subscribe(Duration window, Executor executor, Consumer<? super List<InventoryEvent>> listener) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("Coalescing window must not be negative: " + window);
+        }
+        return add(new Subscription(listener, window, executor));
+    }
+
+    /**
+     * Reports a product whose bill of materials changed in place.
+     * @param product The product, already in the inventory.
+     */
+    void productChanged(Product product) {
+        if (!subscriptions.isEmpty()) {
+            publish(List.of(new InventoryEvent.ProductUpdated(product, product)));
+        }
+    }
+
+    private Subscription add(Subscription subscription) {
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    private void publish(List<InventoryEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<InventoryEvent> published = Collections.unmodifiableList(events);
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(published);
+        }
+    }
+
+    /**
+     * A subscriber to the stream, either immediate or coalescing.
+     */
+    public final class Subscription {
+        private final Consumer<? super List<InventoryEvent>> listener;
+        /**
+         * The coalescing window, or null to deliver every event as it happens.
+         */
+        private final Duration window;
+        private final Executor executor;
+        /**
+         * Events waiting for the window to close. Guarded by this subscription.
+         */
+        private final Coalescer pending = new Coalescer();
+        private boolean scheduled;
+        private volatile boolean cancelled;
+
+        private Subscription(Consumer<? super List<InventoryEvent>> listener, Duration window, Executor executor) {
+            this.listener = listener;
+            this.window = window;
+            this.executor = executor;
+        }
+
+        /**
+         * Stops delivery. Events still waiting for their window to close are dropped.
+         */
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        private void offer(List<InventoryEvent> events) {
+            if (window == null) {
+                deliver(events);
+                return;
+            }
+            boolean schedule;
+            synchronized (this) {
+                for (InventoryEvent event : events) {
+                    pending.add(event);
+                }
+                schedule = !scheduled;
+                scheduled = true;
+            }
+            if (!schedule) {
+                return;
+            }
+            if (window.isZero()) {
+                executor.execute(this::flush);
+            } else {
+                TIMER.schedule(() -> executor.execute(this::flush), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void flush() {
+            List<InventoryEvent> batch;
+            synchronized (this) {
+                batch = pending.drain();
+                scheduled = false;
+            }
+            if (!batch.isEmpty()) {
+                deliver(Collections.unmodifiableList(batch));
+            }
+        }
+
+        /**
+         * Hands events to the listener. A failing listener is reported like a failing list listener,
+         * and does not stop the change or other subscribers.
+         */
+        private void deliver(List<InventoryEvent> events) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                listener.accept(events);
+            } catch (RuntimeException e) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * Merges events into the net change to each item.
+     */
+    private static final class Coalescer {
+        private final Map<Long, Entry> entries = new LinkedHashMap<>();
+
+        void add(InventoryEvent event) {
+            if (event instanceof InventoryEvent.StockChanged stock) {
+                Entry entry = entry(stock.kind(), stock.id());
+                if (!entry.stockChanged) {
+                    entry.stockChanged = true;
+                    entry.stockBefore = stock.before();
+                }
+                entry.stockAfter = stock.after();
+                return;
+            }
+            InventoryEvent.Kind kind = event.kind();
+            Object before = before(event);
+            Object after = after(event);
+            if (before != null && after != null && idOf(kind, before) != event.id()) {
+                apply(kind, idOf(kind, before), before, null);
+                apply(kind, event.id(), null, after);
+            } else {
+                apply(kind, before != null ? idOf(kind, before) : event.id(), before, after);
+            }
+        }
+
+        /**
+         * Returns the net change to each item since the last drain, and starts over.
+         */
+        List<InventoryEvent> drain() {
+            List<InventoryEvent> events = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                boolean present = true;
+                if (entry.listChanged) {
+                    if (entry.original != null && entry.current == null) {
+                        events.add(removed(entry.kind, entry.original));
+                    } else if (entry.original != null) {
+                        events.add(updated(entry.kind, entry.original, entry.current));
+                    } else if (entry.current != null) {
+                        events.add(added(entry.kind, entry.current));
+                    }
+                    present = entry.original != null && entry.current != null;
+                }
+                if (entry.stockChanged && present && entry.stockBefore != entry.stockAfter) {
+                    events.add(new InventoryEvent.StockChanged(entry.kind, entry.id, entry.stockBefore, entry.stockAfter));
+                }
+            }
+            entries.clear();
+            return events;
+        }
+
+        /**
+         * Moves an item from one state to the next. The first change to an item in the window fixes what it was before.
+         */
+        private void apply(InventoryEvent.Kind kind, int id, Object before, Object after) {
+            Entry entry = entry(kind, id);
+            if (!entry.listChanged) {
+                entry.listChanged = true;
+                entry.original = before;
+            }
+            entry.current = after;
+        }
+
+        private Entry entry(InventoryEvent.Kind kind, int id) {
+            return entries.computeIfAbsent(((long) kind.ordinal() << 32) | (id & 0xFFFFFFFFL), key -> new Entry(kind, id));
+        }
+
+        private static Object before(InventoryEvent event) {
+            if (event instanceof InventoryEvent.PartUpdated updated) {
+                return updated.before();
+            }
+            if (event instanceof InventoryEvent.PartRemoved removed) {
+                return removed.part();
+            }
+            if (event instanceof InventoryEvent.ProductUpdated updated) {
+                return updated.before();
+            }
+            if (event instanceof InventoryEvent.ProductRemoved removed) {
+                return removed.product();
+            }
+            return null;
+        }
+
+        private static Object after(InventoryEvent event) {
+            if (event instanceof InventoryEvent.PartUpdated updated) {
+                return updated.after();
+            }
+            if (event instanceof InventoryEvent.PartAdded added) {
+                return added.part();
+            }
+            if (event instanceof InventoryEvent.ProductUpdated updated) {
+                return updated.after();
+            }
+            if (event instanceof InventoryEvent.ProductAdded added) {
+                return added.product();
+            }
+            return null;
+        }
+
+        private static int idOf(InventoryEvent.Kind kind, Object item) {
+            return kind == InventoryEvent.Kind.PART ? ((Part) item).getPartID() : ((Product) item).getProductID();
+        }
+
+        private static InventoryEvent added(InventoryEvent.Kind kind, Object item) {
+            return kind == InventoryEvent.Kind.PART
+                    ? new InventoryEvent.PartAdded((Part) item)
+                    : new InventoryEvent.ProductAdded((Product) item);
+        }
+
+        private static InventoryEvent updated(InventoryEvent.Kind kind, Object before, Object after) {
+            return kind == InventoryEvent.Kind.PART
+                    ? new InventoryEvent.PartUpdated((Part) before, (Part) after)
+                    : new InventoryEvent.ProductUpdated((Product) before, (Product) after);
+        }
+
+        private static InventoryEvent removed(InventoryEvent.Kind kind, Object item) {
+            return kind == InventoryEvent.Kind.PART
+                    ? new InventoryEvent.PartRemoved((Part) item)
+                    : new InventoryEvent.ProductRemoved((Product) item);
+        }
+    }
+
+    /**
+     * The net change to one item within a window.
+     */
+    private static final class Entry {
+        final InventoryEvent.Kind kind;
+        final int id;
+        /**
+         * Whether the item was added, replaced or removed in the window, rather than only changing stock.
+         */
+        boolean listChanged;
+        /**
+         * The item before the window, or null if it did not exist.
+         */
+        Object original;
+        /**
+         * The item now, or null if it no longer exists.
+         */
+        Object current;
+        boolean stockChanged;
+        int stockBefore;
+        int stockAfter;
+
+        Entry(InventoryEvent.Kind kind, int id) {
+            this.kind = kind;
+            this.id = id;
+        }
+    }
+}
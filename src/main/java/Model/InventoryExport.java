@@ -0,0 +1,247 @@
+package Model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A point-in-time copy of the inventory that can be exported to CSV or to a compact binary file.
+ * <p>
+ * Capturing only copies the inventory lists' references, so it is cheap enough for the JavaFX application
+ * thread; the export itself then runs on any other thread while the inventory keeps changing. Items are
+ * replaced rather than changed in place once they are in the inventory, so the copy stays consistent.
+ * Catalog rows that have not been read yet are read one at a time as they are written and are not kept.
+ * </p>
+ * <p>
+ * Output goes through a FileChannel with 64 KB buffering, compressed with GZIP when the file name ends in .gz,
+ * and nothing besides the copied references grows with the size of the inventory. Files are written under a
+ * temporary name, forced to disk and then renamed, so a failed export never leaves a partial file behind.
+ * </p>
+ * <ul>
+ *     <li>Parts CSV: id, name, price, stock, min, max, source (InHouse or Outsourced), machine ID or company name.</li>
+ *     <li>Products CSV: id, name, price, stock, min, max, parts, where parts lists partID:quantity separated by semicolons.
+ *     Sub-assemblies are listed in the same column under their product ID negated, as the bill stores them.</li>
+ *     <li>Binary: a header, then the part count and every part, then the product count and every product,
+ *     each encoded with InventoryCodec.</li>
+ * </ul>
+ */
+public class InventoryExport {
+    private static final int MAGIC = 0x494E5658;
+    private static final int VERSION = 1;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private final List<Part> parts;
+    private final List<Product> products;
+
+    private InventoryExport(List<Part> parts, List<Product> products) {
+        this.parts = parts;
+        this.products = products;
+    }
+
+    /**
+     * Copies the current inventories. Must be called on the thread that changes the inventory.
+     * @return The captured export, ready to be written from any thread.
+     */
+    public static InventoryExport capture() {
+        return new InventoryExport(Inventory.copyPartInv(), Inventory.copyProductInv());
+    }
+
+    /**
+     * Returns the number of parts in the export.
+     * @return The part count.
+     */
+    public int getPartCount() {
+        return parts.size();
+    }
+
+    /**
+     * Returns the number of products in the export.
+     * @return The product count.
+     */
+    public int getProductCount() {
+        return products.size();
+    }
+
+    /**
+     * Writes the parts and products to two CSV files, each with a header line.
+     * @param partsFile The file for parts. Compressed if its name ends in .gz.
+     * @param productsFile The file for products. Compressed if its name ends in .gz.
+     * @throws IOException If a file cannot be written.
+     */
+    public void writeCsv(Path partsFile, Path productsFile) throws IOException {
+        write(partsFile, out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_BYTES);
+            writer.write("id,name,price,stock,min,max,source,machineOrCompany\n");
+            for (Part part : parts) {
+                writer.write(Integer.toString(part.getPartID()));
+                writer.write(',');
+                writeCsvField(writer, part.getPartName());
+                writer.write(',');
+                writer.write(Double.toString(part.getPartPrice()));
+                writer.write(',');
+                writer.write(Integer.toString(part.getPartInStock()));
+                writer.write(',');
+                writer.write(Integer.toString(part.getPartMin()));
+                writer.write(',');
+                writer.write(Integer.toString(part.getPartMax()));
+                if (part instanceof OutsourcedPart) {
+                    writer.write(",Outsourced,");
+                    writeCsvField(writer, ((OutsourcedPart) part).getCompanyName());
+                } else {
+                    writer.write(",InHouse,");
+                    writer.write(Integer.toString(((InHousePart) part).getMachineID()));
+                }
+                writer.write('\n');
+            }
+            writer.flush();
+        });
+        write(productsFile, out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_BYTES);
+            writer.write("id,name,price,stock,min,max,parts\n");
+            for (Product product : products) {
+                writer.write(Integer.toString(product.getProductID()));
+                writer.write(',');
+                writeCsvField(writer, product.getProductName());
+                writer.write(',');
+                writer.write(Double.toString(product.getProductPrice()));
+                writer.write(',');
+                writer.write(Integer.toString(product.getProductInStock()));
+                writer.write(',');
+                writer.write(Integer.toString(product.getProductMin()));
+                writer.write(',');
+                writer.write(Integer.toString(product.getProductMax()));
+                writer.write(',');
+                BillOfMaterials bom = product.getBillOfMaterials();
+                int[] partIDs = bom.storedIDs();
+                int[] quantities = bom.storedQuantities();
+                for (int line = 0; line < partIDs.length; line++) {
+                    if (line > 0) {
+                        writer.write(';');
+                    }
+                    writer.write(Integer.toString(partIDs[line]));
+                    writer.write(':');
+                    writer.write(Integer.toString(quantities[line]));
+                }
+                writer.write('\n');
+            }
+            writer.flush();
+        });
+    }
+
+    /**
+     * Writes the parts and products to one binary file.
+     * @param file The file to write. Compressed if its name ends in .gz.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeBinary(Path file) throws IOException {
+        write(file, stream -> {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_BYTES));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(parts.size());
+            for (Part part : parts) {
+                InventoryCodec.writePart(out, part);
+            }
+            out.writeInt(products.size());
+            for (Product product : products) {
+                InventoryCodec.writeProduct(out, product);
+            }
+            out.flush();
+        });
+    }
+
+    /**
+     * Reads a binary export one item at a time, without holding the whole file in memory.
+     * @param file The file to read. Decompressed if its name ends in .gz.
+     * @param partAction Receives each part, in the order they were written.
+     * @param productAction Receives each product, after every part.
+     * @throws IOException If the file cannot be read or is not a binary export.
+     */
+    public static void readBinary(Path file, Consumer<Part> partAction, Consumer<Product> productAction) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            InputStream source = isCompressed(file) ? new GZIPInputStream(stream, BUFFER_BYTES) : stream;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(source, BUFFER_BYTES));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not an inventory export");
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                partAction.accept(InventoryCodec.readPart(in));
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                productAction.accept(InventoryCodec.readProduct(in));
+            }
+        }
+    }
+
+    /**
+     * Writes a file through a FileChannel, compressing it if needed, and replaces the target once it is on disk.
+     */
+    private static void write(Path file, StreamWriter body) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            if (isCompressed(file)) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_BYTES);
+                body.write(gzip);
+                gzip.finish();
+            } else {
+                body.write(out);
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean isCompressed(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     * Quotes a CSV field if it holds a comma, quote or line break.
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Writes the body of an export file.
+     */
+    @FunctionalInterface
+    private interface StreamWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,670 @@
+package Model;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Imports parts and products in bulk from CSV or TSV files.
+ * <p>
+ * Files ending in .tsv or .tab are split on tabs, anything else on commas. The first line is a header and is skipped.
+ * A field may be wrapped in double quotes to hold the delimiter, with "" standing for a quote; fields cannot span lines.
+ * </p>
+ * <ul>
+ *     <li>Parts: name, price, stock, min, max, source, machine ID or company name. The source is InHouse (or I)
+ *     or Outsourced (or O), and decides what the last column holds.</li>
+ *     <li>Products: name, price, stock, min, max, parts. Parts is a list of existing part IDs separated by
+ *     semicolons, each optionally followed by a colon and a quantity, such as 12:2;15. An existing product is
+ *     built in as a sub-assembly by listing its ID negated, such as -4:2, as the products export writes it.</li>
+ * </ul>
+ * <p>
+ * The file is read through a FileChannel in blocks of whole lines. Each block is parsed and validated on a
+ * worker thread, with one worker per core: fields are located in the raw bytes and numbers are parsed from
+ * them directly, so the only Strings created are names and company names. Rows are checked with the same
+ * rules as Part.isPartValid and Product.isProductValid. Blocks are committed in file order: each gets a
+ * range of IDs from the allocator and is added to the inventory with one addAll, so the inventory list
+ * reports one change per block. Only a few blocks are in flight at once, so memory use does not grow with
+ * the size of the file.
+ * </p>
+ */
+public class InventoryImporter {
+    /**
+     * Size of the blocks the file is read and committed in.
+     */
+    private static final int BLOCK_BYTES = 1 << 20;
+    /**
+     * Most row errors kept for the result. Later errors are only counted.
+     */
+    private static final int MAX_ERRORS = 100;
+    private static final int PART_FIELDS = 7;
+    private static final int PRODUCT_FIELDS = 6;
+    private static final long INVALID = Long.MIN_VALUE;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private final Executor commitExecutor;
+    private final boolean commitsOnFxThread;
+    private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates an importer that commits to the inventory on the JavaFX application thread.
+     */
+    public InventoryImporter() {
+        this.commitExecutor = Platform::runLater;
+        this.commitsOnFxThread = true;
+    }
+
+    /**
+     * Creates an importer that commits to the inventory through an executor.
+     * @param commitExecutor Runs each batch commit on the thread that owns the inventory lists.
+     */
+    public InventoryImporter(Executor commitExecutor) {
+        this.commitExecutor = commitExecutor;
+        this.commitsOnFxThread = false;
+    }
+
+    /**
+     * The outcome of an import.
+     * @param imported The number of rows added to the inventory.
+     * @param rejected The number of rows that failed validation.
+     * @param errors Descriptions of the first rejected rows, with their line numbers.
+     */
+    public record Result(int imported, int rejected, List<String> errors) {
+    }
+
+    /**
+     * Imports parts from a file and waits until every valid row is in the inventory.
+     * Must not be called on the JavaFX application thread when committing there.
+     * @param file The CSV or TSV file.
+     * @return The number of rows imported and rejected.
+     * @throws IOException If the file cannot be read.
+     */
+    public Result importParts(Path file) throws IOException {
+        return run(file, this::parsePart, Inventory.getPartIDAllocator(), Part::setPartID, Inventory::addParts);
+    }
+
+    /**
+     * Imports products from a file and waits until every valid row is in the inventory.
+     * The parts they list must already be in the inventory.
+     * Must not be called on the JavaFX application thread when committing there.
+     * @param file The CSV or TSV file.
+     * @return The number of rows imported and rejected.
+     * @throws IOException If the file cannot be read.
+     */
+    public Result importProducts(Path file) throws IOException {
+        return run(file, this::parseProduct, Inventory.getProdIDAllocator(), Product::setProductID, Inventory::addProds);
+    }
+
+    private <T> Result run(Path file, RowParser<T> parser, IdAllocator ids, ObjIntConsumer<T> setID, Consumer<List<T>> commit) throws IOException {
+        if (commitsOnFxThread && Platform.isFxApplicationThread()) {
+            throw new IllegalStateException("Imports that commit on the JavaFX application thread must run on another thread");
+        }
+        byte delimiter = delimiterFor(file);
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, daemon());
+        Committer<T> committer = new Committer<>(ids, setID, commit);
+        ArrayDeque<CompletableFuture<Batch<T>>> pending = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_BYTES);
+            boolean header = true;
+            boolean eof = false;
+            while (!eof) {
+                eof = fill(channel, buffer);
+                buffer.flip();
+                int end = eof ? buffer.limit() : lastLineEnd(buffer);
+                if (end == 0 && !eof) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+                    continue;
+                }
+                byte[] block = new byte[end];
+                buffer.get(block);
+                buffer.compact();
+                boolean skipHeader = header;
+                header = false;
+                pending.add(CompletableFuture.supplyAsync(() -> parse(block, skipHeader, delimiter, parser), workers));
+                while (pending.size() > parallelism * 2) {
+                    committer.commit(pending.poll());
+                }
+            }
+            while (!pending.isEmpty()) {
+                committer.commit(pending.poll());
+            }
+            return committer.finish();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses and validates every line of a block.
+     */
+    private static <T> Batch<T> parse(byte[] block, boolean skipHeader, byte delimiter, RowParser<T> parser) {
+        Batch<T> batch = new Batch<>();
+        Fields fields = new Fields(block, delimiter);
+        int pos = 0;
+        while (pos < block.length) {
+            int newline = pos;
+            while (newline < block.length && block[newline] != '\n') {
+                newline++;
+            }
+            int end = newline > pos && block[newline - 1] == '\r' ? newline - 1 : newline;
+            batch.lines++;
+            if (!(skipHeader && batch.lines == 1) && !isBlank(block, pos, end)) {
+                String error = fields.split(pos, end) ? parser.parse(fields, batch.items) : "A quoted field is not closed.";
+                if (error != null) {
+                    batch.reject(error);
+                }
+            }
+            pos = newline + 1;
+        }
+        return batch;
+    }
+
+    /**
+     * Parses one part row into the list, or returns why it was rejected.
+     */
+    private String parsePart(Fields fields, List<Part> items) {
+        if (fields.count != PART_FIELDS) {
+            return "Expected " + PART_FIELDS + " fields but found " + fields.count + ".";
+        }
+        double price = fields.parseDouble(1);
+        long inv = fields.parseInt(2);
+        long min = fields.parseInt(3);
+        long max = fields.parseInt(4);
+        if (Double.isNaN(price) || inv == INVALID || min == INVALID || max == INVALID) {
+            return "Row contains invalid field formats.";
+        }
+        boolean outsourced;
+        if (fields.equalsIgnoreCase(5, "Outsourced") || fields.equalsIgnoreCase(5, "O")) {
+            outsourced = true;
+        } else if (fields.equalsIgnoreCase(5, "InHouse") || fields.equalsIgnoreCase(5, "In-House") || fields.equalsIgnoreCase(5, "I")) {
+            outsourced = false;
+        } else {
+            return "Source must be InHouse or Outsourced.";
+        }
+        String name = fields.string(0);
+        String companyName = null;
+        long machineID = INVALID;
+        String error;
+        if (outsourced) {
+            companyName = fields.string(6);
+            error = Part.isPartValid(name, (int) min, (int) max, (int) inv, price, true, companyName, "");
+        } else {
+            machineID = fields.parseInt(6);
+            error = machineID == INVALID
+                    ? Part.isPartValid(name, (int) min, (int) max, (int) inv, price, false, fields.string(6), "")
+                    : Part.isPartValid(name, (int) min, (int) max, (int) inv, price, (int) machineID, "");
+        }
+        if (!error.isEmpty()) {
+            return error.trim();
+        }
+        items.add(new PartRecord(0, name, price, (int) inv, (int) min, (int) max, outsourced, (int) machineID, companyName).toPart());
+        return null;
+    }
+
+    /**
+     * Parses one product row into the list, or returns why it was rejected.
+     */
+    private String parseProduct(Fields fields, List<Product> items) {
+        if (fields.count != PRODUCT_FIELDS) {
+            return "Expected " + PRODUCT_FIELDS + " fields but found " + fields.count + ".";
+        }
+        double price = fields.parseDouble(1);
+        long inv = fields.parseInt(2);
+        long min = fields.parseInt(3);
+        long max = fields.parseInt(4);
+        if (Double.isNaN(price) || inv == INVALID || min == INVALID || max == INVALID) {
+            return "Row contains invalid field formats.";
+        }
+        long[] lines = fields.parseBill(5);
+        if (lines == null) {
+            return "Parts must be part IDs, or negated product IDs for sub-assemblies, separated by semicolons, each with an optional :quantity.";
+        }
+        int[] partIDs = new int[lines.length];
+        int[] quantities = new int[lines.length];
+        int partCount = 0;
+        double sumOfParts = 0;
+        InventoryStore<Part> parts = Inventory.getPartStore();
+        for (int line = 0; line < lines.length; line++) {
+            partIDs[line] = (int) (lines[line] >> 32);
+            quantities[line] = (int) lines[line];
+            double cost;
+            if (partIDs[line] < 0) {
+                cost = subassemblyCost(-partIDs[line]);
+                if (Double.isNaN(cost)) {
+                    return "Product ID " + -partIDs[line] + " does not exist or contains itself.";
+                }
+            } else {
+                Part part = parts.get(partIDs[line]);
+                if (part == null) {
+                    return "Part ID " + partIDs[line] + " does not exist.";
+                }
+                cost = part.getPartPrice();
+            }
+            partCount = (int) Math.min(Integer.MAX_VALUE, (long) partCount + quantities[line]);
+            sumOfParts += cost * quantities[line];
+        }
+        String name = fields.string(0);
+        String error = Product.isProductValid(name, (int) min, (int) max, (int) inv, price, partCount, sumOfParts, "");
+        if (!error.isEmpty()) {
+            return error.trim();
+        }
+        Product product = new Product();
+        product.setProductName(name);
+        product.setProductPrice(price);
+        product.setProductInStock((int) inv);
+        product.setProductMin((int) min);
+        product.setProductMax((int) max);
+        product.getBillOfMaterials().load(partIDs, quantities);
+        items.add(product);
+        return null;
+    }
+
+    /**
+     * Works out the part cost of one unit of an existing product, for a row that builds it in as a sub-assembly.
+     * Uses the explosion engine and the part store rather than the cached costs, which belong to the application thread.
+     * @return The cost, or NaN if the product does not exist or its bill contains itself.
+     */
+    private static double subassemblyCost(int productID) {
+        BomExplosion.Requirements needs;
+        try {
+            needs = Inventory.getBomExplosion().requirements(productID);
+        } catch (IllegalStateException e) {
+            return Double.NaN;
+        }
+        if (needs == null) {
+            return Double.NaN;
+        }
+        InventoryStore<Part> parts = Inventory.getPartStore();
+        double cost = 0;
+        for (int line = 0; line < needs.lines(); line++) {
+            Part part = parts.get(needs.partID(line));
+            if (part != null) {
+                cost += part.getPartPrice() * needs.quantity(line);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Reads until the buffer is full or the file ends.
+     * @return True if the end of the file was reached.
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the position just past the last newline in a flipped buffer, or 0 if it holds none.
+     */
+    private static int lastLineEnd(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        for (int i = buffer.limit() - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isBlank(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] != ' ' && bytes[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte delimiterFor(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".tsv") || name.endsWith(".tab") ? (byte) '\t' : (byte) ',';
+    }
+
+    /**
+     * Parses a decimal integer from bytes.
+     * @return The value, or INVALID if the bytes are not an int.
+     */
+    private static long parseInt(byte[] bytes, int from, int to) {
+        boolean negative = from < to && bytes[from] == '-';
+        if (from < to && (bytes[from] == '-' || bytes[from] == '+')) {
+            from++;
+        }
+        if (from >= to || to - from > 10) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? INVALID : value;
+    }
+
+    private static ThreadFactory daemon() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "inventory-import-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Parses a row's fields into a list of items.
+     */
+    @FunctionalInterface
+    private interface RowParser<T> {
+        /**
+         * @return Null if the row was added, otherwise why it was rejected.
+         */
+        String parse(Fields fields, List<T> items);
+    }
+
+    /**
+     * The valid items and rejected rows of one block. Line numbers are relative to the block.
+     */
+    private static final class Batch<T> {
+        final List<T> items = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        final List<Integer> errorLines = new ArrayList<>();
+        int lines;
+        int rejected;
+
+        void reject(String error) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+                errorLines.add(lines);
+            }
+        }
+    }
+
+    /**
+     * Commits parsed blocks in file order, with at most one commit waiting on the commit executor.
+     */
+    private final class Committer<T> {
+        private final IdAllocator ids;
+        private final ObjIntConsumer<T> setID;
+        private final Consumer<List<T>> commit;
+        private final List<String> errors = new ArrayList<>();
+        private CompletableFuture<Void> lastCommit = CompletableFuture.completedFuture(null);
+        private int lineBase;
+        private int imported;
+        private int rejected;
+
+        Committer(IdAllocator ids, ObjIntConsumer<T> setID, Consumer<List<T>> commit) {
+            this.ids = ids;
+            this.setID = setID;
+            this.commit = commit;
+        }
+
+        void commit(CompletableFuture<Batch<T>> parsed) {
+            Batch<T> batch = join(parsed);
+            for (int i = 0; i < batch.errors.size() && errors.size() < MAX_ERRORS; i++) {
+                errors.add("Line " + (lineBase + batch.errorLines.get(i)) + ": " + batch.errors.get(i));
+            }
+            lineBase += batch.lines;
+            rejected += batch.rejected;
+            List<T> items = batch.items;
+            if (items.isEmpty()) {
+                return;
+            }
+            int id = ids.reserve(items.size());
+            for (T item : items) {
+                setID.accept(item, id++);
+            }
+            imported += items.size();
+            join(lastCommit);
+            lastCommit = CompletableFuture.runAsync(() -> commit.accept(items), commitExecutor);
+        }
+
+        Result finish() {
+            join(lastCommit);
+            return new Result(imported, rejected, Collections.unmodifiableList(errors));
+        }
+
+        private <R> R join(CompletableFuture<R> future) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The fields of the current line, located in place in a block. Quoted fields are unescaped in place.
+     */
+    private static final class Fields {
+        private final byte[] bytes;
+        private final byte delimiter;
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private long[] bill = new long[8];
+        int count;
+
+        Fields(byte[] bytes, byte delimiter) {
+            this.bytes = bytes;
+            this.delimiter = delimiter;
+        }
+
+        /**
+         * Locates the fields between two positions.
+         * @return False if a quoted field is not closed.
+         */
+        boolean split(int from, int to) {
+            count = 0;
+            int pos = from;
+            while (true) {
+                int start = pos;
+                while (start < to && bytes[start] == ' ') {
+                    start++;
+                }
+                if (start < to && bytes[start] == '"') {
+                    int write = start + 1;
+                    int read = start + 1;
+                    while (true) {
+                        if (read >= to) {
+                            return false;
+                        }
+                        if (bytes[read] == '"') {
+                            if (read + 1 < to && bytes[read + 1] == '"') {
+                                bytes[write++] = '"';
+                                read += 2;
+                            } else {
+                                read++;
+                                break;
+                            }
+                        } else {
+                            bytes[write++] = bytes[read++];
+                        }
+                    }
+                    add(start + 1, write);
+                    pos = read;
+                    while (pos < to && bytes[pos] != delimiter) {
+                        pos++;
+                    }
+                } else {
+                    while (pos < to && bytes[pos] != delimiter) {
+                        pos++;
+                    }
+                    add(start, pos);
+                }
+                if (pos >= to) {
+                    return true;
+                }
+                pos++;
+            }
+        }
+
+        String string(int field) {
+            int from = start(field);
+            return new String(bytes, from, end(field) - from, StandardCharsets.UTF_8);
+        }
+
+        long parseInt(int field) {
+            return InventoryImporter.parseInt(bytes, start(field), end(field));
+        }
+
+        /**
+         * Parses a plain decimal such as 12.50 from the bytes. Numbers that cannot be converted exactly
+         * this way, such as ones with an exponent or many digits, fall back to Double.parseDouble.
+         * @return The value, or NaN if the field is not a finite number.
+         */
+        double parseDouble(int field) {
+            int from = start(field);
+            int to = end(field);
+            boolean negative = from < to && bytes[from] == '-';
+            int pos = from < to && (bytes[from] == '-' || bytes[from] == '+') ? from + 1 : from;
+            long mantissa = 0;
+            int digits = 0;
+            int scale = -1;
+            for (; pos < to; pos++) {
+                byte b = bytes[pos];
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (scale >= 0) {
+                        scale++;
+                    }
+                    if (digits > 15) {
+                        return slowParseDouble(from, to);
+                    }
+                } else if (b == '.' && scale < 0) {
+                    scale = 0;
+                } else {
+                    return slowParseDouble(from, to);
+                }
+            }
+            if (digits == 0) {
+                return Double.NaN;
+            }
+            double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses a field's bill of materials into lines of (partID &lt;&lt; 32 | quantity), sorted by part ID
+         * with repeated parts merged.
+         * @return The lines, or null if the field is malformed.
+         */
+        long[] parseBill(int field) {
+            int from = start(field);
+            int to = end(field);
+            int lines = 0;
+            int pos = from;
+            while (pos < to) {
+                int entryEnd = pos;
+                while (entryEnd < to && bytes[entryEnd] != ';') {
+                    entryEnd++;
+                }
+                int colon = pos;
+                while (colon < entryEnd && bytes[colon] != ':') {
+                    colon++;
+                }
+                long partID = InventoryImporter.parseInt(bytes, trimStart(pos, colon), trimEnd(pos, colon));
+                long quantity = colon == entryEnd ? 1 : InventoryImporter.parseInt(bytes, trimStart(colon + 1, entryEnd), trimEnd(colon + 1, entryEnd));
+                if (partID == INVALID || quantity == INVALID || quantity <= 0) {
+                    return null;
+                }
+                if (lines == bill.length) {
+                    bill = Arrays.copyOf(bill, lines * 2);
+                }
+                bill[lines++] = (partID << 32) | quantity;
+                pos = entryEnd + 1;
+            }
+            Arrays.sort(bill, 0, lines);
+            int merged = 0;
+            for (int i = 0; i < lines; i++) {
+                if (merged > 0 && bill[merged - 1] >> 32 == bill[i] >> 32) {
+                    long quantity = Math.min(Integer.MAX_VALUE, (int) bill[merged - 1] + (bill[i] & 0xFFFFFFFFL));
+                    bill[merged - 1] = (bill[i] >> 32 << 32) | quantity;
+                } else {
+                    bill[merged++] = bill[i];
+                }
+            }
+            return Arrays.copyOf(bill, merged);
+        }
+
+        boolean equalsIgnoreCase(int field, String ascii) {
+            int from = start(field);
+            if (end(field) - from != ascii.length()) {
+                return false;
+            }
+            for (int i = 0; i < ascii.length(); i++) {
+                if (Character.toLowerCase((char) bytes[from + i]) != Character.toLowerCase(ascii.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double slowParseDouble(int from, int to) {
+            return NumberParser.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+        }
+
+        private void add(int start, int end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+
+        private int start(int field) {
+            return trimStart(starts[field], ends[field]);
+        }
+
+        private int end(int field) {
+            return trimEnd(starts[field], ends[field]);
+        }
+
+        private int trimStart(int from, int to) {
+            while (from < to && bytes[from] == ' ') {
+                from++;
+            }
+            return from;
+        }
+
+        private int trimEnd(int from, int to) {
+            while (to > from && bytes[to - 1] == ' ') {
+                to--;
+            }
+            return to;
+        }
+    }
+}
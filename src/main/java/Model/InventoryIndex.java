@@ -0,0 +1,150 @@
+package Model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Keeps an ID index and a case-insensitive name index over an inventory list.
+ * The index listens to the list it is built on, so it stays in sync with every
+ * add, remove and replace made through the list.
+ * Rows of an opened ColumnarCatalog are not copied into the index; lookups fall back to the catalog's own
+ * ID and name lookups, which only create the items they return.
+ *
+ * @param <T> The type of item being indexed, either Part or Product.
+ */
+public class InventoryIndex<T> {
+    private final ToIntFunction<T> idOf;
+    private final Function<T, String> nameOf;
+    /**
+     * Items keyed by their ID.
+     */
+    private final IntObjectMap<T> byId = new IntObjectMap<>();
+    /**
+     * Items keyed by their lower-cased name. A name can be shared by several items.
+     */
+    private final Map<String, List<T>> byName = new HashMap<>();
+    /**
+     * Catalog rows backing the list, searched when an item is not in the maps. Null when no catalog is open.
+     */
+    private LazyRowList<T> catalog;
+
+    /**
+     * Builds the index over a list and starts listening to it for changes.
+     * @param items The list to index.
+     * @param idOf Function returning the ID of an item.
+     * @param nameOf Function returning the name of an item.
+     */
+    public InventoryIndex(ObservableList<T> items, ToIntFunction<T> idOf, Function<T, String> nameOf) {
+        this.idOf = idOf;
+        this.nameOf = nameOf;
+        for (T item : items) {
+            add(item);
+        }
+        items.addListener((ListChangeListener<T>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated() || change.wasUpdated()) {
+                    continue;
+                }
+                for (T removed : change.getRemoved()) {
+                    remove(removed);
+                }
+                for (T added : change.getAddedSubList()) {
+                    add(added);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds an item by ID.
+     * @param id The ID to look up.
+     * @return The item with that ID, or null if none exists.
+     */
+    public T findById(int id) {
+        T item = byId.get(id);
+        return item != null || catalog == null ? item : catalog.findInCatalog(id);
+    }
+
+    /**
+     * Finds an item by name, ignoring case. When several items share a name the most recently added one is returned.
+     * @param name The name to look up.
+     * @return The matching item, or null if none exists.
+     */
+    public T findByName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String folded = fold(name);
+        List<T> matches = byName.get(folded);
+        if (matches != null) {
+            return matches.get(matches.size() - 1);
+        }
+        if (catalog == null) {
+            return null;
+        }
+        List<T> catalogMatches = new ArrayList<>(1);
+        catalog.forEachNamedInCatalog(folded, catalogMatches::add);
+        return catalogMatches.isEmpty() ? null : catalogMatches.get(catalogMatches.size() - 1);
+    }
+
+    /**
+     * Returns the highest ID in the index, including the catalog rows.
+     * @return The highest ID, or 0 if the index is empty.
+     */
+    public int maxId() {
+        int[] max = {catalog == null || catalog.table() == null ? 0 : catalog.table().maxID()};
+        byId.forEachKey(id -> max[0] = Math.max(max[0], id));
+        return max[0];
+    }
+
+    /**
+     * Makes lookups fall back to the catalog rows backing the indexed list.
+     * @param rows The backing list, already filled from a catalog.
+     */
+    void setCatalog(LazyRowList<T> rows) {
+        catalog = rows;
+    }
+
+    private void add(T item) {
+        byId.put(idOf.applyAsInt(item), item);
+        String name = nameOf.apply(item);
+        if (name != null) {
+            byName.computeIfAbsent(fold(name), key -> new ArrayList<>(1)).add(item);
+        }
+    }
+
+    private void remove(T item) {
+        int id = idOf.applyAsInt(item);
+        if (byId.get(id) == item) {
+            byId.remove(id);
+        }
+        String name = nameOf.apply(item);
+        if (name != null) {
+            String key = fold(name);
+            List<T> matches = byName.get(key);
+            if (matches != null) {
+                matches.removeIf(match -> match == item);
+                if (matches.isEmpty()) {
+                    byName.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Normalizes a name for case-insensitive matching.
+     * @param name The name to normalize.
+     * @return The lower-cased name.
+     */
+    static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,484 @@
+package Model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of inventory changes.
+ * <p>
+ * The journal follows the inventory change events and turns every add, remove and replace into a
+ * binary record. Records are encoded on the calling thread and handed to a single writer thread, which
+ * writes everything that is pending in one FileChannel call (group commit) and forces it to disk once
+ * enough records or enough time has gone by. The caller never waits for the disk.
+ * </p>
+ * <p>
+ * Each record is framed as its length, a type byte, the payload and a CRC32 of type and payload.
+ * On replay a torn or corrupt tail left by a crash is detected through the frame and cut off. Only the newest
+ * segment can have one, since a segment is forced before the writer moves on; a bad frame in any older segment
+ * would leave a gap in the history, so replay stops with an error instead.
+ * </p>
+ * <p>
+ * The journal is split into numbered segment files. Rolling to a new segment marks a point in the
+ * change stream: a snapshot taken at that point makes every older segment redundant, so those can be deleted.
+ * </p>
+ */
+public class InventoryJournal implements AutoCloseable {
+    static final byte ADD_PART = 1;
+    static final byte REMOVE_PART = 2;
+    static final byte UPDATE_PART = 3;
+    static final byte ADD_PRODUCT = 4;
+    static final byte REMOVE_PRODUCT = 5;
+    static final byte UPDATE_PRODUCT = 6;
+    /**
+     * Segment file names are this prefix, a zero-padded sequence number and the suffix.
+     */
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".log";
+    /**
+     * Queued in place of a record to make the writer switch to the next segment.
+     */
+    private static final byte[] ROLL = new byte[0];
+    /**
+     * Largest record length accepted on replay; anything bigger is treated as a corrupt frame.
+     */
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+    private final Path dataDir;
+    /**
+     * The segment new records go to. Owned by the writer thread once journaling starts.
+     */
+    private FileChannel channel;
+    /**
+     * Sequence number of the newest segment, including rolls the writer has not reached yet.
+     */
+    private final AtomicLong segment;
+    /**
+     * Sequence number of the segment the writer thread currently has open.
+     */
+    private volatile long writerSegment;
+    /**
+     * Force to disk after this many records have been written since the last force.
+     */
+    private final int syncBatch;
+    /**
+     * Force to disk at least this often while there are unforced records.
+     */
+    private final long syncMillis;
+    private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    /**
+     * Opens the journal in a data directory, creating the directory and first segment if needed.
+     * Fsync batching is read from the inventory.journal.syncBatch and inventory.journal.syncMillis
+     * system properties and defaults to forcing every 64 records or 50 milliseconds.
+     * @param dataDir The directory holding the journal.
+     * @param firstSegment The lowest segment number new records may go to, usually the segment a snapshot was taken at.
+     * @return The open journal.
+     * @throws IOException If the segment cannot be opened.
+     */
+    public static InventoryJournal open(Path dataDir, long firstSegment) throws IOException {
+        return open(dataDir, firstSegment, Integer.getInteger("inventory.journal.syncBatch", 64), Long.getLong("inventory.journal.syncMillis", 50L));
+    }
+
+    /**
+     * Opens the journal in a data directory with explicit fsync batching.
+     * @param dataDir The directory holding the journal.
+     * @param firstSegment The lowest segment number new records may go to.
+     * @param syncBatch Force to disk after this many records. Use 1 to force after every write.
+     * @param syncMillis Force to disk at least this often while records are unforced.
+     * @return The open journal.
+     * @throws IOException If the segment cannot be opened.
+     */
+    public static InventoryJournal open(Path dataDir, long firstSegment, int syncBatch, long syncMillis) throws IOException {
+        Files.createDirectories(dataDir);
+        return new InventoryJournal(dataDir, firstSegment, syncBatch, syncMillis);
+    }
+
+    private InventoryJournal(Path dataDir, long firstSegment, int syncBatch, long syncMillis) throws IOException {
+        this.dataDir = dataDir;
+        this.syncBatch = Math.max(1, syncBatch);
+        this.syncMillis = Math.max(1, syncMillis);
+        long[] segments = sequences(dataDir, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        this.segment = new AtomicLong(Math.max(Math.max(1, firstSegment), segments.length == 0 ? 0 : segments[segments.length - 1]));
+        this.writerSegment = segment.get();
+        this.channel = openSegment(writerSegment);
+        channel.position(channel.size());
+        writer = new Thread(this::writeLoop, "inventory-journal");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "inventory-journal-shutdown"));
+    }
+
+    /**
+     * Replays the journal segments from a starting segment onward into the inventory, then cuts off any torn tail.
+     * Must be called before the journal is attached to the inventory, so replayed changes are not journaled again.
+     * @param fromSegment The first segment to replay. Older segments are covered by a snapshot.
+     * @return The number of records replayed.
+     * @throws IOException If a segment cannot be read, or a segment other than the newest has a bad frame.
+     */
+    public int replay(long fromSegment) throws IOException {
+        int records = 0;
+        long current = segment.get();
+        long[] segments = sequences(dataDir, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        long newest = segments.length == 0 ? current : segments[segments.length - 1];
+        for (long sequence : segments) {
+            if (sequence < fromSegment) {
+                continue;
+            }
+            Path file = segmentPath(dataDir, sequence);
+            long validLength = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                CRC32 crc = new CRC32();
+                while (true) {
+                    byte[] body;
+                    try {
+                        int length = in.readInt();
+                        if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                            break;
+                        }
+                        body = new byte[length];
+                        in.readFully(body);
+                        crc.reset();
+                        crc.update(body);
+                        if ((int) crc.getValue() != in.readInt()) {
+                            break;
+                        }
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    apply(body);
+                    records++;
+                    validLength += Integer.BYTES + body.length + Integer.BYTES;
+                }
+            }
+            long size = Files.size(file);
+            if (validLength < size && sequence != newest) {
+                throw new IOException("Journal segment " + file.getFileName() + " is damaged after " + validLength + " of "
+                        + size + " bytes; the segments after it cannot be replayed over the lost records");
+            }
+            if (validLength < size) {
+                System.out.println("Discarding " + (size - validLength) + " bytes of incomplete journal data in " + file.getFileName() + ".");
+                if (sequence == current) {
+                    channel.truncate(validLength);
+                    channel.position(validLength);
+                }
+            }
+        }
+        Inventory.restoreIDCounts();
+        return records;
+    }
+
+    /**
+     * Closes the current segment and starts a new one. Records journaled before this call go to the old segment,
+     * records journaled after it to the new one. Must be called on the thread that changes the inventory.
+     * @return The sequence number of the new segment.
+     */
+    public long roll() {
+        long next = segment.incrementAndGet();
+        pending.add(ROLL);
+        return next;
+    }
+
+    /**
+     * Returns the sequence number of the segment that new records go to.
+     * @return The current segment number.
+     */
+    public long currentSegment() {
+        return segment.get();
+    }
+
+    /**
+     * Deletes every segment older than the given one. Used once a snapshot covers them.
+     * A segment the writer has not moved past yet is kept until a later call.
+     * @param sequence The oldest segment to keep.
+     * @throws IOException If a segment cannot be deleted.
+     */
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        long keepFrom = Math.min(sequence, writerSegment);
+        for (long older : sequences(dataDir, SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (older < keepFrom) {
+                Files.deleteIfExists(segmentPath(dataDir, older));
+            }
+        }
+    }
+
+    /**
+     * Starts journaling every change made to the inventories. Each change is journaled as it happens.
+     * @param events The inventories' change events.
+     */
+    public void watch(InventoryEvents events) {
+        events.subscribe(changes -> {
+            for (InventoryEvent event : changes) {
+                if (event instanceof InventoryEvent.PartAdded added) {
+                    append(ADD_PART, out -> InventoryCodec.writePart(out, added.part()));
+                } else if (event instanceof InventoryEvent.PartUpdated updated) {
+                    partUpdated(updated.before().getPartID(), updated.after());
+                } else if (event instanceof InventoryEvent.PartRemoved removed) {
+                    int partID = removed.part().getPartID();
+                    append(REMOVE_PART, out -> out.writeInt(partID));
+                } else if (event instanceof InventoryEvent.ProductAdded added) {
+                    append(ADD_PRODUCT, out -> InventoryCodec.writeProduct(out, added.product()));
+                } else if (event instanceof InventoryEvent.ProductUpdated updated) {
+                    productUpdated(updated.before().getProductID(), updated.after());
+                } else if (event instanceof InventoryEvent.ProductRemoved removed) {
+                    int productID = removed.product().getProductID();
+                    append(REMOVE_PRODUCT, out -> out.writeInt(productID));
+                }
+            }
+        });
+    }
+
+    /**
+     * Journals a part that was replaced or changed in place.
+     * @param oldID The ID the part had before the change.
+     * @param part The part after the change.
+     */
+    public void partUpdated(int oldID, Part part) {
+        append(UPDATE_PART, out -> {
+            out.writeInt(oldID);
+            InventoryCodec.writePart(out, part);
+        });
+    }
+
+    /**
+     * Journals a product that was replaced or changed in place.
+     * @param oldID The ID the product had before the change.
+     * @param product The product after the change.
+     */
+    public void productUpdated(int oldID, Product product) {
+        append(UPDATE_PRODUCT, out -> {
+            out.writeInt(oldID);
+            InventoryCodec.writeProduct(out, product);
+        });
+    }
+
+    /**
+     * Stops the writer after it has written and forced everything pending, then closes the file.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Could not close the inventory journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes and frames a record, then queues it for the writer thread.
+     */
+    private void append(byte type, RecordWriter payload) {
+        if (!running) {
+            throw new IllegalStateException("The inventory journal is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("The inventory journal stopped after a write error", failure);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeByte(type);
+            payload.write(out);
+            out.writeInt(0);
+            byte[] record = bytes.toByteArray();
+            int length = record.length - 2 * Integer.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(record, Integer.BYTES, length);
+            ByteBuffer frame = ByteBuffer.wrap(record);
+            frame.putInt(0, length);
+            frame.putInt(record.length - Integer.BYTES, (int) crc.getValue());
+            pending.add(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writer thread: drains every pending record into one gathering write, and forces the
+     * channel when the batch size or the time limit is reached.
+     */
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        int unforced = 0;
+        long lastForce = System.nanoTime();
+        try {
+            while (running || !pending.isEmpty()) {
+                byte[] first = pending.poll(syncMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pending.drainTo(batch);
+                    int start = 0;
+                    for (int i = 0; i <= batch.size(); i++) {
+                        if (i < batch.size() && batch.get(i) != ROLL) {
+                            continue;
+                        }
+                        unforced += write(batch.subList(start, i));
+                        if (i < batch.size()) {
+                            channel.force(false);
+                            channel.close();
+                            channel = openSegment(writerSegment + 1);
+                            writerSegment++;
+                            unforced = 0;
+                        }
+                        start = i + 1;
+                    }
+                    batch.clear();
+                }
+                long now = System.nanoTime();
+                if (unforced > 0 && (unforced >= syncBatch || now - lastForce >= TimeUnit.MILLISECONDS.toNanos(syncMillis))) {
+                    channel.force(false);
+                    unforced = 0;
+                    lastForce = now;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            System.err.println("Inventory journal write failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a run of records in one gathering write.
+     * @return The number of records written.
+     */
+    private int write(List<byte[]> records) throws IOException {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[records.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(records.get(i));
+        }
+        while (buffers[buffers.length - 1].hasRemaining()) {
+            channel.write(buffers);
+        }
+        return records.size();
+    }
+
+    private FileChannel openSegment(long sequence) throws IOException {
+        return FileChannel.open(segmentPath(dataDir, sequence), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Builds the path of a numbered file in the data directory.
+     */
+    static Path segmentPath(Path dataDir, long sequence) {
+        return dataDir.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Lists the sequence numbers of the numbered files with a prefix and suffix in a directory, in ascending order.
+     * @param dir The directory to look in.
+     * @param prefix The file name prefix.
+     * @param suffix The file name suffix.
+     * @return The sequence numbers found.
+     * @throws IOException If the directory cannot be listed.
+     */
+    static long[] sequences(Path dir, String prefix, String suffix) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return new long[0];
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+                    .filter(number -> !number.isEmpty() && number.chars().allMatch(Character::isDigit))
+                    .mapToLong(Long::parseLong)
+                    .sorted()
+                    .toArray();
+        }
+    }
+
+    /**
+     * Applies one replayed record to the inventory.
+     */
+    private void apply(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        switch (type) {
+            case ADD_PART:
+                Inventory.addPart(InventoryCodec.readPart(in));
+                break;
+            case REMOVE_PART: {
+                Part part = Inventory.lookupPart(in.readInt());
+                if (part != null) {
+                    Inventory.removePart(part);
+                }
+                break;
+            }
+            case UPDATE_PART: {
+                Part old = Inventory.lookupPart(in.readInt());
+                Part part = InventoryCodec.readPart(in);
+                if (old != null) {
+                    Inventory.replacePart(old, part);
+                } else {
+                    Inventory.addPart(part);
+                }
+                break;
+            }
+            case ADD_PRODUCT:
+                Inventory.addProd(InventoryCodec.readProduct(in));
+                break;
+            case REMOVE_PRODUCT: {
+                Product product = Inventory.lookupProd(in.readInt());
+                if (product != null) {
+                    Inventory.removeProd(product);
+                }
+                break;
+            }
+            case UPDATE_PRODUCT: {
+                Product old = Inventory.lookupProd(in.readInt());
+                Product product = InventoryCodec.readProduct(in);
+                if (old != null) {
+                    Inventory.replaceProduct(old, product);
+                } else {
+                    Inventory.addProd(product);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Writes the payload of a record.
+     */
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,139 @@
+package Model;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Restores the inventory at startup and keeps it persisted while the application runs.
+ * <p>
+ * Startup loads the newest snapshot and replays only the journal segments written after it, so its cost
+ * follows the size of the live data rather than the length of the change history. While running, every
+ * change goes to the journal, and a snapshot is taken periodically (every inventory.snapshot.minutes,
+ * default 10) and right after a startup that had to replay many records. Once a snapshot is on disk,
+ * the journal segments and snapshots it replaces are deleted. Stock movements are kept apart from the
+ * journal, in a stock ledger in the ledger subdirectory, and are never deleted.
+ * </p>
+ */
+public class InventoryPersistence implements AutoCloseable {
+    /**
+     * A startup that replays at least this many records takes a snapshot straight away.
+     */
+    private static final int REPLAY_SNAPSHOT_THRESHOLD = 10_000;
+    /**
+     * Files holding the high-water marks of the part and product ID allocators.
+     */
+    private static final String PART_IDS = "part-ids.mark";
+    private static final String PRODUCT_IDS = "product-ids.mark";
+    /**
+     * Subdirectory holding the stock ledger.
+     */
+    private static final String LEDGER_DIR = "ledger";
+    private final Path dataDir;
+    private final InventoryJournal journal;
+    private final StockLedger ledger;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemon("inventory-snapshot-timer"));
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(daemon("inventory-snapshot-writer"));
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private InventoryPersistence(Path dataDir, InventoryJournal journal, StockLedger ledger) {
+        this.dataDir = dataDir;
+        this.journal = journal;
+        this.ledger = ledger;
+    }
+
+    /**
+     * Restores the inventory from the data directory and starts persisting changes to it.
+     * Must be called before anything else reads or changes the inventory. It may run on a background thread
+     * while the window starts up, as long as the inventory is only used on the JavaFX application thread afterwards.
+     * @param dataDir The data directory.
+     * @return The running persistence.
+     * @throws IOException If the snapshot, journal or stock ledger cannot be read.
+     */
+    public static InventoryPersistence open(Path dataDir) throws IOException {
+        long fromSegment = InventorySnapshot.load(dataDir);
+        InventoryJournal journal = InventoryJournal.open(dataDir, fromSegment);
+        int replayed = journal.replay(fromSegment);
+        Inventory.attachJournal(journal);
+        Inventory.attachIDAllocators(IdAllocator.open(dataDir.resolve(PART_IDS)), IdAllocator.open(dataDir.resolve(PRODUCT_IDS)));
+        StockLedger ledger = StockLedger.open(dataDir.resolve(LEDGER_DIR));
+        Inventory.attachLedger(ledger);
+        InventoryPersistence persistence = new InventoryPersistence(dataDir, journal, ledger);
+        long minutes = Long.getLong("inventory.snapshot.minutes", 10L);
+        persistence.scheduler.scheduleAtFixedRate(() -> Platform.runLater(persistence::snapshot), minutes, minutes, TimeUnit.MINUTES);
+        if (replayed >= REPLAY_SNAPSHOT_THRESHOLD) {
+            persistence.snapshot();
+        }
+        return persistence;
+    }
+
+    /**
+     * Captures a snapshot and writes it in the background, then deletes what it replaces.
+     * Does nothing if the previous snapshot is still being written.
+     * Must be called on the JavaFX application thread.
+     */
+    public void snapshot() {
+        if (!writing.compareAndSet(false, true)) {
+            return;
+        }
+        InventorySnapshot snapshot = InventorySnapshot.capture(journal);
+        writer.execute(() -> {
+            try {
+                snapshot.write(dataDir);
+                long needed = snapshot.deleteOlder(dataDir);
+                journal.deleteSegmentsBefore(needed);
+            } catch (IOException e) {
+                System.err.println("Inventory snapshot failed: " + e.getMessage());
+            } finally {
+                writing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Returns the journal inventory changes are written to.
+     * @return The attached journal.
+     */
+    public InventoryJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns the ledger stock movements are recorded in.
+     * @return The attached stock ledger.
+     */
+    public StockLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Stops taking snapshots, waits briefly for one in progress, and closes the journal and the stock ledger.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+        ledger.close();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * A point-in-time copy of the part and product inventories, stored as a ColumnarCatalog file.
+ * <p>
+ * A snapshot is captured on the thread that changes the inventory: the lists are copied and the journal
+ * is rolled to a new segment in the same step, so the snapshot holds exactly the changes journaled
+ * before that segment. Writing the file then happens in the background. Journal records are full
+ * item states rather than deltas, so an item changed in place after the copy is still correct once
+ * the newer segments are replayed over the snapshot.
+ * </p>
+ * <p>
+ * Snapshot files are named after the first journal segment they do not cover. On startup the newest
+ * snapshot is opened as a memory-mapped catalog, so items are only created as they are read, and only the
+ * segments from that number onward are replayed.
+ * </p>
+ * <p>
+ * The snapshot before the newest is kept, along with the journal segments from its number onward, so a newest
+ * snapshot that fails its checksum can be passed over and the inventory rebuilt from the one before.
+ * </p>
+ */
+public class InventorySnapshot {
+    static final String PREFIX = "snapshot-";
+    static final String SUFFIX = ".col";
+    private static final String DAMAGED_SUFFIX = ".damaged";
+    private final long segment;
+    private final List<Part> parts;
+    private final List<Product> products;
+
+    private InventorySnapshot(long segment, List<Part> parts, List<Product> products) {
+        this.segment = segment;
+        this.parts = parts;
+        this.products = products;
+    }
+
+    /**
+     * Copies the current inventories and rolls the journal. Must be called on the thread that changes the inventory.
+     * @param journal The journal attached to the inventory.
+     * @return The captured snapshot, ready to be written.
+     */
+    public static InventorySnapshot capture(InventoryJournal journal) {
+        List<Part> parts = Inventory.copyPartInv();
+        List<Product> products = Inventory.copyProductInv();
+        return new InventorySnapshot(journal.roll(), parts, products);
+    }
+
+    /**
+     * Returns the first journal segment this snapshot does not cover.
+     * @return The segment number.
+     */
+    public long getSegment() {
+        return segment;
+    }
+
+    /**
+     * Writes the snapshot to the data directory. The file is written under a temporary name,
+     * forced to disk and then renamed, so a crash never leaves a partial snapshot behind.
+     * @param dataDir The data directory.
+     * @return The path of the written snapshot.
+     * @throws IOException If the file cannot be written.
+     */
+    public Path write(Path dataDir) throws IOException {
+        Path target = path(dataDir, segment);
+        Path temp = dataDir.resolve(target.getFileName() + ".tmp");
+        ColumnarCatalog.write(temp, parts, products);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Deletes every snapshot older than this one except the newest of them, which is kept to fall back on.
+     * A snapshot that is still mapped may not be deletable on some platforms; it is left in place and deleted by a later call.
+     * @param dataDir The data directory.
+     * @return The first journal segment still needed: the one the kept older snapshot was taken at,
+     *         or this snapshot's own segment if there is no older one.
+     * @throws IOException If the data directory cannot be listed.
+     */
+    public long deleteOlder(Path dataDir) throws IOException {
+        long[] snapshots = InventoryJournal.sequences(dataDir, PREFIX, SUFFIX);
+        long fallback = segment;
+        for (long older : snapshots) {
+            if (older < segment) {
+                fallback = older;
+            }
+        }
+        for (long older : snapshots) {
+            if (older < fallback) {
+                try {
+                    Files.deleteIfExists(path(dataDir, older));
+                } catch (IOException e) {
+                    System.err.println("Could not delete old snapshot " + older + ": " + e.getMessage());
+                }
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Opens the newest valid snapshot in the data directory as the inventory's catalog.
+     * A snapshot that cannot be opened or fails its checksum is reported, renamed out of the way so it is never
+     * kept as a fallback, and passed over for the one before it.
+     * @param dataDir The data directory.
+     * @return The first journal segment to replay after the snapshot, or 0 if there is no snapshot.
+     * @throws IOException If there are snapshots but none of them can be opened.
+     */
+    public static long load(Path dataDir) throws IOException {
+        long[] snapshots = InventoryJournal.sequences(dataDir, PREFIX, SUFFIX);
+        IOException failure = null;
+        for (int i = snapshots.length - 1; i >= 0; i--) {
+            ColumnarCatalog catalog;
+            try {
+                catalog = ColumnarCatalog.open(path(dataDir, snapshots[i]));
+            } catch (IOException e) {
+                System.err.println("Skipping snapshot " + snapshots[i] + ": " + e.getMessage());
+                setAside(dataDir, snapshots[i]);
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+                continue;
+            }
+            Inventory.openCatalog(catalog);
+            return snapshots[i];
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return 0;
+    }
+
+    /**
+     * Renames a damaged snapshot so it is no longer listed, keeping the file for inspection.
+     */
+    private static void setAside(Path dataDir, long segment) {
+        Path file = path(dataDir, segment);
+        try {
+            Files.move(file, dataDir.resolve(file.getFileName() + DAMAGED_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Could not set aside snapshot " + segment + ": " + e.getMessage());
+        }
+    }
+
+    static Path path(Path dataDir, long segment) {
+        return dataDir.resolve(String.format("%s%010d%s", PREFIX, segment, SUFFIX));
+    }
+}
@@ -0,0 +1,471 @@
+package Model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Thread-safe store of inventory items keyed by ID, for code that runs off the JavaFX application thread.
+ * <p>
+ * Items are spread over a fixed number of stripes by ID, and each stripe has its own read-write lock,
+ * so threads working on different IDs rarely contend. The store listens to the JavaFX inventory list and
+ * records every change made there. Changes made through the store are marked dirty and published back
+ * to the list on the application thread: the first change schedules one publish task, later changes
+ * join that batch, and the task applies the current state of every dirty ID at once. Repeated changes
+ * to an ID before the publish therefore cost a single list update.
+ * </p>
+ * <p>
+ * Rows of an opened ColumnarCatalog are read from the catalog the first time they are asked for, and the
+ * same object is handed to the inventory list, so both sides agree on identity. Rows read from the catalog
+ * are only held weakly: once nothing else refers to one, it can be reclaimed and is read again when next asked for.
+ * Items handed to other threads must not be changed in place; put a new item with the same ID instead.
+ * </p>
+ *
+ * @param <T> The type of item being stored, either Part or Product.
+ */
+public class InventoryStore<T> {
+    private static final int STRIPES = 64;
+    /**
+     * Marks an ID removed while its catalog row still exists.
+     */
+    private static final Object REMOVED = new Object();
+    private final ToIntFunction<T> idOf;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    /**
+     * IDs changed through the store that have not been published to the list yet.
+     */
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean publishScheduled = new AtomicBoolean();
+    /**
+     * Receives the references of catalog rows that have been reclaimed, so their entries can be dropped.
+     */
+    private final ReferenceQueue<Object> reclaimed = new ReferenceQueue<>();
+    /**
+     * Applies the current state of a batch of IDs to the inventory list. Runs on the publish executor.
+     */
+    private final Consumer<int[]> publisher;
+    private volatile Executor publishExecutor;
+    /**
+     * True while a publish is changing the list. The store already holds those items, or newer ones put since,
+     * so the list changes it makes are not recorded. Only used on the publish executor's thread.
+     */
+    private boolean publishing;
+    private volatile ColumnarCatalog.Table catalog;
+    private volatile IntFunction<T> rowReader;
+
+    /**
+     * Creates a store over an inventory list and starts recording the list's changes.
+     * @param items The inventory list. Must only be changed on the publish executor's thread.
+     * @param idOf Function returning the ID of an item.
+     * @param publisher Applies the current state of a batch of IDs to the list.
+     * @param publishExecutor Runs publish tasks, normally Platform::runLater.
+     */
+    public InventoryStore(ObservableList<T> items, ToIntFunction<T> idOf, Consumer<int[]> publisher, Executor publishExecutor) {
+        this.idOf = idOf;
+        this.publisher = publisher;
+        this.publishExecutor = publishExecutor;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        items.addListener((ListChangeListener<T>) change -> {
+            if (publishing) {
+                return;
+            }
+            while (change.next()) {
+                if (change.wasPermutated() || change.wasUpdated()) {
+                    continue;
+                }
+                for (T removed : change.getRemoved()) {
+                    removedFromList(removed);
+                }
+                for (T added : change.getAddedSubList()) {
+                    addedToList(added);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds an item by ID. Safe to call from any thread.
+     * @param id The ID to look up.
+     * @return The item with that ID, or null if none exists.
+     */
+    public T get(int id) {
+        Stripe stripe = stripe(id);
+        stripe.lock.readLock().lock();
+        try {
+            Object item = stripe.changed.get(id);
+            if (item != null) {
+                return item == REMOVED ? null : cast(item);
+            }
+            item = deref(stripe.loaded.get(id));
+            if (item != null) {
+                return cast(item);
+            }
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+        ColumnarCatalog.Table table = catalog;
+        int row = table == null ? -1 : table.findRow(id);
+        return row < 0 ? null : loadRow(row);
+    }
+
+    /**
+     * Adds an item, or replaces the item with the same ID. Safe to call from any thread.
+     * The change reaches the inventory list with the next publish.
+     * @param item The item to store.
+     */
+    public void put(T item) {
+        int id = idOf.applyAsInt(item);
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.changed.put(id, item);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+        markDirty(id);
+    }
+
+    /**
+     * Removes the item with an ID. Safe to call from any thread.
+     * The change reaches the inventory list with the next publish.
+     * @param id The ID of the item to remove.
+     * @return True if an item with that ID existed, otherwise false.
+     */
+    public boolean remove(int id) {
+        if (get(id) == null) {
+            return false;
+        }
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            markRemoved(stripe, id);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+        markDirty(id);
+        return true;
+    }
+
+    /**
+     * Write-locks the stripes holding a set of IDs, so their items can be checked and replaced together.
+     * Stripes are locked in a fixed order, so two callers locking overlapping IDs cannot deadlock; a caller locking
+     * two stores must always lock them in the same order. Must be closed on the thread that locked it.
+     * @param ids The IDs to lock. Duplicates are allowed.
+     * @return The held locks, to be closed once the items are replaced.
+     */
+    Locked lock(int[] ids) {
+        boolean[] wanted = new boolean[STRIPES];
+        int count = 0;
+        for (int id : ids) {
+            int index = stripeIndex(id);
+            if (!wanted[index]) {
+                wanted[index] = true;
+                count++;
+            }
+        }
+        Stripe[] held = new Stripe[count];
+        int next = 0;
+        for (int index = 0; index < STRIPES; index++) {
+            if (wanted[index]) {
+                held[next++] = stripes[index];
+            }
+        }
+        return new Locked(held);
+    }
+
+    /**
+     * Passes every item in the store to an action, one stripe at a time. Safe to call from any thread.
+     * Items changed while the walk is in progress may or may not be seen. Catalog rows that have not been
+     * read yet are read for the action without being kept.
+     * @param action Receives each item.
+     */
+    public void forEach(Consumer<? super T> action) {
+        ColumnarCatalog.Table table = catalog;
+        IntFunction<T> reader = rowReader;
+        if (table != null) {
+            for (int row = 0; row < table.rows; row++) {
+                int id = table.id(row);
+                Stripe stripe = stripe(id);
+                Object item = null;
+                boolean changed;
+                stripe.lock.readLock().lock();
+                try {
+                    changed = stripe.changed.containsKey(id);
+                    if (!changed) {
+                        item = deref(stripe.loaded.get(id));
+                    }
+                } finally {
+                    stripe.lock.readLock().unlock();
+                }
+                if (changed) {
+                    continue;
+                }
+                action.accept(item != null ? cast(item) : reader.apply(row));
+            }
+        }
+        for (Stripe stripe : stripes) {
+            Object[] items;
+            stripe.lock.readLock().lock();
+            try {
+                items = new Object[stripe.changed.size()];
+                int[] next = {0};
+                stripe.changed.forEachValue(item -> items[next[0]++] = item);
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+            for (Object item : items) {
+                if (item != REMOVED) {
+                    action.accept(cast(item));
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the executor publish tasks run on, for running without a JavaFX toolkit.
+     * @param executor Runs publish tasks on the thread that owns the inventory list.
+     */
+    public void setPublishExecutor(Executor executor) {
+        publishExecutor = executor;
+    }
+
+    /**
+     * Makes catalog rows available through the store. Must be called before the list is filled from the catalog.
+     * @param table The catalog table holding the rows.
+     * @param reader Creates the item stored in a row. Must be safe to call from any thread.
+     */
+    void attachCatalog(ColumnarCatalog.Table table, IntFunction<T> reader) {
+        rowReader = reader;
+        catalog = table;
+    }
+
+    /**
+     * Returns the item for a catalog row, reading it on first use. The inventory list loads its rows through
+     * this method, so the list and the store hold the same object for a row.
+     * @param row The catalog row.
+     * @return The item stored in the row.
+     */
+    T loadRow(int row) {
+        dropReclaimed();
+        int id = catalog.id(row);
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            Object item = deref(stripe.loaded.get(id));
+            if (item == null) {
+                item = rowReader.apply(row);
+                stripe.loaded.put(id, new RowReference(id, item, reclaimed));
+            }
+            return cast(item);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the entries of catalog rows that have been reclaimed. Must be called without holding a stripe lock.
+     */
+    private void dropReclaimed() {
+        RowReference reference;
+        while ((reference = (RowReference) reclaimed.poll()) != null) {
+            Stripe stripe = stripe(reference.id);
+            stripe.lock.writeLock().lock();
+            try {
+                if (stripe.loaded.get(reference.id) == reference) {
+                    stripe.loaded.remove(reference.id);
+                }
+            } finally {
+                stripe.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private static Object deref(RowReference reference) {
+        return reference == null ? null : reference.get();
+    }
+
+    private void addedToList(T item) {
+        int id = idOf.applyAsInt(item);
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.changed.put(id, item);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records an item leaving the list, unless the store already holds a newer item for its ID.
+     */
+    private void removedFromList(T item) {
+        int id = idOf.applyAsInt(item);
+        Stripe stripe = stripe(id);
+        stripe.lock.writeLock().lock();
+        try {
+            Object current = stripe.changed.get(id);
+            if (current == null || current == item) {
+                markRemoved(stripe, id);
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an ID. A catalog row cannot be deleted, so an ID that has one is marked removed instead.
+     * Must be called with the stripe's write lock held.
+     */
+    private void markRemoved(Stripe stripe, int id) {
+        stripe.loaded.remove(id);
+        ColumnarCatalog.Table table = catalog;
+        if (table != null && table.findRow(id) >= 0) {
+            stripe.changed.put(id, REMOVED);
+        } else {
+            stripe.changed.remove(id);
+        }
+    }
+
+    private void markDirty(int id) {
+        dirty.add(id);
+        if (publishScheduled.compareAndSet(false, true)) {
+            publishExecutor.execute(this::publish);
+        }
+    }
+
+    /**
+     * Publishes every dirty ID to the inventory list in one batch.
+     */
+    private void publish() {
+        publishScheduled.set(false);
+        int[] ids = new int[dirty.size()];
+        int count = 0;
+        for (Integer id : dirty) {
+            if (dirty.remove(id)) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2 + 1);
+                }
+                ids[count++] = id;
+            }
+        }
+        if (count > 0) {
+            publishing = true;
+            try {
+                publisher.accept(count == ids.length ? ids : Arrays.copyOf(ids, count));
+            } finally {
+                publishing = false;
+            }
+        }
+    }
+
+    private Stripe stripe(int id) {
+        return stripes[stripeIndex(id)];
+    }
+
+    private static int stripeIndex(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object item) {
+        return (T) item;
+    }
+
+    /**
+     * The write locks of a set of stripes, held while items in them are checked and replaced as one change.
+     * Replaced items are published once the locks are released.
+     */
+    final class Locked implements AutoCloseable {
+        private final Stripe[] held;
+        private final List<Integer> written = new ArrayList<>();
+
+        private Locked(Stripe[] held) {
+            this.held = held;
+            for (Stripe stripe : held) {
+                stripe.lock.writeLock().lock();
+            }
+        }
+
+        /**
+         * Checks whether an item is still the current item for its ID. Its ID must be one of the locked IDs.
+         * @param item An item read from the store earlier.
+         * @return True if the store still holds that same item, otherwise false.
+         */
+        boolean isCurrent(T item) {
+            int id = idOf.applyAsInt(item);
+            Stripe stripe = stripe(id);
+            Object current = stripe.changed.get(id);
+            if (current == null) {
+                current = deref(stripe.loaded.get(id));
+            }
+            return current == item;
+        }
+
+        /**
+         * Replaces the item with the same ID. Its ID must be one of the locked IDs.
+         * @param item The item to store.
+         */
+        void put(T item) {
+            int id = idOf.applyAsInt(item);
+            stripe(id).changed.put(id, item);
+            written.add(id);
+        }
+
+        /**
+         * Releases the locks and publishes the replaced items.
+         */
+        @Override
+        public void close() {
+            for (int i = held.length - 1; i >= 0; i--) {
+                held[i].lock.writeLock().unlock();
+            }
+            for (int id : written) {
+                markDirty(id);
+            }
+        }
+    }
+
+    /**
+     * One lock and the items it guards.
+     */
+    private static final class Stripe {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        /**
+         * Items added or replaced since startup, or REMOVED for deleted catalog rows.
+         */
+        final IntObjectMap<Object> changed = new IntObjectMap<>();
+        /**
+         * Catalog rows read so far, by ID, held weakly.
+         */
+        final IntObjectMap<RowReference> loaded = new IntObjectMap<>();
+    }
+
+    /**
+     * Weak reference to a catalog row's item that remembers the row's ID.
+     */
+    private static final class RowReference extends WeakReference<Object> {
+        final int id;
+
+        RowReference(int id, Object item, ReferenceQueue<Object> queue) {
+            super(item, queue);
+            this.id = id;
+        }
+    }
+}
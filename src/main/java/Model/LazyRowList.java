@@ -0,0 +1,597 @@
+package Model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Backing list of an inventory that can hold the rows of a ColumnarCatalog without creating their objects.
+ * <p>
+ * Each position holds either an item added while the application runs, or the number of a catalog row.
+ * A catalog row is turned into an object the first time it is read, and the same object is returned for as long
+ * as anything refers to it. Created rows are only held weakly, so rows nobody is using can be reclaimed and are
+ * read from the catalog again when next asked for; memory then follows the rows in use rather than every row ever read.
+ * Replacing or removing a catalog row retires it, so lookups through the catalog no longer find it.
+ * </p>
+ * <p>
+ * Positions are stored in blocks of up to a thousand or so, with the list position each block starts at, so adding,
+ * replacing or removing at any position only shifts the rest of one block and the block starts, never the whole list.
+ * Every position also carries a sequence number, and the numbers rise along the list, so an item's position is
+ * found by binary search on its number rather than by a scan. Items added at runtime are mapped to their numbers,
+ * and catalog items are found through their ID, so indexOf, contains and remove by item never create rows and take
+ * logarithmic time. Items are compared by identity, and an item should not be in the list twice.
+ * </p>
+ *
+ * @param <T> The type of item in the list, either Part or Product.
+ */
+final class LazyRowList<T> extends AbstractList<T> implements RandomAccess {
+    private static final int NOT_IN_CATALOG = -1;
+    /**
+     * Spacing between the sequence numbers of neighbouring positions, leaving room for items inserted between them.
+     */
+    private static final long GAP = 1L << 20;
+    /**
+     * Positions per block when the list is filled from a catalog. A block is split in two when it reaches twice this.
+     */
+    private static final int BLOCK = 512;
+    private final ToIntFunction<T> idOf;
+    /**
+     * The blocks holding the positions, in list order. None of them is empty.
+     */
+    private Block[] blocks = new Block[4];
+    private int blockCount;
+    /**
+     * The list position of the first entry of each block.
+     */
+    private int[] starts = new int[4];
+    /**
+     * The sequence numbers of the items added at runtime.
+     */
+    private final Map<Object, Long> addedSequences = new IdentityHashMap<>();
+    /**
+     * The sequence number of each catalog row, or null while row r still has the number r * GAP it was attached with.
+     */
+    private long[] rowSequences;
+    private int size;
+    private ColumnarCatalog.Table table;
+    private IntFunction<T> loader;
+    /**
+     * Weak references to the objects already created for catalog rows, indexed by row.
+     */
+    private RowReference[] loaded = new RowReference[0];
+    /**
+     * Receives the references of rows that have been reclaimed, so their slots can be cleared.
+     */
+    private final ReferenceQueue<Object> reclaimed = new ReferenceQueue<>();
+    /**
+     * Catalog rows that have been replaced or removed.
+     */
+    private final BitSet retired = new BitSet();
+    /**
+     * Guards the created rows and the retired rows. The list is only changed on the JavaFX application thread,
+     * but a name search on a background thread creates rows and checks whether they are retired.
+     */
+    private final Object rowLock = new Object();
+
+    /**
+     * Creates an empty list.
+     * @param idOf Function returning the ID of an item, used to find catalog items.
+     */
+    LazyRowList(ToIntFunction<T> idOf) {
+        this.idOf = idOf;
+    }
+
+    /**
+     * Fills the list with every row of a catalog table. The list must be empty.
+     * No change is reported, so this must happen before anything observes the list.
+     * @param catalogTable The table whose rows fill the list.
+     * @param rowLoader Creates the item stored in a row.
+     */
+    void attach(ColumnarCatalog.Table catalogTable, IntFunction<T> rowLoader) {
+        if (size > 0 || table != null) {
+            throw new IllegalStateException("Catalog rows can only be attached to an empty list");
+        }
+        table = catalogTable;
+        loader = rowLoader;
+        int count = catalogTable.rows;
+        blockCount = (count + BLOCK - 1) / BLOCK;
+        blocks = new Block[Math.max(4, blockCount)];
+        starts = new int[blocks.length];
+        for (int b = 0; b < blockCount; b++) {
+            int first = b * BLOCK;
+            Block block = new Block(Math.min(BLOCK, count - first));
+            for (int row = first; row < first + block.rows.length; row++) {
+                block.rows[block.size] = row;
+                block.sequences[block.size] = row * GAP;
+                block.size++;
+            }
+            blocks[b] = block;
+            starts[b] = first;
+        }
+        loaded = new RowReference[count];
+        rowSequences = null;
+        size = count;
+        modCount++;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        int b = locate(index);
+        Block block = blocks[b];
+        int offset = index - starts[b];
+        int row = block.rows[offset];
+        return row == NOT_IN_CATALOG ? item(block, offset) : load(row);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        Objects.checkIndex(index, size + 1);
+        long sequence = sequenceFor(index);
+        int b;
+        int offset;
+        if (blockCount == 0) {
+            insertBlock(0, new Block(16));
+            starts[0] = 0;
+            b = 0;
+            offset = 0;
+        } else if (index == size) {
+            b = blockCount - 1;
+            offset = blocks[b].size;
+        } else {
+            b = locate(index);
+            offset = index - starts[b];
+        }
+        if (blocks[b].size == 2 * BLOCK) {
+            if (offset == blocks[b].size) {
+                // Appending past a full block starts a new one, so a list that only grows keeps its blocks full.
+                insertBlock(b + 1, new Block(16));
+                starts[b + 1] = starts[b] + blocks[b].size;
+                b++;
+                offset = 0;
+            } else {
+                split(b);
+                if (offset > blocks[b].size) {
+                    offset -= blocks[b].size;
+                    b++;
+                }
+            }
+        }
+        blocks[b].insert(offset, element, NOT_IN_CATALOG, sequence);
+        addedSequences.put(element, sequence);
+        size++;
+        updateStarts(b + 1);
+        modCount++;
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T old = get(index);
+        int b = locate(index);
+        Block block = blocks[b];
+        int offset = index - starts[b];
+        addedSequences.remove(block.items[offset], block.sequences[offset]);
+        retire(block, offset);
+        block.items[offset] = element;
+        addedSequences.put(element, block.sequences[offset]);
+        return old;
+    }
+
+    @Override
+    public T remove(int index) {
+        T old = get(index);
+        int b = locate(index);
+        Block block = blocks[b];
+        int offset = index - starts[b];
+        addedSequences.remove(block.items[offset], block.sequences[offset]);
+        retire(block, offset);
+        block.delete(offset);
+        size--;
+        if (block.size == 0) {
+            System.arraycopy(blocks, b + 1, blocks, b, blockCount - b - 1);
+            System.arraycopy(starts, b + 1, starts, b, blockCount - b - 1);
+            blocks[--blockCount] = null;
+            updateStarts(b);
+        } else {
+            updateStarts(b + 1);
+        }
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        for (int b = 0; b < blockCount; b++) {
+            for (int offset = 0; offset < blocks[b].size; offset++) {
+                retire(blocks[b], offset);
+            }
+        }
+        blocks = new Block[4];
+        starts = new int[4];
+        blockCount = 0;
+        addedSequences.clear();
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int indexOf(Object o) {
+        Long sequence = addedSequences.get(o);
+        if (sequence == null && table != null && o != null) {
+            int row;
+            try {
+                row = table.findRow(idOf.applyAsInt((T) o));
+            } catch (ClassCastException e) {
+                return -1;
+            }
+            if (row >= 0 && !retired.get(row) && cached(row) == o) {
+                sequence = rowSequences == null ? row * GAP : rowSequences[row];
+            }
+        }
+        if (sequence == null || blockCount == 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks[mid].sequences[0] <= sequence) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        Block block = blocks[low];
+        int offset = Arrays.binarySearch(block.sequences, 0, block.size, sequence);
+        return offset >= 0 && existing(block, offset) == o ? starts[low] + offset : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        for (int b = blockCount - 1; b >= 0; b--) {
+            for (int offset = blocks[b].size - 1; offset >= 0; offset--) {
+                Object existing = existing(blocks[b], offset);
+                if (existing != null && existing.equals(o)) {
+                    return starts[b] + offset;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns the catalog table the list was filled from.
+     * @return The table, or null if no catalog is attached.
+     */
+    ColumnarCatalog.Table table() {
+        return table;
+    }
+
+    /**
+     * Returns the item for a catalog row, creating it if needed.
+     * @param row The catalog row.
+     * @return The item, or null if the row has been replaced or removed.
+     */
+    T itemForRow(int row) {
+        synchronized (rowLock) {
+            return retired.get(row) ? null : load(row);
+        }
+    }
+
+    /**
+     * Checks whether a catalog row is still in the list.
+     * @param row The catalog row.
+     * @return True if the row has not been replaced or removed.
+     */
+    boolean isLive(int row) {
+        return !retired.get(row);
+    }
+
+    /**
+     * Finds the live catalog item with an ID.
+     * @param id The ID to look up.
+     * @return The item, or null if no live catalog row has that ID.
+     */
+    T findInCatalog(int id) {
+        if (table == null) {
+            return null;
+        }
+        int row = table.findRow(id);
+        return row < 0 ? null : itemForRow(row);
+    }
+
+    /**
+     * Passes every live catalog item whose lower-cased name equals a folded name to an action.
+     * @param folded The lower-cased name.
+     * @param action Receives the matching items.
+     */
+    void forEachNamedInCatalog(String folded, Consumer<T> action) {
+        if (table != null) {
+            table.forEachRowNamed(folded, row -> accept(row, action));
+        }
+    }
+
+    /**
+     * Passes every live catalog item whose lower-cased name contains a folded term to an action.
+     * @param folded The lower-cased search term.
+     * @param action Receives the matching items.
+     */
+    void searchCatalog(String folded, Consumer<T> action) {
+        if (table != null) {
+            table.search(folded, row -> accept(row, action));
+        }
+    }
+
+    /**
+     * Copies the list for reading on another thread. Rows that have not been created yet are read from
+     * the catalog on every access and are not kept, so iterating the copy does not fill this list's cache.
+     * @return A read-only copy of the list.
+     */
+    List<T> snapshot() {
+        Object[] itemCopy = new Object[size];
+        int[] rowCopy = new int[size];
+        for (int b = 0; b < blockCount; b++) {
+            System.arraycopy(blocks[b].items, 0, itemCopy, starts[b], blocks[b].size);
+            System.arraycopy(blocks[b].rows, 0, rowCopy, starts[b], blocks[b].size);
+        }
+        RowReference[] cache = loaded;
+        IntFunction<T> rowLoader = loader;
+        return new AbstractList<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public T get(int index) {
+                int row = rowCopy[index];
+                if (row == NOT_IN_CATALOG) {
+                    return (T) itemCopy[index];
+                }
+                Object existing = deref(cache[row]);
+                return existing != null ? (T) existing : rowLoader.apply(row);
+            }
+
+            @Override
+            public int size() {
+                return rowCopy.length;
+            }
+        };
+    }
+
+    private void accept(int row, Consumer<T> action) {
+        T item = itemForRow(row);
+        if (item != null) {
+            action.accept(item);
+        }
+    }
+
+    /**
+     * Returns the block holding a list position.
+     */
+    private int locate(int index) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Works out the start of every block from one onward, after the blocks before it changed size.
+     */
+    private void updateStarts(int from) {
+        for (int b = Math.max(1, from); b < blockCount; b++) {
+            starts[b] = starts[b - 1] + blocks[b - 1].size;
+        }
+        if (from == 0 && blockCount > 0) {
+            starts[0] = 0;
+        }
+    }
+
+    private void insertBlock(int b, Block block) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blockCount * 2);
+            starts = Arrays.copyOf(starts, blockCount * 2);
+        }
+        System.arraycopy(blocks, b, blocks, b + 1, blockCount - b);
+        System.arraycopy(starts, b, starts, b + 1, blockCount - b);
+        blocks[b] = block;
+        blockCount++;
+    }
+
+    /**
+     * Moves the upper half of a full block into a new block after it.
+     */
+    private void split(int b) {
+        Block block = blocks[b];
+        int half = block.size / 2;
+        Block upper = new Block(2 * BLOCK);
+        upper.size = block.size - half;
+        System.arraycopy(block.items, half, upper.items, 0, upper.size);
+        System.arraycopy(block.rows, half, upper.rows, 0, upper.size);
+        System.arraycopy(block.sequences, half, upper.sequences, 0, upper.size);
+        Arrays.fill(block.items, half, block.size, null);
+        block.size = half;
+        insertBlock(b + 1, upper);
+        starts[b + 1] = starts[b] + half;
+    }
+
+    private long sequenceAt(int index) {
+        int b = locate(index);
+        return blocks[b].sequences[index - starts[b]];
+    }
+
+    /**
+     * Picks the sequence number for an item inserted at a position, between its neighbours' numbers.
+     * When there is no room left between them, every position is numbered again first.
+     */
+    private long sequenceFor(int index) {
+        if (size == 0) {
+            return 0;
+        }
+        if (index == size) {
+            return sequenceAt(size - 1) + GAP;
+        }
+        if (index == 0) {
+            return sequenceAt(0) - GAP;
+        }
+        if (sequenceAt(index) - sequenceAt(index - 1) < 2) {
+            renumber();
+        }
+        long before = sequenceAt(index - 1);
+        return before + (sequenceAt(index) - before) / 2;
+    }
+
+    /**
+     * Spaces the sequence numbers out evenly again, and updates the numbers kept for items and catalog rows.
+     */
+    private void renumber() {
+        if (rowSequences == null && table != null) {
+            rowSequences = new long[table.rows];
+        }
+        long sequence = 0;
+        for (int b = 0; b < blockCount; b++) {
+            Block block = blocks[b];
+            for (int offset = 0; offset < block.size; offset++, sequence += GAP) {
+                block.sequences[offset] = sequence;
+                if (block.rows[offset] == NOT_IN_CATALOG) {
+                    addedSequences.put(block.items[offset], sequence);
+                } else {
+                    rowSequences[block.rows[offset]] = sequence;
+                }
+            }
+        }
+    }
+
+    private void retire(Block block, int offset) {
+        int row = block.rows[offset];
+        if (row != NOT_IN_CATALOG) {
+            synchronized (rowLock) {
+                retired.set(row);
+                loaded[row] = null;
+            }
+            block.rows[offset] = NOT_IN_CATALOG;
+        }
+    }
+
+    private Object existing(Block block, int offset) {
+        int row = block.rows[offset];
+        return row == NOT_IN_CATALOG ? block.items[offset] : cached(row);
+    }
+
+    /**
+     * Returns the object already created for a catalog row, or null if there is none.
+     */
+    private Object cached(int row) {
+        synchronized (rowLock) {
+            return deref(loaded[row]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(Block block, int offset) {
+        return (T) block.items[offset];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T load(int row) {
+        synchronized (rowLock) {
+            Object item = deref(loaded[row]);
+            if (item == null) {
+                clearReclaimed();
+                item = loader.apply(row);
+                loaded[row] = new RowReference(row, item, reclaimed);
+            }
+            return (T) item;
+        }
+    }
+
+    private void clearReclaimed() {
+        RowReference reference;
+        while ((reference = (RowReference) reclaimed.poll()) != null) {
+            if (loaded[reference.row] == reference) {
+                loaded[reference.row] = null;
+            }
+        }
+    }
+
+    private static Object deref(RowReference reference) {
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * A run of neighbouring positions: their runtime items, catalog rows and sequence numbers.
+     */
+    private static final class Block {
+        Object[] items;
+        int[] rows;
+        long[] sequences;
+        int size;
+
+        Block(int capacity) {
+            items = new Object[capacity];
+            rows = new int[capacity];
+            sequences = new long[capacity];
+        }
+
+        void insert(int offset, Object item, int row, long sequence) {
+            if (size == items.length) {
+                int capacity = Math.min(2 * BLOCK, Math.max(16, size * 2));
+                items = Arrays.copyOf(items, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+                sequences = Arrays.copyOf(sequences, capacity);
+            }
+            System.arraycopy(items, offset, items, offset + 1, size - offset);
+            System.arraycopy(rows, offset, rows, offset + 1, size - offset);
+            System.arraycopy(sequences, offset, sequences, offset + 1, size - offset);
+            items[offset] = item;
+            rows[offset] = row;
+            sequences[offset] = sequence;
+            size++;
+        }
+
+        void delete(int offset) {
+            System.arraycopy(items, offset + 1, items, offset, size - offset - 1);
+            System.arraycopy(rows, offset + 1, rows, offset, size - offset - 1);
+            System.arraycopy(sequences, offset + 1, sequences, offset, size - offset - 1);
+            size--;
+            items[size] = null;
+        }
+    }
+
+    /**
+     * Weak reference to a catalog row's object that remembers the row.
+     */
+    private static final class RowReference extends WeakReference<Object> {
+        final int row;
+
+        RowReference(int row, Object item, ReferenceQueue<Object> queue) {
+            super(item, queue);
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package Model;
+
+/**
+ * Parses numbers from text without throwing or allocating.
+ * Invalid input is reported through a sentinel result instead of a NumberFormatException, so checking
+ * whether a search term or form field is numeric costs no more than reading its characters.
+ */
+public final class NumberParser {
+    /**
+     * Returned by parseInt when the text is not an int.
+     */
+    public static final long INVALID_INT = Long.MIN_VALUE;
+    /**
+     * Plain decimals with at most this many digits are converted exactly by a single division.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private NumberParser() {
+    }
+
+    /**
+     * Parses a decimal int, accepting the same text as Integer.parseInt: an optional sign followed by digits,
+     * with no surrounding whitespace.
+     * @param text The text to parse. May be null.
+     * @return The value, or INVALID_INT if the text is not an int.
+     */
+    public static long parseInt(CharSequence text) {
+        if (text == null) {
+            return INVALID_INT;
+        }
+        int length = text.length();
+        int pos = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            pos = 1;
+        }
+        if (pos == length) {
+            return INVALID_INT;
+        }
+        long value = 0;
+        for (; pos < length; pos++) {
+            int digit = text.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_INT;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                return INVALID_INT;
+            }
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? INVALID_INT : value;
+    }
+
+    /**
+     * Checks whether text is a decimal int.
+     * @param text The text to check. May be null.
+     * @return True if parseInt would succeed, otherwise false.
+     */
+    public static boolean isInt(CharSequence text) {
+        return parseInt(text) != INVALID_INT;
+    }
+
+    /**
+     * Parses a finite decimal number such as 12.50 or 1e3, ignoring surrounding whitespace.
+     * Plain decimals of up to fifteen digits are converted directly; longer numbers and exponents are
+     * checked here and then handed to Double.parseDouble, which can no longer fail on them.
+     * Unlike Double.parseDouble, NaN, Infinity and hexadecimal forms are rejected.
+     * @param text The text to parse. May be null.
+     * @return The value, or NaN if the text is not a finite number.
+     */
+    public static double parseDouble(CharSequence text) {
+        if (text == null) {
+            return Double.NaN;
+        }
+        int from = 0;
+        int to = text.length();
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        int pos = from;
+        boolean negative = false;
+        if (pos < to && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+            negative = text.charAt(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; pos < to; pos++) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                if (digits < MAX_EXACT_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (pos == to && digits <= MAX_EXACT_DIGITS) {
+            double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            return negative ? -value : value;
+        }
+        if (pos < to && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < to && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+                pos++;
+            }
+            int exponentStart = pos;
+            while (pos < to && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+                pos++;
+            }
+            if (pos == exponentStart) {
+                return Double.NaN;
+            }
+        }
+        if (pos != to) {
+            return Double.NaN;
+        }
+        double value = Double.parseDouble(text.subSequence(from, to).toString());
+        return Double.isFinite(value) ? value : Double.NaN;
+    }
+}
@@ -1,7 +1,5 @@
 package Model;
 
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
 /**
  * Represents an Outsourced Part, extending the general Part class.
  */
@@ -9,13 +7,12 @@ public class OutsourcedPart extends Part {
     /**
      * The name of the company that provides this outsourced part.
      */
-    private final StringProperty companyName;
+    private String companyName;
     /**
      * Constructor for OutsourcedPart.
      */
     public OutsourcedPart() {
         super();
-        companyName = new SimpleStringProperty();
     }
     /**
      * Gets the company name of the outsourced part.
@@ -23,10 +20,19 @@ public class OutsourcedPart extends Part {
      * @return Company name as a string.
      */
     public String getCompanyName() {
-        return this.companyName.get();
+        return this.companyName;
     }
 
     public void setCompanyName(String companyName) {
-        this.companyName.set(companyName);
+        this.companyName = companyName;
     }
-}
\ No newline at end of file
+    /**
+     * Copies this part's current values into an immutable record.
+     * @return A new outsourced PartRecord.
+     */
+    @Override
+    public PartRecord toRecord() {
+        return new PartRecord(getPartID(), getPartName(), getPartPrice(), getPartInStock(), getPartMin(), getPartMax(),
+                true, 0, companyName);
+    }
+}
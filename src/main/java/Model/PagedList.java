@@ -0,0 +1,356 @@
+package Model;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.TransformationList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Read-only, paged view of a list for display in a TableView.
+ * <p>
+ * Rows are fetched from the source a page at a time and only a few pages are kept, so a table over a huge
+ * inventory holds the rows around what is on screen and nothing else. When a page has to be fetched, the
+ * pages on either side of it are fetched shortly after, off the current layout pass, so scrolling a page
+ * further usually finds the rows ready. The source's own rows stay reclaimable once no page holds them.
+ * </p>
+ * <p>
+ * The view can present the source in a different order, given as the source index for each view position.
+ * While an order is set, rows added to the source appear at the end of the view, and removed and replaced rows
+ * are removed and replaced where they appear. Changes are forwarded as fine-grained list changes, so selection
+ * and scroll position survive them.
+ * </p>
+ *
+ * @param <T> The type of item in the list, either Part or Product.
+ */
+public class PagedList<T> extends TransformationList<T, T> {
+    private static final int PAGE_SIZE = 128;
+    /**
+     * Pages kept at once: the visible rows plus room for their neighbours.
+     */
+    private static final int MAX_PAGES = 8;
+    /**
+     * Runs of this many indexes are insertion sorted before they are merged.
+     */
+    private static final int INSERTION_RUN = 32;
+    private final Executor prefetchExecutor;
+    private final Map<Integer, Object[]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    /**
+     * The source index shown at each view position, or null to show the source in its own order.
+     */
+    private int[] order;
+    /**
+     * The view position of each source index, kept alongside order.
+     */
+    private int[] position;
+    private int prefetchPage = -1;
+
+    /**
+     * Creates a paged view that prefetches on the JavaFX application thread.
+     * @param source The list to page through.
+     */
+    public PagedList(ObservableList<? extends T> source) {
+        this(source, Platform::runLater);
+    }
+
+    /**
+     * Creates a paged view.
+     * @param source The list to page through.
+     * @param prefetchExecutor Runs prefetches later on the thread that owns the source.
+     */
+    public PagedList(ObservableList<? extends T> source, Executor prefetchExecutor) {
+        super(source);
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of range for a list of " + size());
+        }
+        int page = index / PAGE_SIZE;
+        Object[] rows = pages.get(page);
+        if (rows == null) {
+            rows = fetch(page);
+            schedulePrefetch(page);
+        }
+        return cast(rows[index - page * PAGE_SIZE]);
+    }
+
+    @Override
+    public int size() {
+        return getSource().size();
+    }
+
+    @Override
+    public int getSourceIndex(int index) {
+        return order == null ? index : order[index];
+    }
+
+    @Override
+    public int getViewIndex(int index) {
+        return order == null ? index : position[index];
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        int index = getSource().indexOf(o);
+        return index < 0 ? -1 : getViewIndex(index);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return getSource().contains(o);
+    }
+
+    /**
+     * Shows the source in a new order, or in its own order again.
+     * @param sourceOrder The source index for each view position, covering every source index once; or null.
+     * @throws IllegalArgumentException if the order does not match the source's size.
+     */
+    public void setOrder(int[] sourceOrder) {
+        if (sourceOrder != null && sourceOrder.length != size()) {
+            throw new IllegalArgumentException("Order covers " + sourceOrder.length + " rows but the list has " + size());
+        }
+        int[] oldOrder = order;
+        order = sourceOrder == null ? null : sourceOrder.clone();
+        position = order == null ? null : invert(order);
+        pages.clear();
+        if (oldOrder == null && order == null) {
+            return;
+        }
+        beginChange();
+        int[] moves = new int[size()];
+        for (int oldView = 0; oldView < moves.length; oldView++) {
+            int source = oldOrder == null ? oldView : oldOrder[oldView];
+            moves[oldView] = getViewIndex(source);
+        }
+        nextPermutation(0, moves.length, moves);
+        endChange();
+    }
+
+    /**
+     * Sorts the view by a comparator, or shows the source in its own order if the comparator is null.
+     * Every row is read to compare it, so callers with large sources should build the order elsewhere
+     * and pass it to setOrder.
+     * @param comparator The order to show rows in, or null.
+     */
+    public void sort(Comparator<? super T> comparator) {
+        setOrder(comparator == null ? null : orderOf(getSource(), comparator));
+    }
+
+    /**
+     * Computes the order that sorts a list, as the list index for each sorted position. The sort is stable.
+     * @param items The list to sort. Read once, by index.
+     * @param comparator The order to sort by.
+     * @param <E> The type of item.
+     * @return The list index at each sorted position.
+     */
+    public static <E> int[] orderOf(List<? extends E> items, Comparator<? super E> comparator) {
+        Object[] values = items.toArray();
+        @SuppressWarnings("unchecked")
+        Comparator<Object> byValue = (Comparator<Object>) comparator;
+        int[] order = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int start = 0; start < order.length; start += INSERTION_RUN) {
+            int end = Math.min(order.length, start + INSERTION_RUN);
+            for (int i = start + 1; i < end; i++) {
+                int index = order[i];
+                int j = i - 1;
+                while (j >= start && byValue.compare(values[order[j]], values[index]) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = index;
+            }
+        }
+        int[] merged = new int[order.length];
+        for (int width = INSERTION_RUN; width < order.length; width *= 2) {
+            for (int left = 0; left < order.length; left += 2 * width) {
+                int middle = Math.min(order.length, left + width);
+                int right = Math.min(order.length, left + 2 * width);
+                int a = left;
+                int b = middle;
+                for (int out = left; out < right; out++) {
+                    if (b >= right || (a < middle && byValue.compare(values[order[a]], values[order[b]]) <= 0)) {
+                        merged[out] = order[a++];
+                    } else {
+                        merged[out] = order[b++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+        return order;
+    }
+
+    @Override
+    protected void sourceChanged(ListChangeListener.Change<? extends T> change) {
+        pages.clear();
+        beginChange();
+        while (change.next()) {
+            if (order == null) {
+                forward(change);
+            } else {
+                forwardOrdered(change);
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * Forwards a change one to one while the view shows the source in its own order.
+     */
+    private void forward(ListChangeListener.Change<? extends T> change) {
+        if (change.wasPermutated()) {
+            int[] permutation = new int[change.getTo() - change.getFrom()];
+            for (int i = 0; i < permutation.length; i++) {
+                permutation[i] = change.getPermutation(change.getFrom() + i);
+            }
+            nextPermutation(change.getFrom(), change.getTo(), permutation);
+        } else if (change.wasUpdated()) {
+            for (int i = change.getFrom(); i < change.getTo(); i++) {
+                nextUpdate(i);
+            }
+        } else {
+            if (change.wasRemoved()) {
+                nextRemove(change.getFrom(), change.getRemoved());
+            }
+            if (change.wasAdded()) {
+                nextAdd(change.getFrom(), change.getTo());
+            }
+        }
+    }
+
+    /**
+     * Applies a source change to the order and forwards it at the view positions it affects.
+     * Replaced rows keep their position, removed rows close up, and added rows go to the end.
+     */
+    private void forwardOrdered(ListChangeListener.Change<? extends T> change) {
+        int from = change.getFrom();
+        if (change.wasPermutated()) {
+            for (int view = 0; view < order.length; view++) {
+                int source = order[view];
+                if (source >= from && source < change.getTo()) {
+                    order[view] = change.getPermutation(source);
+                }
+            }
+            position = invert(order);
+            return;
+        }
+        if (change.wasUpdated()) {
+            for (int i = from; i < change.getTo(); i++) {
+                nextUpdate(position[i]);
+            }
+            return;
+        }
+        List<? extends T> removed = change.getRemoved();
+        int added = change.getAddedSize();
+        int replaced = Math.min(removed.size(), added);
+        for (int i = 0; i < replaced; i++) {
+            nextSet(position[from + i], removed.get(i));
+        }
+        int removedOnly = removed.size() - replaced;
+        int addedOnly = added - replaced;
+        if (removedOnly == 0 && addedOnly == 0) {
+            return;
+        }
+        int[] removedViews = new int[removedOnly];
+        for (int i = 0; i < removedOnly; i++) {
+            removedViews[i] = position[from + replaced + i];
+        }
+        Arrays.sort(removedViews);
+        for (int i = removedOnly - 1; i >= 0; i--) {
+            int source = order[removedViews[i]] - from - replaced;
+            nextRemove(removedViews[i], removed.get(replaced + source));
+        }
+        int firstShifted = from + replaced + removedOnly;
+        int shift = addedOnly - removedOnly;
+        int kept = order.length - removedOnly;
+        int[] next = new int[kept + addedOnly];
+        int view = 0;
+        for (int source : order) {
+            if (source < from + replaced || source >= firstShifted) {
+                next[view++] = source >= firstShifted ? source + shift : source;
+            }
+        }
+        for (int i = 0; i < addedOnly; i++) {
+            next[view++] = from + replaced + i;
+        }
+        order = next;
+        position = invert(order);
+        if (addedOnly > 0) {
+            nextAdd(kept, kept + addedOnly);
+        }
+    }
+
+    private Object[] fetch(int page) {
+        ObservableList<? extends T> source = getSource();
+        int start = page * PAGE_SIZE;
+        int end = Math.min(source.size(), start + PAGE_SIZE);
+        Object[] rows = new Object[end - start];
+        for (int view = start; view < end; view++) {
+            rows[view - start] = source.get(getSourceIndex(view));
+        }
+        pages.put(page, rows);
+        return rows;
+    }
+
+    /**
+     * Fetches the pages next to a page later, unless a prefetch around it is already pending.
+     */
+    private void schedulePrefetch(int page) {
+        if (prefetchPage == page) {
+            return;
+        }
+        prefetchPage = page;
+        prefetchExecutor.execute(() -> {
+            if (prefetchPage != page) {
+                return;
+            }
+            prefetchPage = -1;
+            int lastPage = (size() - 1) / PAGE_SIZE;
+            List<Integer> neighbours = new ArrayList<>(2);
+            if (page > 0) {
+                neighbours.add(page - 1);
+            }
+            if (page < lastPage) {
+                neighbours.add(page + 1);
+            }
+            for (int neighbour : neighbours) {
+                if (!pages.containsKey(neighbour)) {
+                    fetch(neighbour);
+                }
+            }
+        });
+    }
+
+    private static int[] invert(int[] order) {
+        int[] inverse = new int[order.length];
+        for (int view = 0; view < order.length; view++) {
+            inverse[order[view]] = view;
+        }
+        return inverse;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T cast(Object item) {
+        return (T) item;
+    }
+}
@@ -5,104 +5,141 @@ import javafx.beans.property.StringProperty;
 /**
  * Abstract class representing a generic Part.
  * This class provides the base functionality for both InHouse and Outsourced parts.
+ * <p>
+ * Field values are held as plain primitives. The JavaFX property for a field is only created when it is
+ * first asked for, typically by a TableView cell value factory, and from then on holds the value.
+ * Parts that are never displayed therefore never allocate properties.
+ * </p>
  */
 public abstract class Part {
 
 
-    private final IntegerProperty partID, inStock, min, max;
-    private final StringProperty name;
-    private final DoubleProperty price;
+    private int partID, inStock, min, max;
+    private String name;
+    private double price;
+    private IntegerProperty partIDProperty, inStockProperty;
+    private StringProperty nameProperty;
+    private DoubleProperty priceProperty;
 
 
     /**
-     * Default constructor to initialize all properties.
+     * Default constructor. No properties are created until one is requested.
      */
     public Part() {
-        partID = new SimpleIntegerProperty();
-        name = new SimpleStringProperty();
-        price = new SimpleDoubleProperty();
-        inStock = new SimpleIntegerProperty();
-        min = new SimpleIntegerProperty();
-        max = new SimpleIntegerProperty();
     }
     /**
-     * Default constructor to initialize all properties.
+     * Returns the IntegerProperty object for the part ID, creating it on first use.
+     * @return IntegerProperty for part ID.
      */
     public IntegerProperty partIdProp() {
-        return partID;
+        if (partIDProperty == null) {
+            partIDProperty = new SimpleIntegerProperty(this, "partID", partID);
+        }
+        return partIDProperty;
     }
     /**
-     * Returns the StringProperty object for the part name.
+     * Returns the StringProperty object for the part name, creating it on first use.
      * @return StringProperty for part name.
      */
     public StringProperty partNameProp() {
-        return name;
+        if (nameProperty == null) {
+            nameProperty = new SimpleStringProperty(this, "name", name);
+        }
+        return nameProperty;
     }
     /**
-     * Returns the DoubleProperty object for the part price.
+     * Returns the DoubleProperty object for the part price, creating it on first use.
      * @return DoubleProperty for part price.
      */
     public DoubleProperty partPriceProp() {
-        return price;
+        if (priceProperty == null) {
+            priceProperty = new SimpleDoubleProperty(this, "price", price);
+        }
+        return priceProperty;
     }
     /**
-     * Returns the IntegerProperty object for the part's inventory level.
+     * Returns the IntegerProperty object for the part's inventory level, creating it on first use.
      * @return IntegerProperty for inventory level.
      */
     public IntegerProperty partInvProp() {
-        return inStock;
+        if (inStockProperty == null) {
+            inStockProperty = new SimpleIntegerProperty(this, "inStock", inStock);
+        }
+        return inStockProperty;
     }
 
 
     //Getters & Setters
     public int getPartID() {
-        return this.partID.get();
+        return partIDProperty == null ? partID : partIDProperty.get();
     }
 
     public String getPartName() {
-        return this.name.get();
+        return nameProperty == null ? name : nameProperty.get();
     }
 
     public double getPartPrice() {
-        return this.price.get();
+        return priceProperty == null ? price : priceProperty.get();
     }
 
     public int getPartInStock() {
-        return this.inStock.get();
+        return inStockProperty == null ? inStock : inStockProperty.get();
     }
 
     public int getPartMin() {
-        return this.min.get();
+        return this.min;
     }
 
     public int getPartMax() {
-        return this.max.get();
+        return this.max;
     }
 
     public void setPartID(int partID) {
-        this.partID.set(partID);
+        if (partIDProperty == null) {
+            this.partID = partID;
+        } else {
+            partIDProperty.set(partID);
+        }
     }
 
     public void setPartName(String name) {
-        this.name.set(name);
+        if (nameProperty == null) {
+            this.name = name;
+        } else {
+            nameProperty.set(name);
+        }
     }
 
     public void setPartPrice(double price) {
-        this.price.set(price);
+        if (priceProperty == null) {
+            this.price = price;
+        } else {
+            priceProperty.set(price);
+        }
     }
 
     public void setPartInStock(int inStock) {
-        this.inStock.set(inStock);
+        if (inStockProperty == null) {
+            this.inStock = inStock;
+        } else {
+            inStockProperty.set(inStock);
+        }
     }
 
     public void setPartMin(int min) {
-        this.min.set(min);
+        this.min = min;
     }
 
     public void setPartMax(int max) {
-        this.max.set(max);
+        this.max = max;
     }
 
+    /**
+     * Copies this part's current values into an immutable record.
+     * @return A new PartRecord.
+     */
+    public abstract PartRecord toRecord();
+
     /**
      * Validates the part details.
      *
@@ -116,7 +153,43 @@ public abstract class Part {
      */
     public static String isPartValid(String name, int min, int max, int inv, double price,boolean isOutsourced, String partDyn, String errorMessage) {
         StringBuilder errorBuilder = new StringBuilder(errorMessage);
+        appendStockErrors(errorBuilder, name, min, max, inv, price);
+        if (isOutsourced) {
+            if (partDyn == null || partDyn.trim().isEmpty()) {
+                errorBuilder.append("Company Name is blank. ");
+            }
+        } else {
+            long machineID = NumberParser.parseInt(partDyn);
+            if (machineID == NumberParser.INVALID_INT) {
+                errorBuilder.append("Machine ID is invalid. ");
+            } else {
+                appendMachineIDErrors(errorBuilder, (int) machineID);
+            }
+        }
+        return errorBuilder.toString();
+    }
 
+    /**
+     * Validates the details of an in-house part whose machine ID has already been parsed.
+     * Applies the same rules as the text form, without parsing the machine ID again.
+     *
+     * @param name The name of the part.
+     * @param min The minimum allowable quantity for the part.
+     * @param max The maximum allowable quantity for the part.
+     * @param inv The current inventory level.
+     * @param price The price of the part.
+     * @param machineID The machine ID of the part.
+     * @param errorMessage The existing error message, if any.
+     * @return Updated error message based on validation.
+     */
+    public static String isPartValid(String name, int min, int max, int inv, double price, int machineID, String errorMessage) {
+        StringBuilder errorBuilder = new StringBuilder(errorMessage);
+        appendStockErrors(errorBuilder, name, min, max, inv, price);
+        appendMachineIDErrors(errorBuilder, machineID);
+        return errorBuilder.toString();
+    }
+
+    private static void appendStockErrors(StringBuilder errorBuilder, String name, int min, int max, int inv, double price) {
         if (name == null || name.trim().isEmpty()) {
             errorBuilder.append("The name field is blank. ");
         }
@@ -132,21 +205,12 @@ public abstract class Part {
         if (inv < min || inv > max) {
             errorBuilder.append("The inventory must be between the Min and Max values. ");
         }
-        if (isOutsourced) {
-            if (partDyn == null || partDyn.trim().isEmpty()) {
-                errorBuilder.append("Company Name is blank. ");
-            }
-        } else {
-            try {
-                int machineID = Integer.parseInt(partDyn);
-                if (machineID <= 0) {
-                    errorBuilder.append("Machine ID must be greater than 0. ");
-                }
-            } catch (NumberFormatException e) {
-                errorBuilder.append("Machine ID is invalid. ");
-            }
+    }
+
+    private static void appendMachineIDErrors(StringBuilder errorBuilder, int machineID) {
+        if (machineID <= 0) {
+            errorBuilder.append("Machine ID must be greater than 0. ");
         }
-        return errorBuilder.toString();
     }
 
     }
@@ -0,0 +1,51 @@
+package Model;
+
+/**
+ * Immutable value copy of a part, free of JavaFX properties.
+ * Records are what bulk code should pass around; a Part is only needed once the value is put in the inventory or shown.
+ *
+ * @param partID The ID of the part.
+ * @param name The name of the part.
+ * @param price The price of the part.
+ * @param inStock The current inventory level.
+ * @param min The minimum inventory level.
+ * @param max The maximum inventory level.
+ * @param outsourced True for an outsourced part, false for an in-house part.
+ * @param machineID The machine ID of an in-house part. Ignored for outsourced parts.
+ * @param companyName The company name of an outsourced part. Ignored for in-house parts.
+ */
+public record PartRecord(int partID, String name, double price, int inStock, int min, int max,
+                         boolean outsourced, int machineID, String companyName) {
+    /**
+     * Creates a Part holding this record's values.
+     * @return A new InHousePart or OutsourcedPart.
+     */
+    public Part toPart() {
+        Part part;
+        if (outsourced) {
+            OutsourcedPart outsourcedPart = new OutsourcedPart();
+            outsourcedPart.setCompanyName(companyName);
+            part = outsourcedPart;
+        } else {
+            InHousePart inHousePart = new InHousePart();
+            inHousePart.setMachineID(machineID);
+            part = inHousePart;
+        }
+        part.setPartID(partID);
+        part.setPartName(name);
+        part.setPartPrice(price);
+        part.setPartInStock(inStock);
+        part.setPartMin(min);
+        part.setPartMax(max);
+        return part;
+    }
+
+    /**
+     * Returns a copy of this record with a different inventory level.
+     * @param inStock The new inventory level.
+     * @return A new PartRecord.
+     */
+    public PartRecord withInStock(int inStock) {
+        return new PartRecord(partID, name, price, inStock, min, max, outsourced, machineID, companyName);
+    }
+}
@@ -0,0 +1,180 @@
+package Model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reverse index from part ID to the products whose parts list contains that part.
+ * The index listens to the product inventory: adding a product indexes its bill of materials,
+ * removing a product drops it again, and replacing a product re-indexes it.
+ * Products already in the inventory are re-indexed when their parts are set.
+ * Products still held as rows of an opened ColumnarCatalog are indexed from the catalog's bill of materials
+ * columns, so no Product object is created for them until one is asked for.
+ */
+public class PartUsageIndex {
+    /**
+     * The part IDs each product was indexed under, keyed by product ID.
+     * Kept separately from the product so unindexing does not depend on the product's current parts list.
+     */
+    private final IntObjectMap<Usage> byProduct = new IntObjectMap<>();
+    /**
+     * Products that use a part, keyed by part ID and then by product ID.
+     */
+    private final IntObjectMap<IntObjectMap<Product>> byPart = new IntObjectMap<>();
+    /**
+     * Catalog product rows that use each part, as sorted (part ID, row) pairs packed into longs.
+     */
+    private long[] catalogUsage = new long[0];
+    /**
+     * Catalog rows backing the product list. Null when no catalog is open.
+     */
+    private LazyRowList<Product> catalog;
+
+    /**
+     * Builds the index over the product inventory and starts listening to it for changes.
+     * @param products The product inventory.
+     */
+    public PartUsageIndex(ObservableList<Product> products) {
+        for (Product product : products) {
+            add(product);
+        }
+        products.addListener((ListChangeListener<Product>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated() || change.wasUpdated()) {
+                    continue;
+                }
+                for (Product removed : change.getRemoved()) {
+                    remove(removed);
+                }
+                for (Product added : change.getAddedSubList()) {
+                    add(added);
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks whether any product uses a part.
+     * @param partID The ID of the part.
+     * @return True if at least one product contains the part, otherwise false.
+     */
+    public boolean isUsed(int partID) {
+        if (byPart.containsKey(partID)) {
+            return true;
+        }
+        for (int i = firstCatalogUse(partID); i < catalogUsage.length && (int) (catalogUsage[i] >> 32) == partID; i++) {
+            if (isCatalogUser((int) catalogUsage[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the products that use a part.
+     * @param partID The ID of the part.
+     * @return A new list of the products containing the part. Empty if the part is unused.
+     */
+    public List<Product> productsUsing(int partID) {
+        IntObjectMap<Product> users = byPart.get(partID);
+        List<Product> products = new ArrayList<>(users == null ? 0 : users.size());
+        if (users != null) {
+            users.forEachValue(products::add);
+        }
+        for (int i = firstCatalogUse(partID); i < catalogUsage.length && (int) (catalogUsage[i] >> 32) == partID; i++) {
+            int row = (int) catalogUsage[i];
+            if (isCatalogUser(row)) {
+                products.add(catalog.itemForRow(row));
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Indexes the products held as catalog rows, reading only their part IDs from the catalog.
+     * @param productCatalog The catalog the rows come from.
+     * @param rows The product list's backing rows, already filled from the catalog.
+     */
+    void setCatalog(ColumnarCatalog productCatalog, LazyRowList<Product> rows) {
+        long[] pairs = new long[Math.max(16, productCatalog.productCount())];
+        int count = 0;
+        for (int row = 0; row < productCatalog.productCount(); row++) {
+            for (int partID : productCatalog.productPartIDs(row)) {
+                if (partID < 0) {
+                    continue;
+                }
+                if (count == pairs.length) {
+                    pairs = Arrays.copyOf(pairs, count + (count >> 1));
+                }
+                pairs[count++] = ((long) partID << 32) | row;
+            }
+        }
+        Arrays.sort(pairs, 0, count);
+        catalogUsage = Arrays.copyOf(pairs, count);
+        catalog = rows;
+    }
+
+    private int firstCatalogUse(int partID) {
+        int i = Arrays.binarySearch(catalogUsage, (long) partID << 32);
+        return i < 0 ? -i - 1 : i;
+    }
+
+    /**
+     * A catalog row still counts as a user of its parts until it is removed or replaced, or until its
+     * product's parts are changed and the product is indexed from memory instead.
+     */
+    private boolean isCatalogUser(int row) {
+        return catalog.isLive(row) && !byProduct.containsKey(catalog.table().id(row));
+    }
+
+    /**
+     * Re-indexes a product after its bill of materials changed without the product itself being replaced.
+     * @param product The product whose parts changed.
+     */
+    public void reindex(Product product) {
+        remove(product);
+        add(product);
+    }
+
+    private void add(Product product) {
+        int productID = product.getProductID();
+        int[] partIDs = product.getBillOfMaterials().partIDs();
+        byProduct.put(productID, new Usage(product, partIDs));
+        for (int partID : partIDs) {
+            IntObjectMap<Product> users = byPart.get(partID);
+            if (users == null) {
+                users = new IntObjectMap<>(4);
+                byPart.put(partID, users);
+            }
+            users.put(productID, product);
+        }
+    }
+
+    private void remove(Product product) {
+        int productID = product.getProductID();
+        Usage usage = byProduct.get(productID);
+        if (usage == null || usage.product() != product) {
+            return;
+        }
+        byProduct.remove(productID);
+        for (int partID : usage.partIDs()) {
+            IntObjectMap<Product> users = byPart.get(partID);
+            if (users != null) {
+                users.remove(productID);
+                if (users.isEmpty()) {
+                    byPart.remove(partID);
+                }
+            }
+        }
+    }
+
+    /**
+     * The part IDs a product was indexed under.
+     */
+    private record Usage(Product product, int[] partIDs) {
+    }
+}
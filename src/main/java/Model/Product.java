@@ -2,117 +2,166 @@ package Model;
 
 
 import javafx.beans.property.*;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 /**
  * Represents a Product with its associated details and parts.
+ * Field values are held as plain primitives; each JavaFX property is only created when it is first
+ * requested, typically by a TableView cell value factory, and from then on holds the value.
  */
 public class Product {
 
-    private static ObservableList<Model.Part> parts = FXCollections.observableArrayList();
-    private final IntegerProperty productID, inStock, min, max;
-    private final StringProperty name;
-    private final DoubleProperty price;
+    /**
+     * The parts this product is built from, with quantities.
+     */
+    private final BillOfMaterials parts = new BillOfMaterials(() -> Inventory.productPartsChanged(this));
+    private int productID, inStock, min, max;
+    private String name;
+    private double price;
+    private IntegerProperty productIDProperty, inStockProperty;
+    private StringProperty nameProperty;
+    private DoubleProperty priceProperty;
 
     /**
-     * Default constructor initializing properties for the Product class.
+     * Default constructor. No properties are created until one is requested.
      */
     public Product() {
-        productID = new SimpleIntegerProperty();
-        name = new SimpleStringProperty();
-        price = new SimpleDoubleProperty();
-        inStock = new SimpleIntegerProperty();
-        min = new SimpleIntegerProperty();
-        max = new SimpleIntegerProperty();
     }
     /**
-     * Gets the product ID property.
+     * Gets the product ID property, creating it on first use.
      * @return The IntegerProperty for product ID.
      */
     public IntegerProperty productIDProperty() {
-        return productID;
+        if (productIDProperty == null) {
+            productIDProperty = new SimpleIntegerProperty(this, "productID", productID);
+        }
+        return productIDProperty;
     }
     /**
-     * Gets the product name property.
+     * Gets the product name property, creating it on first use.
      * @return The StringProperty for product name.
      */
     public StringProperty productNameProperty() {
-        return name;
+        if (nameProperty == null) {
+            nameProperty = new SimpleStringProperty(this, "name", name);
+        }
+        return nameProperty;
     }
     /**
-     * Gets the product price property.
+     * Gets the product price property, creating it on first use.
      * @return The DoubleProperty for product price.
      */
     public DoubleProperty productPriceProperty() {
-        return price;
+        if (priceProperty == null) {
+            priceProperty = new SimpleDoubleProperty(this, "price", price);
+        }
+        return priceProperty;
     }
     /**
-     * Gets the product inventory property.
+     * Gets the product inventory property, creating it on first use.
      * @return The IntegerProperty for product inventory.
      */
     public IntegerProperty productInvProperty() {
-        return inStock;
+        if (inStockProperty == null) {
+            inStockProperty = new SimpleIntegerProperty(this, "inStock", inStock);
+        }
+        return inStockProperty;
     }
     //Getters & Setters
     public int getProductID() {
-        return this.productID.get();
+        return productIDProperty == null ? productID : productIDProperty.get();
     }
 
     public String getProductName() {
-        return this.name.get();
+        return nameProperty == null ? name : nameProperty.get();
     }
 
     public double getProductPrice() {
-        return this.price.get();
+        return priceProperty == null ? price : priceProperty.get();
     }
 
     public int getProductInStock() {
-        return this.inStock.get();
+        return inStockProperty == null ? inStock : inStockProperty.get();
     }
 
     public int getProductMin() {
-        return this.min.get();
+        return this.min;
     }
 
     public int getProductMax() {
-        return this.max.get();
+        return this.max;
     }
 
-    public ObservableList getProductParts() {
+    /**
+     * Builds a list of the parts on this product's bill of materials, one entry per unit.
+     * The list is a copy; use setProductParts to save changes made to it.
+     * @return A new ObservableList of parts.
+     */
+    public ObservableList<Part> getProductParts() {
+        return parts.asObservableList();
+    }
+    /**
+     * Gets the bill of materials of this product.
+     * @return The product's bill of materials.
+     */
+    public BillOfMaterials getBillOfMaterials() {
         return parts;
     }
 
 
     //// Setters
     public void setProductID(int productID) {
-        this.productID.set(productID);
+        if (productIDProperty == null) {
+            this.productID = productID;
+        } else {
+            productIDProperty.set(productID);
+        }
     }
 
     public void setProductName(String name) {
-        this.name.set(name);
+        if (nameProperty == null) {
+            this.name = name;
+        } else {
+            nameProperty.set(name);
+        }
     }
 
     public void setProductPrice(double price) {
-        this.price.set(price);
+        if (priceProperty == null) {
+            this.price = price;
+        } else {
+            priceProperty.set(price);
+        }
     }
 
     public void setProductInStock(int inStock) {
-        this.inStock.set(inStock);
+        if (inStockProperty == null) {
+            this.inStock = inStock;
+        } else {
+            inStockProperty.set(inStock);
+        }
     }
 
     public void setProductMin(int min) {
-        this.min.set(min);
+        this.min = min;
     }
 
     public void setProductMax(int max) {
-        this.max.set(max);
+        this.max = max;
     }
     /**
-     * Sets the list of parts for the product.
+     * Sets the list of parts for the product. A part listed more than once is stored as one line with a quantity.
      * @param parts An ObservableList of parts.
      */
-    public void setProductParts(ObservableList<Model.Part> parts) {
-        Product.parts = parts;
+    public void setProductParts(ObservableList<Part> parts) {
+        this.parts.setParts(parts);
+    }
+    /**
+     * Copies this product's current values and bill of materials into an immutable record.
+     * @return A new ProductRecord.
+     */
+    public ProductRecord toRecord() {
+        return new ProductRecord(getProductID(), getProductName(), getProductPrice(), getProductInStock(),
+                getProductMin(), getProductMax(), parts.storedIDs(), parts.storedQuantities());
     }
 
 
@@ -132,7 +181,23 @@ public class Product {
         for (Part part : parts) {
             sumOfParts += part.getPartPrice();
         }
+        return isProductValid(name, min, max, inv, price, parts.size(), sumOfParts, errorMessage);
+    }
 
+    /**
+     * Validates the product from a summary of its parts, for callers that hold a bill of materials rather than a list.
+     * Applies the same rules as the list form.
+     * @param name Name of the product.
+     * @param min Minimum inventory level for the product.
+     * @param max Maximum inventory level for the product.
+     * @param inv Current inventory level for the product.
+     * @param price Price of the product.
+     * @param partCount Number of part units in the product, counting each unit of quantity.
+     * @param sumOfParts Total price of those part units.
+     * @param errorMessage The initial error message, usually empty.
+     * @return An error message string. If empty, the product is valid.
+     */
+    public static String isProductValid(String name, int min, int max, int inv, double price, int partCount, double sumOfParts, String errorMessage) {
         StringBuilder errorMessageBuilder = new StringBuilder(errorMessage);
 
         if (name == null || name.trim().isEmpty()) {
@@ -150,7 +215,7 @@ public class Product {
         if (inv < min || inv > max) {
             errorMessageBuilder.append("The inventory must be between the Min and Max values. ");
         }
-        if (parts.size() < 2) {
+        if (partCount < 2) {
             errorMessageBuilder.append("The product must contain at least 2 parts. ");
         }
         if (sumOfParts > price) {
@@ -0,0 +1,115 @@
+package Model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable value copy of a product and its bill of materials, free of JavaFX properties.
+ * The bill is held as parallel arrays of IDs, ascending, and quantities. Sub-assemblies are held as their
+ * product IDs negated, so they come before the parts. The arrays are copied on the way in and out,
+ * so a record cannot be changed after it is created.
+ *
+ * @param productID The ID of the product.
+ * @param name The name of the product.
+ * @param price The price of the product.
+ * @param inStock The current inventory level.
+ * @param min The minimum inventory level.
+ * @param max The maximum inventory level.
+ * @param partIDs The IDs on the bill of materials, in ascending order, with sub-assemblies negated.
+ * @param quantities The quantity of each part, in the same order as partIDs.
+ */
+public record ProductRecord(int productID, String name, double price, int inStock, int min, int max,
+                            int[] partIDs, int[] quantities) {
+    /**
+     * Copies the bill of materials arrays.
+     * @throws IllegalArgumentException if the arrays differ in length.
+     */
+    public ProductRecord {
+        if (partIDs.length != quantities.length) {
+            throw new IllegalArgumentException("Each part ID needs a quantity");
+        }
+        partIDs = partIDs.clone();
+        quantities = quantities.clone();
+    }
+
+    /**
+     * Returns a copy of the part IDs on the bill of materials.
+     * @return The part IDs, in ascending order.
+     */
+    @Override
+    public int[] partIDs() {
+        return partIDs.clone();
+    }
+
+    /**
+     * Returns a copy of the quantities on the bill of materials.
+     * @return The quantities, in the same order as partIDs.
+     */
+    @Override
+    public int[] quantities() {
+        return quantities.clone();
+    }
+
+    /**
+     * Returns the number of lines on the bill of materials.
+     * @return The line count.
+     */
+    public int lines() {
+        return partIDs.length;
+    }
+
+    /**
+     * Returns the part ID on a line, without copying the bill.
+     * @param line The line number, from 0 to lines() - 1.
+     * @return The part ID.
+     */
+    public int partID(int line) {
+        return partIDs[line];
+    }
+
+    /**
+     * Returns the quantity on a line, without copying the bill.
+     * @param line The line number, from 0 to lines() - 1.
+     * @return The quantity.
+     */
+    public int quantity(int line) {
+        return quantities[line];
+    }
+
+    /**
+     * Returns a copy of this record with a different inventory level.
+     * @param inStock The new inventory level.
+     * @return A new ProductRecord.
+     */
+    public ProductRecord withInStock(int inStock) {
+        return new ProductRecord(productID, name, price, inStock, min, max, partIDs, quantities);
+    }
+
+    /**
+     * Creates a Product holding this record's values and bill of materials.
+     * @return A new Product.
+     */
+    public Product toProduct() {
+        Product product = new Product();
+        product.setProductID(productID);
+        product.setProductName(name);
+        product.setProductPrice(price);
+        product.setProductInStock(inStock);
+        product.setProductMin(min);
+        product.setProductMax(max);
+        product.getBillOfMaterials().load(partIDs.clone(), quantities.clone());
+        return product;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ProductRecord other && productID == other.productID && Double.compare(price, other.price) == 0
+                && inStock == other.inStock && min == other.min && max == other.max && Objects.equals(name, other.name)
+                && Arrays.equals(partIDs, other.partIDs) && Arrays.equals(quantities, other.quantities);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(productID, name, price, inStock, min, max) + 31 * Arrays.hashCode(partIDs) + Arrays.hashCode(quantities);
+    }
+}
@@ -0,0 +1,241 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Inventory items ordered by how far their stock is above their minimum, for low-stock alerts and reordering.
+ * <p>
+ * Every item sits in a binary min-heap keyed by stock minus min, with a map from ID to heap slot, so a stock
+ * change moves a single item in O(log n). Items at or near their minimum are at the top of the heap: finding the
+ * k items within a margin of their minimum only visits those items and their children, never the rest of the
+ * inventory, and the number at or below their minimum is kept as a running count.
+ * </p>
+ * <p>
+ * The queue holds IDs and stock levels only; items are looked up when a query returns them, so catalog rows are
+ * not read until they are low. Must only be used on the JavaFX application thread, like the inventory lists.
+ * </p>
+ *
+ * @param <T> The type of item, either Part or Product.
+ */
+public class ReorderQueue<T> {
+    private final IntFunction<T> lookup;
+    private final IntObjectMap<Node> nodes = new IntObjectMap<>();
+    private Node[] heap = new Node[16];
+    private int size;
+    /**
+     * Items whose stock is at or below their minimum.
+     */
+    private int atOrBelowMin;
+
+    /**
+     * Creates an empty queue.
+     * @param lookup Finds an item by ID, for returning query results.
+     */
+    public ReorderQueue(IntFunction<T> lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Returns how many items are at or below their minimum stock, in constant time.
+     * @return The number of items to reorder.
+     */
+    public int countAtOrBelowMin() {
+        return atOrBelowMin;
+    }
+
+    /**
+     * Lists the items at or below their minimum stock, most urgent first.
+     * @return The items to reorder. Empty if none.
+     */
+    public List<T> atOrBelowMin() {
+        return lowStock(0);
+    }
+
+    /**
+     * Lists the items whose stock is at most a margin above their minimum, most urgent first.
+     * The k items are found in O(k) and then sorted by how far they are above or below their minimum.
+     * @param margin How far above the minimum an item may be to be listed. 0 lists the items at or below it.
+     * @return The low items. Empty if none.
+     */
+    public List<T> lowStock(int margin) {
+        List<Node> low = new ArrayList<>();
+        int[] pending = new int[16];
+        int top = 0;
+        if (size > 0) {
+            pending[top++] = 0;
+        }
+        while (top > 0) {
+            int index = pending[--top];
+            Node node = heap[index];
+            if (node.distance > margin) {
+                continue;
+            }
+            low.add(node);
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (top == pending.length) {
+                    pending = Arrays.copyOf(pending, top * 2);
+                }
+                pending[top++] = child;
+            }
+        }
+        low.sort(Comparator.comparingInt((Node node) -> node.distance).thenComparingInt(node -> node.id));
+        List<T> items = new ArrayList<>(low.size());
+        for (Node node : low) {
+            T item = lookup.apply(node.id);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Records an item's current stock and minimum, adding it if it is new.
+     * @param id The item's ID.
+     * @param stock The item's stock.
+     * @param min The item's minimum stock.
+     */
+    void update(int id, int stock, int min) {
+        int distance = stock - min;
+        Node node = nodes.get(id);
+        if (node == null) {
+            node = new Node(id, distance);
+            nodes.put(id, node);
+            append(node);
+            if (distance <= 0) {
+                atOrBelowMin++;
+            }
+            siftUp(node.index);
+            return;
+        }
+        int old = node.distance;
+        node.distance = distance;
+        if (old <= 0 && distance > 0) {
+            atOrBelowMin--;
+        } else if (old > 0 && distance <= 0) {
+            atOrBelowMin++;
+        }
+        if (distance < old) {
+            siftUp(node.index);
+        } else if (distance > old) {
+            siftDown(node.index);
+        }
+    }
+
+    /**
+     * Forgets an item.
+     * @param id The item's ID.
+     */
+    void remove(int id) {
+        Node node = nodes.remove(id);
+        if (node == null) {
+            return;
+        }
+        if (node.distance <= 0) {
+            atOrBelowMin--;
+        }
+        Node last = heap[--size];
+        heap[size] = null;
+        if (node != last) {
+            heap[node.index] = last;
+            last.index = node.index;
+            siftUp(last.index);
+            siftDown(last.index);
+        }
+    }
+
+    /**
+     * Adds every row of a catalog table from its stock and minimum columns, without reading the rows,
+     * and rebuilds the heap in linear time.
+     * @param table The catalog table.
+     */
+    void attachCatalog(ColumnarCatalog.Table table) {
+        for (int row = 0; row < table.rows; row++) {
+            int id = table.id(row);
+            int distance = table.intAt(ColumnarCatalog.Table.STOCK, row) - table.intAt(ColumnarCatalog.Table.MIN, row);
+            Node node = nodes.get(id);
+            if (node != null) {
+                if (node.distance <= 0) {
+                    atOrBelowMin--;
+                }
+                node.distance = distance;
+            } else {
+                node = new Node(id, distance);
+                nodes.put(id, node);
+                append(node);
+            }
+            if (distance <= 0) {
+                atOrBelowMin++;
+            }
+        }
+        for (int index = size / 2 - 1; index >= 0; index--) {
+            siftDown(index);
+        }
+    }
+
+    private void append(Node node) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        heap[size] = node;
+        node.index = size++;
+    }
+
+    private void siftUp(int index) {
+        Node node = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].distance <= node.distance) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(node, index);
+    }
+
+    private void siftDown(int index) {
+        Node node = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].distance < heap[child].distance) {
+                child++;
+            }
+            if (node.distance <= heap[child].distance) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(node, index);
+    }
+
+    private void place(Node node, int index) {
+        heap[index] = node;
+        node.index = index;
+    }
+
+    /**
+     * An item's place in the heap.
+     */
+    private static final class Node {
+        final int id;
+        /**
+         * Stock minus minimum: zero or less means the item should be reordered.
+         */
+        int distance;
+        int index;
+
+        Node(int id, int distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package Model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Trigram index for partial, case-insensitive name search over an inventory list.
+ * Every lower-cased name is split into its three-character substrings, and each trigram maps to the items that contain it.
+ * A search only checks the items in the smallest posting among the search term's trigrams, so the candidate set stays small.
+ * The index listens to its list and is updated incrementally on add, remove and replace.
+ * Rows of an opened ColumnarCatalog are searched through the postings stored in the catalog file instead.
+ * The list is only changed on the JavaFX application thread, but the index is held in concurrent sets, so searches
+ * can run on a background thread while it changes; a search running at the same time as a change may or may not see it.
+ *
+ * @param <T> The type of item being indexed, either Part or Product.
+ */
+public class SearchIndex<T> {
+    private static final int GRAM = 3;
+    private final Function<T, String> nameOf;
+    /**
+     * Every indexed item, scanned for terms too short to use the postings.
+     * Parts and products do not override equals, so this and the postings compare items by identity.
+     */
+    private final Set<T> indexed = ConcurrentHashMap.newKeySet();
+    /**
+     * Items keyed by each trigram of their name. Trigrams are packed into a long, 16 bits per character.
+     */
+    private final Map<Long, Set<T>> postings = new ConcurrentHashMap<>();
+    /**
+     * Catalog rows backing the list, searched through the catalog's own postings. Null when no catalog is open.
+     */
+    private volatile LazyRowList<T> catalog;
+
+    /**
+     * Builds the index over a list and starts listening to it for changes.
+     * @param items The list to index.
+     * @param nameOf Function returning the name of an item.
+     */
+    public SearchIndex(ObservableList<T> items, Function<T, String> nameOf) {
+        this.nameOf = nameOf;
+        for (T item : items) {
+            add(item);
+        }
+        items.addListener((ListChangeListener<T>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated() || change.wasUpdated()) {
+                    continue;
+                }
+                for (T removed : change.getRemoved()) {
+                    remove(removed);
+                }
+                for (T added : change.getAddedSubList()) {
+                    add(added);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds every item whose name contains the search term, ignoring case.
+     * Terms shorter than three characters cannot use the trigram postings and fall back to a scan of the names,
+     * so this is meant to be called off the JavaFX application thread. Safe to call from any thread.
+     * @param term The search term.
+     * @return An identity set of matching items. Empty if nothing matches.
+     */
+    public Set<T> search(String term) {
+        Set<T> hits = Collections.newSetFromMap(new IdentityHashMap<>());
+        String folded = InventoryIndex.fold(term.trim());
+        if (folded.isEmpty()) {
+            return hits;
+        }
+        LazyRowList<T> rows = catalog;
+        if (rows != null) {
+            rows.searchCatalog(folded, hits::add);
+        }
+        if (folded.length() < GRAM) {
+            for (T item : indexed) {
+                if (matches(item, folded)) {
+                    hits.add(item);
+                }
+            }
+        } else {
+            Set<T> smallest = null;
+            for (int i = 0; i + GRAM <= folded.length(); i++) {
+                Set<T> posting = postings.get(gram(folded, i));
+                if (posting == null) {
+                    smallest = null;
+                    break;
+                }
+                if (smallest == null || posting.size() < smallest.size()) {
+                    smallest = posting;
+                }
+            }
+            if (smallest != null) {
+                for (T item : smallest) {
+                    if (matches(item, folded)) {
+                        hits.add(item);
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+
+    private boolean matches(T item, String folded) {
+        String name = nameOf.apply(item);
+        return name != null && InventoryIndex.fold(name).contains(folded);
+    }
+
+    /**
+     * Makes searches include the catalog rows backing the indexed list.
+     * @param rows The backing list, already filled from a catalog.
+     */
+    void setCatalog(LazyRowList<T> rows) {
+        catalog = rows;
+    }
+
+    private void add(T item) {
+        indexed.add(item);
+        String name = nameOf.apply(item);
+        if (name == null) {
+            return;
+        }
+        String folded = InventoryIndex.fold(name);
+        for (int i = 0; i + GRAM <= folded.length(); i++) {
+            postings.computeIfAbsent(gram(folded, i), key -> ConcurrentHashMap.newKeySet()).add(item);
+        }
+    }
+
+    private void remove(T item) {
+        indexed.remove(item);
+        String name = nameOf.apply(item);
+        if (name == null) {
+            return;
+        }
+        String folded = InventoryIndex.fold(name);
+        for (int i = 0; i + GRAM <= folded.length(); i++) {
+            long key = gram(folded, i);
+            Set<T> posting = postings.get(key);
+            if (posting != null) {
+                posting.remove(item);
+                if (posting.isEmpty()) {
+                    postings.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs the three characters starting at an offset into a single key.
+     */
+    static long gram(String folded, int offset) {
+        return ((long) folded.charAt(offset) << 32) | ((long) folded.charAt(offset + 1) << 16) | folded.charAt(offset + 2);
+    }
+}
@@ -0,0 +1,772 @@
+package Model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * The history of every stock level in the inventory, as a ledger of stock movements.
+ * <p>
+ * The ledger follows the inventory change events and records each stock change as a movement: the item, the units
+ * added or taken, why, and when. Stock transactions say why their items moved; anything else is an edit, and adding
+ * or removing an item moves its whole stock in or out. Changes published to the inventory lists together, such as a
+ * batch of build orders, are recorded as one movement per item carrying the reason of the latest change.
+ * </p>
+ * <p>
+ * Movements are written by a background thread to one partition file per UTC day, in fixed records of 13 bytes.
+ * Once a day is over its movements are added up into hourly buckets per item and saved next to it, so startup reads
+ * a small summary for every past day and scans only today's movements. In memory the ledger keeps daily buckets for
+ * the whole history and hourly buckets for the last inventory.ledger.hourlyDays days (default 35), so usage,
+ * receipts and turnover over a year come from a few hundred buckets rather than a scan of the movements.
+ * Must only be used on the JavaFX application thread, apart from tag.
+ * </p>
+ */
+public class StockLedger implements AutoCloseable {
+    /**
+     * Partition file names are this prefix, the UTC date as yyyyMMdd and the suffix.
+     */
+    static final String PARTITION_PREFIX = "ledger-";
+    static final String PARTITION_SUFFIX = ".dat";
+    /**
+     * Suffix of the hourly bucket summary saved for a day that is over.
+     */
+    static final String SUMMARY_SUFFIX = ".sum";
+    /**
+     * Bytes per movement in a partition file: kind and reason, milliseconds into the day, item ID and delta.
+     */
+    static final int RECORD_BYTES = 13;
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 86_400_000L;
+    private static final DateTimeFormatter PARTITION_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    /**
+     * The writer waits this long for movements before checking whether the ledger was closed.
+     */
+    private static final long POLL_MILLIS = 100;
+    private static final InventoryEvent.Kind[] KINDS = InventoryEvent.Kind.values();
+    private static final StockMovement.Reason[] REASONS = StockMovement.Reason.values();
+    private final Path dir;
+    private final IntFunction<Part> parts;
+    private final IntFunction<Product> products;
+    private final Clock clock;
+    /**
+     * How many hours of hourly buckets are kept.
+     */
+    private final long hourlyHours;
+    private final IntObjectMap<History> partHistory = new IntObjectMap<>();
+    private final IntObjectMap<History> productHistory = new IntObjectMap<>();
+    /**
+     * Why items stored by stock transactions moved, until the ledger sees them. Items that are replaced before
+     * reaching the inventory lists are never seen, so they are held weakly.
+     */
+    private final Map<Object, StockMovement.Reason> reasons = Collections.synchronizedMap(new WeakHashMap<>());
+    /**
+     * Time of the latest movement. Movements are never recorded earlier than this, so buckets only grow at the end.
+     */
+    private long lastTimestamp;
+    /**
+     * Movements waiting for the writer, and flush markers to complete once everything before them is written.
+     */
+    private final BlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+    /**
+     * The partition the writer appends to and its day. Owned by the writer thread.
+     */
+    private FileChannel channel;
+    private long openDay = Long.MIN_VALUE;
+
+    /**
+     * Opens the ledger in a directory, creating the directory if needed, and loads its buckets.
+     * Current stock levels are read from the inventory.
+     * @param dir The directory holding the ledger.
+     * @return The open ledger.
+     * @throws IOException If the directory or a partition cannot be read.
+     */
+    public static StockLedger open(Path dir) throws IOException {
+        return open(dir, Inventory::lookupPart, Inventory::lookupProd, Clock.systemUTC(), Integer.getInteger("inventory.ledger.hourlyDays", 35));
+    }
+
+    /**
+     * Opens the ledger in a directory with explicit sources of stock levels and time.
+     * @param dir The directory holding the ledger.
+     * @param parts Finds a part in the inventory by ID.
+     * @param products Finds a product in the inventory by ID.
+     * @param clock Stamps the movements.
+     * @param hourlyDays How many days of hourly buckets to keep.
+     * @return The open ledger.
+     * @throws IOException If the directory or a partition cannot be read.
+     */
+    static StockLedger open(Path dir, IntFunction<Part> parts, IntFunction<Product> products, Clock clock, int hourlyDays) throws IOException {
+        Files.createDirectories(dir);
+        return new StockLedger(dir, parts, products, clock, hourlyDays);
+    }
+
+    private StockLedger(Path dir, IntFunction<Part> parts, IntFunction<Product> products, Clock clock, int hourlyDays) throws IOException {
+        this.dir = dir;
+        this.parts = parts;
+        this.products = products;
+        this.clock = clock;
+        this.hourlyHours = Math.max(1, hourlyDays) * 24L;
+        this.lastTimestamp = clock.millis();
+        load();
+        writer = new Thread(this::writeLoop, "stock-ledger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "stock-ledger-shutdown"));
+    }
+
+    /**
+     * Starts recording every stock change made to the inventories.
+     * @param events The inventories' change events.
+     */
+    public void watch(InventoryEvents events) {
+        events.subscribe(this::apply);
+    }
+
+    /**
+     * Notes why an item about to be stored moved, for when it reaches the inventory lists. Safe to call from any thread.
+     * @param item The new part or product.
+     * @param reason Why its stock differs from the item it replaces.
+     */
+    void tag(Object item, StockMovement.Reason reason) {
+        reasons.put(item, reason);
+    }
+
+    /**
+     * Records the stock movements in a batch of inventory changes.
+     * @param changes The changes, as they happen.
+     */
+    void apply(List<InventoryEvent> changes) {
+        long now = clock.millis();
+        for (InventoryEvent event : changes) {
+            if (event instanceof InventoryEvent.PartAdded added) {
+                record(InventoryEvent.Kind.PART, added.id(), added.part().getPartInStock(), StockMovement.Reason.ADDED, now);
+            } else if (event instanceof InventoryEvent.PartUpdated updated) {
+                replaced(InventoryEvent.Kind.PART, updated.before().getPartID(), updated.before().getPartInStock(),
+                        updated.id(), updated.after().getPartInStock(), updated.after(), now);
+            } else if (event instanceof InventoryEvent.PartRemoved removed) {
+                record(InventoryEvent.Kind.PART, removed.id(), -removed.part().getPartInStock(), StockMovement.Reason.REMOVED, now);
+            } else if (event instanceof InventoryEvent.ProductAdded added) {
+                record(InventoryEvent.Kind.PRODUCT, added.id(), added.product().getProductInStock(), StockMovement.Reason.ADDED, now);
+            } else if (event instanceof InventoryEvent.ProductUpdated updated) {
+                replaced(InventoryEvent.Kind.PRODUCT, updated.before().getProductID(), updated.before().getProductInStock(),
+                        updated.id(), updated.after().getProductInStock(), updated.after(), now);
+            } else if (event instanceof InventoryEvent.ProductRemoved removed) {
+                record(InventoryEvent.Kind.PRODUCT, removed.id(), -removed.product().getProductInStock(), StockMovement.Reason.REMOVED, now);
+            }
+        }
+    }
+
+    /**
+     * Records the movement of an item that was replaced. An item given a new ID moves its stock from the old ID to the new one.
+     */
+    private void replaced(InventoryEvent.Kind kind, int beforeID, int beforeStock, int afterID, int afterStock, Object after, long now) {
+        StockMovement.Reason reason = reasons.remove(after);
+        if (beforeID != afterID) {
+            record(kind, beforeID, -beforeStock, StockMovement.Reason.REMOVED, now);
+            record(kind, afterID, afterStock, StockMovement.Reason.ADDED, now);
+        } else {
+            record(kind, afterID, afterStock - beforeStock, reason == null ? StockMovement.Reason.EDITED : reason, now);
+        }
+    }
+
+    /**
+     * Records one movement in the buckets and queues it for the writer. Movements of no units are skipped.
+     * @param kind Whether a part or a product moved.
+     * @param id The ID of the item.
+     * @param delta The units added, or a negative number of units taken.
+     * @param reason Why the stock moved.
+     * @param timestamp When the stock moved. An earlier time than the last movement's is moved up to it.
+     */
+    void record(InventoryEvent.Kind kind, int id, int delta, StockMovement.Reason reason, long timestamp) {
+        if (delta == 0) {
+            return;
+        }
+        if (!running) {
+            throw new IllegalStateException("The stock ledger is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("The stock ledger stopped after a write error", failure);
+        }
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+        long[] bucket = new long[3];
+        accumulate(bucket, reason, delta);
+        history(kind, id).add(Math.floorDiv(lastTimestamp, HOUR), bucket, hourlyFrom());
+        pending.add(new StockMovement(kind, id, delta, reason, lastTimestamp));
+    }
+
+    /**
+     * Returns the units of an item taken, received and moved in all over a span of time. The span is widened to
+     * whole hours, or to whole days where it reaches back past the hourly buckets kept.
+     * @param kind Whether the item is a part or a product.
+     * @param id The ID of the item.
+     * @param from The start of the span.
+     * @param to The end of the span, exclusive.
+     * @return The totals, all 0 if the item did not move.
+     */
+    public Totals totals(InventoryEvent.Kind kind, int id, Instant from, Instant to) {
+        long[] sums = new long[3];
+        History history = history(kind).get(id);
+        long fromHour = Math.floorDiv(from.toEpochMilli(), HOUR);
+        long toHour = Math.floorDiv(to.toEpochMilli() + HOUR - 1, HOUR);
+        if (history != null && fromHour < toHour) {
+            long fromDay = Math.floorDiv(fromHour + 23, 24);
+            long toDay = Math.floorDiv(toHour, 24);
+            if (fromDay >= toDay) {
+                sumHours(history, fromHour, toHour, sums);
+            } else {
+                history.days.sum(fromDay, toDay, sums);
+                sumHours(history, fromHour, fromDay * 24, sums);
+                sumHours(history, toDay * 24, toHour, sums);
+            }
+        }
+        return new Totals(sums[0], sums[1], sums[2]);
+    }
+
+    /**
+     * Returns the average units of an item taken per day over a span of time, widened as for totals.
+     * @param kind Whether the item is a part or a product.
+     * @param id The ID of the item.
+     * @param from The start of the span.
+     * @param to The end of the span, exclusive.
+     * @return The units taken per day, or 0 if the span is empty.
+     */
+    public double usagePerDay(InventoryEvent.Kind kind, int id, Instant from, Instant to) {
+        long millis = to.toEpochMilli() - from.toEpochMilli();
+        return millis <= 0 ? 0 : totals(kind, id, from, to).taken() * (double) DAY / millis;
+    }
+
+    /**
+     * Returns how many times an item's stock turned over in a span of time: the units taken divided by the average
+     * stock held at the end of each day. The span is widened to whole UTC days. Past stock levels are worked back
+     * from the current stock and the daily buckets.
+     * @param kind Whether the item is a part or a product.
+     * @param id The ID of the item.
+     * @param from The start of the span.
+     * @param to The end of the span, exclusive.
+     * @return The turnover, or NaN if the span is empty or the average stock was not above 0.
+     */
+    public double turnover(InventoryEvent.Kind kind, int id, Instant from, Instant to) {
+        long fromDay = Math.floorDiv(from.toEpochMilli(), DAY);
+        long toDay = Math.floorDiv(to.toEpochMilli() + DAY - 1, DAY);
+        if (fromDay >= toDay) {
+            return Double.NaN;
+        }
+        History history = history(kind).get(id);
+        long level = currentStock(kind, id);
+        long taken = 0;
+        long stockDays = 0;
+        if (history == null) {
+            stockDays = level * (toDay - fromDay);
+        } else {
+            Series days = history.days;
+            int i = days.size - 1;
+            while (i >= 0 && days.keys[i] >= toDay) {
+                level -= days.net[i--];
+            }
+            for (long day = toDay - 1; day >= fromDay; day--) {
+                stockDays += level;
+                if (i >= 0 && days.keys[i] == day) {
+                    taken += days.taken[i];
+                    level -= days.net[i--];
+                }
+            }
+        }
+        double average = stockDays / (double) (toDay - fromDay);
+        return average > 0 ? taken / average : Double.NaN;
+    }
+
+    /**
+     * Reads the movements of an item over a span of time from the partition files of the days it covers.
+     * Waits for the writer to write every movement recorded so far first.
+     * @param kind Whether the item is a part or a product.
+     * @param id The ID of the item.
+     * @param from The start of the span.
+     * @param to The end of the span, exclusive.
+     * @return The movements, oldest first.
+     * @throws IOException If a partition cannot be read.
+     */
+    public List<StockMovement> movements(InventoryEvent.Kind kind, int id, Instant from, Instant to) throws IOException {
+        flush();
+        long start = from.toEpochMilli();
+        long end = to.toEpochMilli();
+        List<StockMovement> movements = new ArrayList<>();
+        for (long day : partitionDays()) {
+            if (day < Math.floorDiv(start, DAY) || day * DAY >= end) {
+                continue;
+            }
+            readPartition(partitionPath(day, PARTITION_SUFFIX), day, movement -> {
+                if (movement.kind() == kind && movement.id() == id && movement.timestamp() >= start && movement.timestamp() < end) {
+                    movements.add(movement);
+                }
+            });
+        }
+        return movements;
+    }
+
+    /**
+     * Waits until the writer has written every movement recorded so far.
+     * @throws IOException If the writer stopped after a write error.
+     */
+    public void flush() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (!running) {
+            return;
+        }
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        pending.add(written);
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw failure != null ? failure : new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops the writer after it has written and forced everything pending, then closes the partition.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Could not close the stock ledger: " + e.getMessage());
+        }
+    }
+
+    private IntObjectMap<History> history(InventoryEvent.Kind kind) {
+        return kind == InventoryEvent.Kind.PART ? partHistory : productHistory;
+    }
+
+    private History history(InventoryEvent.Kind kind, int id) {
+        IntObjectMap<History> histories = history(kind);
+        History history = histories.get(id);
+        if (history == null) {
+            history = new History();
+            histories.put(id, history);
+        }
+        return history;
+    }
+
+    private long currentStock(InventoryEvent.Kind kind, int id) {
+        if (kind == InventoryEvent.Kind.PART) {
+            Part part = parts.apply(id);
+            return part == null ? 0 : part.getPartInStock();
+        }
+        Product product = products.apply(id);
+        return product == null ? 0 : product.getProductInStock();
+    }
+
+    /**
+     * Returns the first hour whose hourly buckets are all still kept.
+     */
+    private long hourlyFrom() {
+        return Math.floorDiv(lastTimestamp, HOUR) - hourlyHours;
+    }
+
+    /**
+     * Adds up a run of hours, from the hourly buckets if they are still kept, otherwise from the days around them.
+     */
+    private void sumHours(History history, long fromHour, long toHour, long[] sums) {
+        if (fromHour >= toHour) {
+            return;
+        }
+        if (fromHour >= hourlyFrom()) {
+            history.hours.sum(fromHour, toHour, sums);
+        } else {
+            history.days.sum(Math.floorDiv(fromHour, 24), Math.floorDiv(toHour + 23, 24), sums);
+        }
+    }
+
+    /**
+     * Loads the buckets of every partition: past days from their summaries, written now if missing, and today by a scan.
+     */
+    private void load() throws IOException {
+        long today = Math.floorDiv(lastTimestamp, DAY);
+        for (long day : partitionDays()) {
+            TreeMap<Long, long[]> buckets = null;
+            Path summary = partitionPath(day, SUMMARY_SUFFIX);
+            if (day < today && Files.exists(summary)) {
+                buckets = readSummary(summary);
+            }
+            if (buckets == null) {
+                buckets = scan(day);
+                if (day < today) {
+                    writeSummary(day, buckets);
+                }
+            }
+            long hourlyFrom = hourlyFrom();
+            for (Map.Entry<Long, long[]> bucket : buckets.entrySet()) {
+                long key = bucket.getKey();
+                long hour = day * 24 + (int) (key >>> 32 & 0xFF);
+                history(KINDS[(int) (key >>> 40)], (int) key).add(hour, bucket.getValue(), hourlyFrom);
+                lastTimestamp = Math.max(lastTimestamp, hour * HOUR);
+            }
+        }
+    }
+
+    /**
+     * Lists the days that have a partition file, in ascending order.
+     */
+    private long[] partitionDays() throws IOException {
+        long[] dates = InventoryJournal.sequences(dir, PARTITION_PREFIX, PARTITION_SUFFIX);
+        long[] days = new long[dates.length];
+        int count = 0;
+        for (long date : dates) {
+            try {
+                days[count] = LocalDate.parse(Long.toString(date), PARTITION_DATE).toEpochDay();
+                count++;
+            } catch (DateTimeParseException e) {
+                System.out.println("Ignoring stock ledger file with a bad date: " + PARTITION_PREFIX + date + PARTITION_SUFFIX + ".");
+            }
+        }
+        return Arrays.copyOf(days, count);
+    }
+
+    private Path partitionPath(long day, String suffix) {
+        return dir.resolve(PARTITION_PREFIX + LocalDate.ofEpochDay(day).format(PARTITION_DATE) + suffix);
+    }
+
+    /**
+     * Adds up a day's movements into hourly buckets, keyed by kind, hour of the day and item ID.
+     */
+    private TreeMap<Long, long[]> scan(long day) throws IOException {
+        TreeMap<Long, long[]> buckets = new TreeMap<>();
+        readPartition(partitionPath(day, PARTITION_SUFFIX), day, movement -> {
+            long hourOfDay = Math.floorMod(movement.timestamp(), DAY) / HOUR;
+            long key = (long) movement.kind().ordinal() << 40 | hourOfDay << 32 | movement.id() & 0xFFFFFFFFL;
+            accumulate(buckets.computeIfAbsent(key, k -> new long[3]), movement.reason(), movement.delta());
+        });
+        return buckets;
+    }
+
+    /**
+     * Reads every whole record of a partition. A torn record at the end, left by a crash, is ignored.
+     */
+    private static void readPartition(Path file, long day, Consumer<StockMovement> action) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long records = Files.size(file) / RECORD_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (long i = 0; i < records; i++) {
+                int head = in.readUnsignedByte();
+                long timestamp = day * DAY + in.readInt();
+                int id = in.readInt();
+                int delta = in.readInt();
+                if ((head & 0x7F) < REASONS.length) {
+                    action.accept(new StockMovement(KINDS[head >>> 7], id, delta, REASONS[head & 0x7F], timestamp));
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves a day's hourly buckets, replacing any earlier summary in one move. Buckets are stored in key order
+     * as the difference from the previous key and their sums, each as a variable-length number.
+     */
+    private void writeSummary(long day, TreeMap<Long, long[]> buckets) throws IOException {
+        Path summary = partitionPath(day, SUMMARY_SUFFIX);
+        Path temp = partitionPath(day, SUMMARY_SUFFIX + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(buckets.size());
+            long key = 0;
+            for (Map.Entry<Long, long[]> bucket : buckets.entrySet()) {
+                writeVarLong(out, bucket.getKey() - key);
+                key = bucket.getKey();
+                for (long sum : bucket.getValue()) {
+                    writeVarLong(out, sum << 1 ^ sum >> 63);
+                }
+            }
+        }
+        Files.move(temp, summary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a day's hourly buckets.
+     * @return The buckets, or null if the summary is damaged and the day must be scanned again.
+     */
+    private static TreeMap<Long, long[]> readSummary(Path summary) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(summary)))) {
+            int count = in.readInt();
+            if (count < 0) {
+                return null;
+            }
+            TreeMap<Long, long[]> buckets = new TreeMap<>();
+            long key = 0;
+            for (int i = 0; i < count; i++) {
+                key += readVarLong(in);
+                if ((key >>> 40) >= KINDS.length) {
+                    return null;
+                }
+                long[] bucket = new long[3];
+                for (int sum = 0; sum < bucket.length; sum++) {
+                    long zigzag = readVarLong(in);
+                    bucket[sum] = zigzag >>> 1 ^ -(zigzag & 1);
+                }
+                buckets.put(key, bucket);
+            }
+            return in.read() == -1 ? buckets : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a number seven bits at a time, low bits first, with the high bit of each byte marking that more follow.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in stock ledger summary");
+    }
+
+    /**
+     * Adds a movement to a bucket of units taken, received and moved in all.
+     */
+    private static void accumulate(long[] bucket, StockMovement.Reason reason, long delta) {
+        bucket[2] += delta;
+        if (reason.isFlow()) {
+            bucket[delta < 0 ? 0 : 1] += Math.abs(delta);
+        }
+    }
+
+    /**
+     * Writer thread: encodes every pending movement and writes it to its day's partition in as few writes as possible,
+     * moving to a new partition, and summing up the old one, when the day changes.
+     */
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+        try {
+            while (running || !pending.isEmpty()) {
+                Object first = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch);
+                for (Object item : batch) {
+                    if (item instanceof StockMovement movement) {
+                        long day = Math.floorDiv(movement.timestamp(), DAY);
+                        if (day != openDay || !buffer.hasRemaining()) {
+                            write(buffer);
+                        }
+                        if (day != openDay) {
+                            roll(day);
+                        }
+                        buffer.put((byte) (movement.kind().ordinal() << 7 | movement.reason().ordinal()));
+                        buffer.putInt((int) Math.floorMod(movement.timestamp(), DAY));
+                        buffer.putInt(movement.id());
+                        buffer.putInt(movement.delta());
+                    } else {
+                        write(buffer);
+                        ((CompletableFuture<?>) item).complete(null);
+                    }
+                }
+                write(buffer);
+                batch.clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+            System.err.println("Stock ledger write failed: " + e.getMessage());
+            batch.addAll(pending);
+            for (Object item : batch) {
+                if (item instanceof CompletableFuture<?> written) {
+                    written.completeExceptionally(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Closes the current partition, saving its summary if its day is over, and opens the partition of a later day.
+     * A torn record at the end of the new partition is cut off.
+     */
+    private void roll(long day) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            if (openDay < day) {
+                writeSummary(openDay, scan(openDay));
+            }
+        }
+        Path file = partitionPath(day, PARTITION_SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        long size = channel.size();
+        long valid = size - size % RECORD_BYTES;
+        if (valid < size) {
+            System.out.println("Discarding " + (size - valid) + " bytes of incomplete stock ledger data in " + file.getFileName() + ".");
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+        openDay = day;
+    }
+
+    /**
+     * Units taken, received and moved in all.
+     * @param taken The units used or otherwise taken out of stock.
+     * @param received The units put into stock.
+     * @param net The change in stock, including the stock of items added and removed.
+     */
+    public record Totals(long taken, long received, long net) {
+    }
+
+    /**
+     * The daily and recent hourly buckets of one item.
+     */
+    private static final class History {
+        final Series hours = new Series();
+        final Series days = new Series();
+
+        void add(long hour, long[] bucket, long hourlyFrom) {
+            days.add(Math.floorDiv(hour, 24), bucket);
+            if (hour >= hourlyFrom) {
+                if (hours.size == hours.keys.length) {
+                    hours.dropBefore(hourlyFrom);
+                }
+                hours.add(hour, bucket);
+            }
+        }
+    }
+
+    /**
+     * Buckets in ascending order of their hour or day number, in parallel arrays.
+     */
+    private static final class Series {
+        int[] keys = new int[4];
+        long[] taken = new long[4];
+        long[] received = new long[4];
+        long[] net = new long[4];
+        int size;
+
+        void add(long key, long[] bucket) {
+            int at = size > 0 && keys[size - 1] < key ? size : lowerBound(key);
+            if (at == size || keys[at] != key) {
+                if (size == keys.length) {
+                    int capacity = size * 2;
+                    keys = Arrays.copyOf(keys, capacity);
+                    taken = Arrays.copyOf(taken, capacity);
+                    received = Arrays.copyOf(received, capacity);
+                    net = Arrays.copyOf(net, capacity);
+                }
+                System.arraycopy(keys, at, keys, at + 1, size - at);
+                System.arraycopy(taken, at, taken, at + 1, size - at);
+                System.arraycopy(received, at, received, at + 1, size - at);
+                System.arraycopy(net, at, net, at + 1, size - at);
+                keys[at] = (int) key;
+                taken[at] = 0;
+                received[at] = 0;
+                net[at] = 0;
+                size++;
+            }
+            taken[at] += bucket[0];
+            received[at] += bucket[1];
+            net[at] += bucket[2];
+        }
+
+        /**
+         * Adds the buckets from one key, inclusive, to another, exclusive, to a running total.
+         */
+        void sum(long from, long to, long[] sums) {
+            for (int i = lowerBound(from); i < size && keys[i] < to; i++) {
+                sums[0] += taken[i];
+                sums[1] += received[i];
+                sums[2] += net[i];
+            }
+        }
+
+        void dropBefore(long key) {
+            int from = lowerBound(key);
+            size -= from;
+            System.arraycopy(keys, from, keys, 0, size);
+            System.arraycopy(taken, from, taken, 0, size);
+            System.arraycopy(received, from, received, 0, size);
+            System.arraycopy(net, from, net, 0, size);
+        }
+
+        /**
+         * Returns the index of the first bucket at or after a key.
+         */
+        private int lowerBound(long key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
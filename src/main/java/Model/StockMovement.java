@@ -0,0 +1,50 @@
+package Model;
+
+/**
+ * A change to the stock of one part or product, as recorded by the StockLedger.
+ * @param kind Whether a part or a product moved.
+ * @param id The ID of the item.
+ * @param delta The units added, or a negative number of units taken.
+ * @param reason Why the stock moved.
+ * @param timestamp When the stock moved, in milliseconds since the epoch.
+ */
+public record StockMovement(InventoryEvent.Kind kind, int id, int delta, Reason reason, long timestamp) {
+    /**
+     * Why a stock level moved.
+     */
+    public enum Reason {
+        /**
+         * The item was added to the inventory with its stock.
+         */
+        ADDED,
+        /**
+         * The item was removed from the inventory with its stock.
+         */
+        REMOVED,
+        /**
+         * The item was edited or replaced, by hand or by an import.
+         */
+        EDITED,
+        /**
+         * A stock transaction added to or took from the item.
+         */
+        ADJUSTED,
+        /**
+         * The part was used to assemble a product.
+         */
+        CONSUMED,
+        /**
+         * Units of the product were assembled.
+         */
+        ASSEMBLED;
+
+        /**
+         * Returns whether the movement counts towards usage and receipts. Adding and removing an item
+         * moves its whole stock in or out of the inventory but neither uses nor receives any of it.
+         * @return True if the movement is a use or a receipt.
+         */
+        public boolean isFlow() {
+            return this != ADDED && this != REMOVED;
+        }
+    }
+}
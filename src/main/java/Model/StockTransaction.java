@@ -0,0 +1,311 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A set of stock changes to parts and products that is applied all together or not at all.
+ * <p>
+ * Commits are optimistic. The items are read from the thread-safe stores without locking, the new stock levels are
+ * checked and new items are made, and only then are the store stripes holding those IDs locked, just long enough to
+ * check that none of the items read has been replaced and to store the new ones. If one has, the commit starts over
+ * from a fresh read. Transactions on different items never wait for each other, and no lock is held while checking.
+ * </p>
+ * <p>
+ * A part's stock may not be taken below its minimum, and a product's stock may not be raised above its maximum.
+ * Assembling a product takes the parts of its exploded bill of materials, so sub-assemblies are built from their
+ * parts along the way. Safe to use from any thread; changes reach the inventory lists, and everything listening to
+ * them, with the stores' next publish. Each item's move is recorded in the stock ledger, if one is attached, as
+ * consumed or assembled when it was part of an assembly and as adjusted otherwise.
+ * </p>
+ */
+public final class StockTransaction {
+    /**
+     * How many times a commit is tried before giving up on items that keep changing under it.
+     */
+    static final int MAX_ATTEMPTS = 32;
+    private final InventoryStore<Part> parts;
+    private final InventoryStore<Product> products;
+    private final BomExplosion explosion;
+    private final Map<Integer, Long> partDeltas = new TreeMap<>();
+    private final Map<Integer, Long> productDeltas = new TreeMap<>();
+    /**
+     * Products to assemble, as product ID and unit pairs.
+     */
+    private final List<int[]> assemblies = new ArrayList<>();
+
+    /**
+     * Creates an empty transaction.
+     * @param parts The part store.
+     * @param products The product store.
+     * @param explosion Explodes the bills of products being assembled.
+     */
+    StockTransaction(InventoryStore<Part> parts, InventoryStore<Product> products, BomExplosion explosion) {
+        this.parts = parts;
+        this.products = products;
+        this.explosion = explosion;
+    }
+
+    /**
+     * Adds to or takes from a part's stock. Changes to the same part add up.
+     * @param partID The ID of the part.
+     * @param delta The amount to add, or a negative amount to take.
+     * @return This transaction.
+     */
+    public StockTransaction changePart(int partID, long delta) {
+        partDeltas.merge(partID, delta, Long::sum);
+        return this;
+    }
+
+    /**
+     * Adds to or takes from a product's stock. Changes to the same product add up.
+     * @param productID The ID of the product.
+     * @param delta The amount to add, or a negative amount to take.
+     * @return This transaction.
+     */
+    public StockTransaction changeProduct(int productID, long delta) {
+        productDeltas.merge(productID, delta, Long::sum);
+        return this;
+    }
+
+    /**
+     * Builds units of a product: takes the parts of its exploded bill of materials and adds the units to its stock.
+     * The bill is read when the transaction commits.
+     * @param productID The ID of the product.
+     * @param units The number of units to build.
+     * @return This transaction.
+     * @throws IllegalArgumentException if units is not positive.
+     */
+    public StockTransaction assemble(int productID, int units) {
+        if (units <= 0) {
+            throw new IllegalArgumentException("Units must be greater than 0");
+        }
+        assemblies.add(new int[] {productID, units});
+        return this;
+    }
+
+    /**
+     * Applies every change, or none of them.
+     * @throws IllegalStateException if an item is missing, a change breaks a stock limit, or the items kept being
+     *         changed by other updates until the commit gave up.
+     */
+    public void commit() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Attempt view = new Attempt(parts, products, explosion);
+            String failure = view.apply(this);
+            if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+            if (view.commit()) {
+                return;
+            }
+        }
+        throw new IllegalStateException("The stock kept changing under the transaction; gave up after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * One try at committing one or more transactions: the items read so far and their stock as changed so far.
+     * A batch of transactions can be applied to one attempt and committed together.
+     */
+    static final class Attempt {
+        private final InventoryStore<Part> parts;
+        private final InventoryStore<Product> products;
+        private final BomExplosion explosion;
+        private final IntObjectMap<Level<Part>> partLevels = new IntObjectMap<>();
+        private final IntObjectMap<Level<Product>> productLevels = new IntObjectMap<>();
+        /**
+         * The same levels in the order they were read.
+         */
+        private final List<Level<Part>> partsRead = new ArrayList<>();
+        private final List<Level<Product>> productsRead = new ArrayList<>();
+
+        Attempt(InventoryStore<Part> parts, InventoryStore<Product> products, BomExplosion explosion) {
+            this.parts = parts;
+            this.products = products;
+            this.explosion = explosion;
+        }
+
+        /**
+         * Applies a transaction's changes to the stock seen by this attempt, unless one of them fails.
+         * @param transaction The transaction.
+         * @return Null if every change was applied, otherwise why none were.
+         */
+        String apply(StockTransaction transaction) {
+            Map<Integer, Long> partChanges = new TreeMap<>(transaction.partDeltas);
+            Map<Integer, Long> productChanges = new TreeMap<>(transaction.productDeltas);
+            Map<Integer, StockMovement.Reason> partReasons = new HashMap<>();
+            Map<Integer, StockMovement.Reason> productReasons = new HashMap<>();
+            partChanges.keySet().forEach(partID -> partReasons.put(partID, StockMovement.Reason.ADJUSTED));
+            productChanges.keySet().forEach(productID -> productReasons.put(productID, StockMovement.Reason.ADJUSTED));
+            for (int[] assembly : transaction.assemblies) {
+                Level<Product> level = product(assembly[0]);
+                if (level == null) {
+                    return "Product " + assembly[0] + " is not in the inventory";
+                }
+                BomExplosion.Requirements requirements;
+                try {
+                    requirements = explosion.explode(level.read, assembly[1]);
+                } catch (IllegalStateException | ArithmeticException e) {
+                    return "Product " + assembly[0] + " cannot be assembled: " + e.getMessage();
+                }
+                if (requirements.lines() == 0) {
+                    return "Product " + assembly[0] + " has no parts to assemble from";
+                }
+                for (int line = 0; line < requirements.lines(); line++) {
+                    partChanges.merge(requirements.partID(line), -requirements.quantity(line), Long::sum);
+                    partReasons.put(requirements.partID(line), StockMovement.Reason.CONSUMED);
+                }
+                productChanges.merge(assembly[0], (long) assembly[1], Long::sum);
+                productReasons.put(assembly[0], StockMovement.Reason.ASSEMBLED);
+            }
+            // Check everything before changing anything, so a failed transaction leaves the attempt as it was.
+            long[] partStock = new long[partChanges.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Long> change : partChanges.entrySet()) {
+                Level<Part> level = part(change.getKey());
+                if (level == null) {
+                    return "Part " + change.getKey() + " is not in the inventory";
+                }
+                Part part = level.read;
+                String failure = check("Part", change.getKey(), level.stock, change.getValue(), part.getPartMin(), part.getPartMax());
+                if (failure != null) {
+                    return failure;
+                }
+                partStock[i++] = level.stock + change.getValue();
+            }
+            long[] productStock = new long[productChanges.size()];
+            i = 0;
+            for (Map.Entry<Integer, Long> change : productChanges.entrySet()) {
+                Level<Product> level = product(change.getKey());
+                if (level == null) {
+                    return "Product " + change.getKey() + " is not in the inventory";
+                }
+                Product product = level.read;
+                String failure = check("Product", change.getKey(), level.stock, change.getValue(), product.getProductMin(), product.getProductMax());
+                if (failure != null) {
+                    return failure;
+                }
+                productStock[i++] = level.stock + change.getValue();
+            }
+            i = 0;
+            for (int partID : partChanges.keySet()) {
+                Level<Part> level = partLevels.get(partID);
+                level.stock = partStock[i++];
+                level.reason = partReasons.get(partID);
+            }
+            i = 0;
+            for (int productID : productChanges.keySet()) {
+                Level<Product> level = productLevels.get(productID);
+                level.stock = productStock[i++];
+                level.reason = productReasons.get(productID);
+            }
+            return null;
+        }
+
+        /**
+         * Stores every item whose stock changed, provided none of the items read has been replaced since.
+         * @return True if the change was stored, false if nothing was because an item had been replaced.
+         */
+        boolean commit() {
+            // Parts are always locked before products, so commits cannot deadlock.
+            try (InventoryStore<Part>.Locked lockedParts = parts.lock(ids(partsRead));
+                 InventoryStore<Product>.Locked lockedProducts = products.lock(ids(productsRead))) {
+                for (Level<Part> level : partsRead) {
+                    if (!lockedParts.isCurrent(level.read)) {
+                        return false;
+                    }
+                }
+                for (Level<Product> level : productsRead) {
+                    if (!lockedProducts.isCurrent(level.read)) {
+                        return false;
+                    }
+                }
+                for (Level<Part> level : partsRead) {
+                    if (level.stock != level.read.getPartInStock()) {
+                        Part part = level.read.toRecord().withInStock((int) level.stock).toPart();
+                        Inventory.noteStockReason(part, level.reason);
+                        lockedParts.put(part);
+                    }
+                }
+                for (Level<Product> level : productsRead) {
+                    if (level.stock != level.read.getProductInStock()) {
+                        Product product = level.read.toRecord().withInStock((int) level.stock).toProduct();
+                        Inventory.noteStockReason(product, level.reason);
+                        lockedProducts.put(product);
+                    }
+                }
+                return true;
+            }
+        }
+
+        private Level<Part> part(int partID) {
+            Level<Part> level = partLevels.get(partID);
+            if (level == null) {
+                Part part = parts.get(partID);
+                if (part == null) {
+                    return null;
+                }
+                level = new Level<>(partID, part, part.getPartInStock());
+                partLevels.put(partID, level);
+                partsRead.add(level);
+            }
+            return level;
+        }
+
+        private Level<Product> product(int productID) {
+            Level<Product> level = productLevels.get(productID);
+            if (level == null) {
+                Product product = products.get(productID);
+                if (product == null) {
+                    return null;
+                }
+                level = new Level<>(productID, product, product.getProductInStock());
+                productLevels.put(productID, level);
+                productsRead.add(level);
+            }
+            return level;
+        }
+
+        private static int[] ids(List<? extends Level<?>> levels) {
+            int[] ids = new int[levels.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = levels.get(i).id;
+            }
+            return ids;
+        }
+
+        /**
+         * Checks a stock change against an item's limits.
+         * @return Null if the change is allowed, otherwise why not.
+         */
+        private static String check(String kind, int id, long stock, long delta, int min, int max) {
+            long after = stock + delta;
+            if (delta < 0 && after < min) {
+                return kind + " " + id + " would fall to " + after + ", below its minimum of " + min;
+            }
+            if (delta > 0 && after > max) {
+                return kind + " " + id + " would rise to " + after + ", above its maximum of " + max;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * An item as read by an attempt, its stock as changed so far, and why it last changed.
+     */
+    private static final class Level<T> {
+        final int id;
+        final T read;
+        long stock;
+        StockMovement.Reason reason;
+
+        Level(int id, T read, long stock) {
+            this.id = id;
+            this.read = read;
+            this.stock = stock;
+        }
+    }
+}
@@ -3,29 +3,150 @@ package brandon.secondscreen;
 
 
 
+import Controller.Navigator;
+import Model.Inventory;
+import Model.InventoryPersistence;
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Parent;
+import javafx.application.Platform;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 /*Brandon Council */
 /**
  * Main class for the Inventory Management System.
  */
 public class Main extends Application {
+    /**
+     * Snapshot and journal persisting the inventory between runs.
+     */
+    private InventoryPersistence persistence;
     /**
      * Starts the JavaFX application.
+     * A splash screen is shown straight away while the inventory is restored from the snapshot and journal in the
+     * data directory and the main screen is loaded, both in the background; the main screen replaces the splash
+     * once both are done. The directory defaults to .inventory in the user's home and can be changed with the
+     * inventory.dataDir system property. Once the main screen is up, the other screens are loaded in the background
+     * so the first switch to each is quick; set the inventory.preloadScreens system property to false to load them
+     * on first use instead. How many units of each product can be built is also worked out then, in parallel.
+     * Set inventory.startupReport to true to print how long each stage of startup took, and inventory.exitAfterStartup
+     * to true to exit as soon as the main screen is interactive, as the class-data-sharing training run does.
      *
      * @param primaryStage The primary stage for this application.
-     * @throws Exception If the FXML file isn't found or can't be loaded.
      */
     @Override
-    public void start(Stage primaryStage) throws Exception {
-        Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-        Scene scene = new Scene(root);
+    public void start(Stage primaryStage) {
+        StartupTimer.mark("JavaFX started");
         primaryStage.setTitle("Inventory Management System");
-        primaryStage.setScene(scene);
+        primaryStage.setScene(splashScene());
         primaryStage.show();
+        StartupTimer.markNextFrame(primaryStage.getScene(), "splash screen shown", () -> { });
+        ExecutorService loader = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "startup-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Navigator.preload(loader, Navigator.View.MAIN);
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                InventoryPersistence opened = InventoryPersistence.open(dataDir());
+                StartupTimer.mark("inventory loaded");
+                return opened;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, loader).whenComplete((opened, failure) -> Platform.runLater(() -> {
+            if (failure == null) {
+                showMainScreen(primaryStage, opened, loader);
+            } else {
+                startupFailed(failure instanceof CompletionException ? failure.getCause() : failure);
+            }
+            loader.shutdown();
+        }));
+    }
+    /**
+     * Replaces the splash screen with the main screen once the inventory is loaded.
+     *
+     * @param stage The primary stage.
+     * @param opened The restored inventory's persistence.
+     * @param loader Loads the other screens in the background.
+     */
+    private void showMainScreen(Stage stage, InventoryPersistence opened, ExecutorService loader) {
+        persistence = opened;
+        try {
+            Navigator.show(stage, Navigator.View.MAIN);
+        } catch (IOException e) {
+            startupFailed(e);
+            return;
+        }
+        StartupTimer.mark("main screen shown");
+        StartupTimer.markNextFrame(stage.getScene(), "main screen interactive", () -> {
+            if (Boolean.getBoolean("inventory.startupReport")) {
+                System.out.println(StartupTimer.report());
+            }
+            if (Boolean.getBoolean("inventory.exitAfterStartup")) {
+                Platform.exit();
+            }
+        });
+        if (!"false".equalsIgnoreCase(System.getProperty("inventory.preloadScreens"))) {
+            Navigator.preloadAll(loader);
+        }
+        Inventory.getBuildableQuantities().computeAll(loader);
+    }
+    /**
+     * Reports a failure to load the inventory or the main screen, then exits.
+     *
+     * @param failure The cause of the failure.
+     */
+    private void startupFailed(Throwable failure) {
+        Throwable cause = failure instanceof UncheckedIOException ? failure.getCause() : failure;
+        cause.printStackTrace();
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setHeaderText("The inventory could not be loaded.");
+        alert.setContentText(String.valueOf(cause.getMessage()));
+        alert.showAndWait();
+        Platform.exit();
+    }
+    /**
+     * Builds the splash screen, sized like the main screen so the window does not jump when it is replaced.
+     *
+     * @return The splash screen's scene.
+     */
+    private static Scene splashScene() {
+        Label title = new Label("Inventory Management System");
+        title.setStyle("-fx-font-size: 18px; -fx-font-weight: bold;");
+        VBox content = new VBox(16, title, new ProgressIndicator(), new Label("Loading inventory..."));
+        content.setAlignment(Pos.CENTER);
+        return new Scene(content, 850, 400);
+    }
+    /**
+     * Flushes and closes the journal when the application exits.
+     */
+    @Override
+    public void stop() {
+        if (persistence != null) {
+            persistence.close();
+        }
+    }
+    /**
+     * Resolves the directory holding the inventory's data files.
+     *
+     * @return The data directory.
+     */
+    static Path dataDir() {
+        String configured = System.getProperty("inventory.dataDir");
+        return configured != null ? Path.of(configured) : Path.of(System.getProperty("user.home"), ".inventory");
     }
     /**
      * The main entry point for the application.
@@ -34,6 +155,7 @@ public class Main extends Application {
      */
 
     public static void main(String[] args) {
+        StartupTimer.mark("main");
         launch(args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package brandon.secondscreen;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records when each stage of startup finishes, measured from the start of the JVM process,
+ * so time to the first interactive frame can be tracked as the application grows.
+ */
+final class StartupTimer {
+    /**
+     * Milliseconds between the JVM process starting and this class being initialized.
+     */
+    private static final long BEFORE_INIT_MILLIS = ProcessHandle.current().info().startInstant()
+            .map(start -> Duration.between(start, Instant.now()).toMillis())
+            .orElse(0L);
+    private static final long INIT_NANOS = System.nanoTime();
+    private static final List<String> stages = new ArrayList<>();
+    private static final List<Long> times = new ArrayList<>();
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Records that a stage of startup has finished. May be called from any thread.
+     * @param stage The name of the stage.
+     */
+    static synchronized void mark(String stage) {
+        stages.add(stage);
+        times.add(BEFORE_INIT_MILLIS + (System.nanoTime() - INIT_NANOS) / 1_000_000);
+    }
+
+    /**
+     * Records a stage once a scene has been laid out for its next frame, then runs an action.
+     * Must be called on the JavaFX application thread.
+     * @param scene The scene about to be drawn.
+     * @param stage The name of the stage.
+     * @param then Runs on the JavaFX application thread after the stage is recorded.
+     */
+    static void markNextFrame(Scene scene, String stage, Runnable then) {
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (listener[0] == null) {
+                return;
+            }
+            Runnable self = listener[0];
+            listener[0] = null;
+            mark(stage);
+            Platform.runLater(() -> {
+                scene.removePostLayoutPulseListener(self);
+                then.run();
+            });
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /**
+     * Formats every stage recorded so far with its time since the process started and since the previous stage.
+     * @return The report, one stage per line.
+     */
+    static synchronized String report() {
+        StringBuilder report = new StringBuilder("Startup timing (ms since JVM start):");
+        long previous = 0;
+        for (int i = 0; i < stages.size(); i++) {
+            long time = times.get(i);
+            report.append(String.format("%n  %-28s %6d  (+%d)", stages.get(i), time, time - previous));
+            previous = time;
+        }
+        return report.toString();
+    }
+}
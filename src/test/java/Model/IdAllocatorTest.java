@@ -0,0 +1,85 @@
+package Model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdAllocatorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void startsAtOneWithoutAFile() throws Exception {
+        Path file = dir.resolve("ids");
+        IdAllocator ids = IdAllocator.open(file);
+        assertEquals(1, ids.peek());
+        assertFalse(Files.exists(file));
+        assertEquals(1, ids.next());
+        assertEquals(2, ids.next());
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void resumesAboveTheMarkAfterReopening() throws Exception {
+        Path file = dir.resolve("ids");
+        IdAllocator ids = IdAllocator.open(file);
+        int highest = 0;
+        for (int i = 0; i < 3000; i++) {
+            highest = Math.max(highest, ids.next());
+        }
+        highest = Math.max(highest, ids.reserve(500) + 499);
+
+        IdAllocator reopened = IdAllocator.open(file);
+        int next = reopened.next();
+        assertTrue(next > highest, "reopened allocator handed out " + next + " after " + highest);
+        assertTrue(reopened.next() > next);
+    }
+
+    @Test
+    void advancePastIsPersisted() throws Exception {
+        Path file = dir.resolve("ids");
+        IdAllocator ids = IdAllocator.open(file);
+        ids.advancePast(50_000);
+        assertEquals(50_001, ids.next());
+
+        assertTrue(IdAllocator.open(file).next() > 50_001);
+    }
+
+    @Test
+    void threadBlocksNeverOverlap() throws Exception {
+        IdAllocator ids = new IdAllocator();
+        int threads = 4;
+        int perThread = 1000;
+        int[][] handedOut = new int[threads][perThread];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int[] mine = handedOut[t];
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    mine[i] = ids.nextForThread();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Set<Integer> seen = new HashSet<>();
+        for (int[] mine : handedOut) {
+            for (int i = 0; i < perThread; i++) {
+                assertTrue(seen.add(mine[i]), "ID " + mine[i] + " was handed out twice");
+                if (i > 0) {
+                    assertTrue(mine[i] > mine[i - 1]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package Model;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Records are written through a journal watching private lists, then replayed into the shared inventory.
+ * Part IDs are kept in a range no other test uses, and removed again after each test.
+ */
+class InventoryJournalTest {
+    private static final int FIRST_ID = 700_001;
+    private static final int COUNT = 20;
+
+    @TempDir
+    Path dir;
+
+    private final ObservableList<Part> parts = FXCollections.observableArrayList();
+    private final ObservableList<Product> products = FXCollections.observableArrayList();
+
+    @AfterEach
+    void removeReplayedParts() {
+        for (int id = FIRST_ID; id < FIRST_ID + COUNT; id++) {
+            Part part = Inventory.lookupPart(id);
+            if (part != null) {
+                Inventory.removePart(part);
+            }
+        }
+    }
+
+    @Test
+    void replaysEveryKindOfPartRecord() throws Exception {
+        try (InventoryJournal journal = InventoryJournal.open(dir, 1, 1, 1)) {
+            journal.watch(new InventoryEvents(parts, products));
+            for (int i = 0; i < COUNT; i++) {
+                parts.add(part(FIRST_ID + i, i));
+            }
+            parts.set(3, part(FIRST_ID + 3, 99));
+            parts.remove(5);
+        }
+
+        int records = replay();
+        assertEquals(COUNT + 2, records);
+        for (int i = 0; i < COUNT; i++) {
+            Part part = Inventory.lookupPart(FIRST_ID + i);
+            if (i == 5) {
+                assertNull(part);
+                continue;
+            }
+            assertNotNull(part, "part " + (FIRST_ID + i) + " was not replayed");
+            assertEquals(i == 3 ? 99 : i, part.getPartInStock());
+            assertEquals("Part " + (FIRST_ID + i), part.getPartName());
+        }
+    }
+
+    @Test
+    void cutsOffATornTail() throws Exception {
+        try (InventoryJournal journal = InventoryJournal.open(dir, 1, 1, 1)) {
+            journal.watch(new InventoryEvents(parts, products));
+            for (int i = 0; i < COUNT; i++) {
+                parts.add(part(FIRST_ID + i, i));
+            }
+        }
+        Path segment = InventoryJournal.segmentPath(dir, 1);
+        long size = Files.size(segment);
+        long recordLength = size / COUNT;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        assertEquals(COUNT - 1, replay());
+        assertNull(Inventory.lookupPart(FIRST_ID + COUNT - 1));
+        assertNotNull(Inventory.lookupPart(FIRST_ID + COUNT - 2));
+        assertEquals(size - recordLength, Files.size(segment));
+    }
+
+    @Test
+    void refusesABadFrameInAnOlderSegment() throws Exception {
+        try (InventoryJournal journal = InventoryJournal.open(dir, 1, 1, 1)) {
+            journal.watch(new InventoryEvents(parts, products));
+            for (int i = 0; i < COUNT / 2; i++) {
+                parts.add(part(FIRST_ID + i, i));
+            }
+            journal.roll();
+            for (int i = COUNT / 2; i < COUNT; i++) {
+                parts.add(part(FIRST_ID + i, i));
+            }
+        }
+        Path older = InventoryJournal.segmentPath(dir, 1);
+        byte[] bytes = Files.readAllBytes(older);
+        bytes[bytes.length / 2] ^= 0x40;
+        Files.write(older, bytes);
+
+        assertThrows(IOException.class, this::replay);
+        assertNull(Inventory.lookupPart(FIRST_ID + COUNT - 1));
+    }
+
+    private int replay() throws IOException {
+        try (InventoryJournal journal = InventoryJournal.open(dir, 1)) {
+            return journal.replay(1);
+        }
+    }
+
+    private static Part part(int id, int stock) {
+        InHousePart part = new InHousePart();
+        part.setPartID(id);
+        part.setPartName("Part " + id);
+        part.setPartPrice(2.5);
+        part.setPartInStock(stock);
+        part.setPartMin(0);
+        part.setPartMax(1000);
+        part.setMachineID(7);
+        return part;
+    }
+}
@@ -0,0 +1,98 @@
+package Model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Runs random edits against a LazyRowList and an ArrayList side by side, checking they always agree.
+ */
+class LazyRowListTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void matchesAnArrayList() {
+        LazyRowList<Part> list = new LazyRowList<>(Part::getPartID);
+        edit(list, new ArrayList<>(), new Random(3), 1);
+    }
+
+    @Test
+    void matchesAnArrayListOverCatalogRows() throws Exception {
+        List<Part> rows = new ArrayList<>();
+        for (int id = 1; id <= 3000; id++) {
+            rows.add(part(id));
+        }
+        Path file = dir.resolve("catalog.col");
+        ColumnarCatalog.write(file, rows, List.of());
+        ColumnarCatalog catalog = ColumnarCatalog.open(file);
+
+        LazyRowList<Part> list = new LazyRowList<>(Part::getPartID);
+        list.attach(catalog.parts(), catalog::readPart);
+        List<Part> model = new ArrayList<>(list);
+        assertEquals(rows.size(), model.size());
+        for (int i = 0; i < model.size(); i++) {
+            assertEquals(rows.get(i).getPartID(), model.get(i).getPartID());
+            assertSame(model.get(i), list.get(i));
+        }
+        edit(list, model, new Random(7), rows.size() + 1);
+    }
+
+    /**
+     * Applies random inserts, removals, replacements and lookups to both lists, then compares them in full.
+     */
+    private static void edit(LazyRowList<Part> list, List<Part> model, Random random, int nextID) {
+        for (int step = 0; step < 10_000; step++) {
+            int op = random.nextInt(10);
+            if (op < 4 || model.isEmpty()) {
+                int at = random.nextInt(3) == 0 ? random.nextInt(model.size() + 1) : model.size();
+                Part part = part(nextID++);
+                list.add(at, part);
+                model.add(at, part);
+            } else if (op < 6) {
+                int at = random.nextInt(model.size());
+                assertSame(model.remove(at), list.remove(at));
+            } else if (op < 7) {
+                int at = random.nextInt(model.size());
+                Part part = part(nextID++);
+                assertSame(model.set(at, part), list.set(at, part));
+            } else if (op < 8) {
+                Part part = part(nextID++);
+                for (int i = 0; i < 20; i++) {
+                    list.add(Math.min(1, model.size()), part);
+                    model.add(Math.min(1, model.size()), part);
+                    part = part(nextID++);
+                }
+            } else {
+                int at = random.nextInt(model.size());
+                Part part = model.get(at);
+                assertEquals(model.indexOf(part), list.indexOf(part));
+                assertEquals(-1, list.indexOf(part(-1)));
+                assertEquals(model.remove(part), list.remove(part));
+            }
+            assertEquals(model.size(), list.size());
+        }
+        for (int i = 0; i < model.size(); i++) {
+            assertSame(model.get(i), list.get(i));
+            assertEquals(i, list.indexOf(model.get(i)));
+        }
+    }
+
+    private static Part part(int id) {
+        InHousePart part = new InHousePart();
+        part.setPartID(id);
+        part.setPartName("Part " + id);
+        part.setPartPrice(1);
+        part.setPartInStock(5);
+        part.setPartMin(1);
+        part.setPartMax(10);
+        return part;
+    }
+}
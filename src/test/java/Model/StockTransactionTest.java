@@ -0,0 +1,161 @@
+package Model;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Assembles products from several threads at once through the shared inventory. A single-thread executor stands in
+ * for the JavaFX application thread: the inventory lists are only changed on it, and the stores publish to it.
+ * Item IDs are kept in a range no other test uses.
+ */
+class StockTransactionTest {
+    private static final int FIRST_PART = 800_001;
+    private static final int PARTS = 12;
+    private static final int FIRST_PRODUCT = 800_001;
+    private static final int PRODUCTS = 4;
+    private static final int STOCK = 2000;
+    private static final ExecutorService application = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "test-application");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @BeforeAll
+    static void addItems() throws Exception {
+        Inventory.getPartStore().setPublishExecutor(application);
+        Inventory.getProductStore().setPublishExecutor(application);
+        application.submit(() -> {
+            List<Part> parts = new ArrayList<>();
+            for (int id = FIRST_PART; id < FIRST_PART + PARTS; id++) {
+                InHousePart part = new InHousePart();
+                part.setPartID(id);
+                part.setPartName("Stock part " + id);
+                part.setPartPrice(1);
+                part.setPartInStock(STOCK);
+                part.setPartMin(0);
+                part.setPartMax(1_000_000);
+                parts.add(part);
+            }
+            Inventory.addParts(parts);
+            Random random = new Random(11);
+            List<Product> products = new ArrayList<>();
+            for (int id = FIRST_PRODUCT; id < FIRST_PRODUCT + PRODUCTS; id++) {
+                Product product = new Product();
+                product.setProductID(id);
+                product.setProductName("Stock product " + id);
+                product.setProductPrice(1);
+                product.setProductInStock(0);
+                product.setProductMin(0);
+                product.setProductMax(1_000_000);
+                for (int line = 0; line < 3; line++) {
+                    product.getBillOfMaterials().add(FIRST_PART + random.nextInt(PARTS), 1 + random.nextInt(3));
+                }
+                if (id > FIRST_PRODUCT) {
+                    product.getBillOfMaterials().addSubassembly(id - 1, 1);
+                }
+                products.add(product);
+            }
+            Inventory.addProds(products);
+        }).get();
+    }
+
+    @AfterAll
+    static void removeItems() throws Exception {
+        application.submit(() -> {
+            for (int id = FIRST_PRODUCT; id < FIRST_PRODUCT + PRODUCTS; id++) {
+                Inventory.removeProd(Inventory.lookupProd(id));
+            }
+            for (int id = FIRST_PART; id < FIRST_PART + PARTS; id++) {
+                Inventory.removePart(Inventory.lookupPart(id));
+            }
+        }).get();
+    }
+
+    @Test
+    void concurrentAssemblyConservesStock() throws Exception {
+        long[][] perUnit = new long[PRODUCTS][PARTS];
+        for (int p = 0; p < PRODUCTS; p++) {
+            BomExplosion.Requirements requirements = Inventory.getBomExplosion().requirements(FIRST_PRODUCT + p);
+            for (int line = 0; line < requirements.lines(); line++) {
+                perUnit[p][requirements.partID(line) - FIRST_PART] = requirements.quantity(line);
+            }
+        }
+        long[] partsBefore = new long[PARTS];
+        for (int i = 0; i < PARTS; i++) {
+            partsBefore[i] = Inventory.getPartStore().get(FIRST_PART + i).getPartInStock();
+        }
+        long[] productsBefore = new long[PRODUCTS];
+        for (int p = 0; p < PRODUCTS; p++) {
+            productsBefore[p] = Inventory.getProductStore().get(FIRST_PRODUCT + p).getProductInStock();
+        }
+
+        AtomicLongArray built = new AtomicLongArray(PRODUCTS);
+        AtomicInteger refused = new AtomicInteger();
+        Thread[] workers = new Thread[6];
+        for (int t = 0; t < workers.length; t++) {
+            Random random = new Random(t);
+            workers[t] = new Thread(() -> {
+                for (int order = 0; order < 500; order++) {
+                    int p = random.nextInt(PRODUCTS);
+                    int units = 1 + random.nextInt(3);
+                    try {
+                        Inventory.assemble(FIRST_PRODUCT + p, units);
+                        built.addAndGet(p, units);
+                    } catch (IllegalStateException e) {
+                        refused.incrementAndGet();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        application.submit(() -> { }).get();
+        application.submit(() -> { }).get();
+
+        assertTrue(refused.get() > 0, "the parts should have run out before every order was built");
+        for (int i = 0; i < PARTS; i++) {
+            long expected = partsBefore[i];
+            for (int p = 0; p < PRODUCTS; p++) {
+                expected -= built.get(p) * perUnit[p][i];
+            }
+            int id = FIRST_PART + i;
+            assertTrue(expected >= 0);
+            assertEquals(expected, Inventory.getPartStore().get(id).getPartInStock(), "stock of part " + id);
+            assertEquals(expected, Inventory.lookupPart(id).getPartInStock(), "published stock of part " + id);
+        }
+        for (int p = 0; p < PRODUCTS; p++) {
+            int id = FIRST_PRODUCT + p;
+            assertEquals(productsBefore[p] + built.get(p), Inventory.getProductStore().get(id).getProductInStock(), "stock of product " + id);
+            assertEquals(productsBefore[p] + built.get(p), Inventory.lookupProd(id).getProductInStock(), "published stock of product " + id);
+        }
+    }
+
+    @Test
+    void refusedTransactionChangesNothing() {
+        int part = FIRST_PART;
+        int before = Inventory.getPartStore().get(part).getPartInStock();
+        int product = FIRST_PRODUCT;
+        int productBefore = Inventory.getProductStore().get(product).getProductInStock();
+        assertThrows(IllegalStateException.class, () -> Inventory.newStockTransaction()
+                .changeProduct(product, 1)
+                .changePart(part, -(before + 1L))
+                .commit());
+        assertEquals(before, Inventory.getPartStore().get(part).getPartInStock());
+        assertEquals(productBefore, Inventory.getProductStore().get(product).getProductInStock());
+    }
+}